@@ -3,6 +3,7 @@ import automaton.Transition;
 import grammar.Grammar;
 import lexer.Lexer;
 import lexer.Token;
+import lexer.TokenCursor;
 import lexer.TokenPattern;
 import parser.Parser;
 
@@ -23,8 +24,7 @@ public class Main {
         //System.out.println("Input 1: " +  text1 + "\nTokenized form: " + tokens1);
 
         // Parser
-        tokens1.removeIf(token -> token.getTokenType() == null); // Remove tokens with null types
-        Parser parser = new Parser(tokens1);
+        Parser parser = new Parser(new TokenCursor(text1));
         //parser.parse();
         //parser.printAST();
 
@@ -36,8 +36,7 @@ public class Main {
         //System.out.println("Input 2: " +  text2 + "\nTokenized form: " + tokens2);
 
 
-        tokens2.removeIf(token -> token.getTokenType() == null); // Remove tokens with null types
-        Parser parser2 = new Parser(tokens2);
+        Parser parser2 = new Parser(new TokenCursor(text2));
         //parser2.parse();
         //parser2.printAST();
 
@@ -49,8 +48,7 @@ public class Main {
         //System.out.println("Input 3: " +  text3 + "\nTokenized form: " + tokens3);
 
 
-        tokens3.removeIf(token -> token.getTokenType() == null); // Remove tokens with null types
-        Parser parser3 = new Parser(tokens3);
+        Parser parser3 = new Parser(new TokenCursor(text3));
         //parser3.parse();
         //parser3.printAST();
 
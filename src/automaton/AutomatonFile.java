@@ -0,0 +1,83 @@
+package automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Binary layout of a compiled DFA, big endian:
+//   int magic "FLFA", int version, int stateCount, int alphabetSize, int startState, int reserved
+//   int[alphabetSize] symbols
+//   int[stateCount * alphabetSize] next-state table, -1 for no transition
+//   padding to 8 bytes, long[(stateCount + 63) / 64] accepting states bitmap
+// State names are not stored, a mapped table is meant for matching only.
+public final class AutomatonFile {
+    public static final int MAGIC = 0x464C4641;
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    private AutomatonFile() {
+    }
+
+    public static void write(CompiledAutomaton automaton, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size(automaton.getStateCount(), automaton.getAlphabetSize()));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(automaton.getStateCount());
+        buffer.putInt(automaton.getAlphabetSize());
+        buffer.putInt(automaton.getStartState());
+        buffer.putInt(0);
+        for (int symbol = 0; symbol < automaton.getAlphabetSize(); symbol++) {
+            buffer.putInt(automaton.getSymbol(symbol));
+        }
+        for (int state = 0; state < automaton.getStateCount(); state++) {
+            for (int symbol = 0; symbol < automaton.getAlphabetSize(); symbol++) {
+                buffer.putInt(automaton.next(state, symbol));
+            }
+        }
+        buffer.position((int) acceptOffset(automaton.getStateCount(), automaton.getAlphabetSize()));
+        long[] accepting = new long[(automaton.getStateCount() + 63) / 64];
+        for (int state = 0; state < automaton.getStateCount(); state++) {
+            if (automaton.isAccepting(state)) {
+                accepting[state >>> 6] |= 1L << state;
+            }
+        }
+        for (long word : accepting) {
+            buffer.putLong(word);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static MappedAutomaton map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedAutomaton(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Offsets are computed in long, so even the counts of a corrupt header cannot wrap around
+    static long acceptOffset(int stateCount, int alphabetSize) {
+        long end = HEADER_SIZE + 4L * alphabetSize + 4L * stateCount * alphabetSize;
+        return (end + 7) & ~7L;
+    }
+
+    // Checks the counts first: symbols are chars, so there are at most 65536 of them
+    static int size(int stateCount, int alphabetSize) {
+        if (stateCount < 0 || alphabetSize < 0 || alphabetSize > Character.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("Invalid automaton size: " + stateCount + " states, " + alphabetSize + " symbols");
+        }
+        long size = acceptOffset(stateCount, alphabetSize) + 8L * ((stateCount + 63L) / 64);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Automaton is too large for a single mapped buffer: " + size + " bytes");
+        }
+        return (int) size;
+    }
+}
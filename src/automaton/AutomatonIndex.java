@@ -0,0 +1,163 @@
+package automaton;
+
+import java.util.*;
+
+public final class AutomatonIndex {
+    public static final String EPSILON = "";
+
+    private final String[] stateNames;
+    private final Map<String, Integer> stateIds;
+    private final String[] symbols;
+    private final Map<String, Integer> symbolIds;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+    private final BitSet accepting;
+    private final int startState;
+    private final EpsilonClosures closures;
+
+    public AutomatonIndex(FiniteAutomaton automaton) {
+        this.stateIds = new LinkedHashMap<>();
+        for (String state : automaton.getStates()) {
+            stateIds.putIfAbsent(state, stateIds.size());
+        }
+        if (automaton.getStartState() != null) {
+            stateIds.putIfAbsent(automaton.getStartState(), stateIds.size());
+        }
+        for (Transition t : automaton.getTransitions()) {
+            stateIds.putIfAbsent(t.getCurrentState(), stateIds.size());
+            stateIds.putIfAbsent(t.getNextState(), stateIds.size());
+        }
+        this.stateNames = stateIds.keySet().toArray(new String[0]);
+
+        // Only labels from the alphabet are followed, like the original subset construction
+        TreeSet<String> alphabet = new TreeSet<>(automaton.getAlphabet());
+        alphabet.remove(EPSILON);
+        this.symbols = alphabet.toArray(new String[0]);
+        this.symbolIds = new HashMap<>();
+        for (int i = 0; i < symbols.length; i++) {
+            symbolIds.put(symbols[i], i);
+        }
+
+        int stateCount = stateNames.length;
+        int symbolCount = symbols.length;
+
+        // Counting pass, then fill: compressed adjacency rows keyed by (state, symbol)
+        this.edgeOffsets = new int[stateCount * symbolCount + 1];
+        this.epsilonOffsets = new int[stateCount + 1];
+        for (Transition t : automaton.getTransitions()) {
+            int from = stateIds.get(t.getCurrentState());
+            if (EPSILON.equals(t.getTransitionLabel())) {
+                epsilonOffsets[from + 1]++;
+            } else {
+                Integer symbol = symbolIds.get(t.getTransitionLabel());
+                if (symbol != null) {
+                    edgeOffsets[from * symbolCount + symbol + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < edgeOffsets.length; i++) {
+            edgeOffsets[i] += edgeOffsets[i - 1];
+        }
+        for (int i = 1; i < epsilonOffsets.length; i++) {
+            epsilonOffsets[i] += epsilonOffsets[i - 1];
+        }
+
+        this.edgeTargets = new int[edgeOffsets[edgeOffsets.length - 1]];
+        this.epsilonTargets = new int[epsilonOffsets[stateCount]];
+        int[] edgeFill = Arrays.copyOf(edgeOffsets, edgeOffsets.length - 1);
+        int[] epsilonFill = Arrays.copyOf(epsilonOffsets, stateCount);
+        for (Transition t : automaton.getTransitions()) {
+            int from = stateIds.get(t.getCurrentState());
+            int to = stateIds.get(t.getNextState());
+            if (EPSILON.equals(t.getTransitionLabel())) {
+                epsilonTargets[epsilonFill[from]++] = to;
+            } else {
+                Integer symbol = symbolIds.get(t.getTransitionLabel());
+                if (symbol != null) {
+                    edgeTargets[edgeFill[from * symbolCount + symbol]++] = to;
+                }
+            }
+        }
+
+        this.accepting = new BitSet(stateCount);
+        for (String state : automaton.getAcceptStates()) {
+            Integer id = stateIds.get(state);
+            if (id != null) {
+                accepting.set(id);
+            }
+        }
+        this.startState = automaton.getStartState() == null ? -1 : stateIds.get(automaton.getStartState());
+        this.closures = new EpsilonClosures(stateCount, epsilonOffsets, epsilonTargets);
+    }
+
+    // Union of the epsilon closures of every state reachable from the set on the symbol
+    public BitSet move(BitSet states, int symbol) {
+        BitSet result = new BitSet(stateNames.length);
+        int symbolCount = symbols.length;
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            int row = state * symbolCount + symbol;
+            for (int i = edgeOffsets[row]; i < edgeOffsets[row + 1]; i++) {
+                int target = edgeTargets[i];
+                if (!result.get(target)) {
+                    closures.addClosure(target, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    public BitSet getStartClosure() {
+        if (startState < 0) {
+            return new BitSet();
+        }
+        return closures.closureOf(startState);
+    }
+
+    public BitSet getClosure(int state) {
+        return closures.closureOf(state);
+    }
+
+    public EpsilonClosures getEpsilonClosures() {
+        return closures;
+    }
+
+    public boolean containsAccepting(BitSet states) {
+        return states.intersects(accepting);
+    }
+
+    public boolean isAccepting(int state) {
+        return accepting.get(state);
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    public int getStateId(String state) {
+        Integer id = stateIds.get(state);
+        return id == null ? -1 : id;
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public String getSymbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    public int getSymbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        return id == null ? -1 : id;
+    }
+}
@@ -0,0 +1,228 @@
+package automaton;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+public final class CompiledAutomaton implements DfaTable {
+    public static final int DEAD_STATE = -1;
+
+    // Batch validation leaves are a multiple of 64 so that every leaf owns whole words of the result
+    private static final int LEAF_SIZE = 2048;
+
+    private final String[] stateNames;
+    private final char[] symbols;
+    private final int symbolOffset;
+    private final int[] symbolIndex;
+    private final int alphabetSize;
+    private final int[] table;
+    private final boolean[] accepting;
+    private final int startState;
+
+    CompiledAutomaton(String[] stateNames, char[] symbols, int[] table, boolean[] accepting, int startState) {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.alphabetSize = symbols.length;
+        this.table = table;
+        this.accepting = accepting;
+        this.startState = startState;
+
+        // Dense char -> symbol lookup covering only the range the alphabet actually uses
+        int min = Character.MAX_VALUE;
+        int max = 0;
+        for (char symbol : symbols) {
+            min = Math.min(min, symbol);
+            max = Math.max(max, symbol);
+        }
+        if (symbols.length == 0) {
+            min = 0;
+            max = -1;
+        }
+        this.symbolOffset = min;
+        this.symbolIndex = new int[max - min + 1];
+        Arrays.fill(this.symbolIndex, -1);
+        for (int i = 0; i < symbols.length; i++) {
+            this.symbolIndex[symbols[i] - min] = i;
+        }
+    }
+
+    public static CompiledAutomaton compile(FiniteAutomaton automaton) {
+        Map<String, Integer> stateIds = new LinkedHashMap<>();
+        if (automaton.getStartState() != null) {
+            stateIds.put(automaton.getStartState(), 0);
+        }
+        for (String state : automaton.getStates()) {
+            stateIds.putIfAbsent(state, stateIds.size());
+        }
+
+        // Only single character labels can ever be followed while reading a word
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (Transition t : automaton.getTransitions()) {
+            stateIds.putIfAbsent(t.getCurrentState(), stateIds.size());
+            stateIds.putIfAbsent(t.getNextState(), stateIds.size());
+            if (t.getTransitionLabel() != null && t.getTransitionLabel().length() == 1) {
+                alphabet.add(t.getTransitionLabel().charAt(0));
+            }
+        }
+
+        char[] symbols = new char[alphabet.size()];
+        int index = 0;
+        for (char symbol : alphabet) {
+            symbols[index++] = symbol;
+        }
+
+        String[] stateNames = stateIds.keySet().toArray(new String[0]);
+        int[] table = new int[stateNames.length * symbols.length];
+        Arrays.fill(table, DEAD_STATE);
+
+        // The first matching transition wins, exactly like the linear scan in wordIsValid
+        for (Transition t : automaton.getTransitions()) {
+            String label = t.getTransitionLabel();
+            if (label == null || label.length() != 1) {
+                continue;
+            }
+            int cell = stateIds.get(t.getCurrentState()) * symbols.length + Arrays.binarySearch(symbols, label.charAt(0));
+            if (table[cell] == DEAD_STATE) {
+                table[cell] = stateIds.get(t.getNextState());
+            }
+        }
+
+        boolean[] accepting = new boolean[stateNames.length];
+        for (String state : automaton.getAcceptStates()) {
+            Integer id = stateIds.get(state);
+            if (id != null) {
+                accepting[id] = true;
+            }
+        }
+
+        int start = automaton.getStartState() == null ? DEAD_STATE : 0;
+        return new CompiledAutomaton(stateNames, symbols, table, accepting, start);
+    }
+
+    public boolean matches(CharSequence word) {
+        int state = startState;
+        for (int i = 0, length = word.length(); i < length && state != DEAD_STATE; i++) {
+            state = step(state, word.charAt(i));
+        }
+        return state != DEAD_STATE && accepting[state];
+    }
+
+    // Bit i of the result is set when the i-th word is accepted
+    public BitSet validateAll(Collection<String> words) {
+        return validateAll(words.toArray(new CharSequence[0]), ForkJoinPool.commonPool());
+    }
+
+    public BitSet validateAll(Stream<? extends CharSequence> words) {
+        return validateAll(words.toArray(CharSequence[]::new), ForkJoinPool.commonPool());
+    }
+
+    public BitSet validateAll(CharSequence[] words, ForkJoinPool pool) {
+        long[] result = new long[(words.length + 63) / 64];
+        pool.invoke(new ValidationTask(words, result, 0, words.length));
+        return BitSet.valueOf(result);
+    }
+
+    private final class ValidationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence[] words;
+        private final long[] result;
+        private final int from;
+        private final int to;
+
+        ValidationTask(CharSequence[] words, long[] result, int from, int to) {
+            this.words = words;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    if (matches(words[i])) {
+                        result[i >>> 6] |= 1L << i;
+                    }
+                }
+                return;
+            }
+            int middle = from + ((to - from) / 2 / LEAF_SIZE) * LEAF_SIZE;
+            if (middle == from) {
+                middle += LEAF_SIZE;
+            }
+            invokeAll(new ValidationTask(words, result, from, middle), new ValidationTask(words, result, middle, to));
+        }
+    }
+
+    @Override
+    public int step(int state, char c) {
+        int symbol = symbolOf(c);
+        if (symbol < 0) {
+            return DEAD_STATE;
+        }
+        return table[state * alphabetSize + symbol];
+    }
+
+    public int next(int state, int symbol) {
+        return table[state * alphabetSize + symbol];
+    }
+
+    public int symbolOf(char c) {
+        int offset = c - symbolOffset;
+        if (offset < 0 || offset >= symbolIndex.length) {
+            return -1;
+        }
+        return symbolIndex[offset];
+    }
+
+    @Override
+    public int getStartState() {
+        return startState;
+    }
+
+    @Override
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    public char getSymbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    public FiniteAutomaton toFiniteAutomaton() {
+        Set<String> states = new HashSet<>(Arrays.asList(stateNames));
+        Set<String> alphabet = new HashSet<>();
+        for (char symbol : symbols) {
+            alphabet.add(Character.toString(symbol));
+        }
+        List<Transition> transitions = new ArrayList<>();
+        Set<String> acceptStates = new HashSet<>();
+        for (int state = 0; state < stateNames.length; state++) {
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int target = table[state * alphabetSize + symbol];
+                if (target != DEAD_STATE) {
+                    transitions.add(new Transition(stateNames[state], stateNames[target], Character.toString(symbols[symbol])));
+                }
+            }
+            if (accepting[state]) {
+                acceptStates.add(stateNames[state]);
+            }
+        }
+        String start = startState == DEAD_STATE ? null : stateNames[startState];
+        return new FiniteAutomaton(states, alphabet, transitions.toArray(new Transition[0]), start, acceptStates);
+    }
+}
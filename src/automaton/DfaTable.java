@@ -0,0 +1,10 @@
+package automaton;
+
+// Read-only view of a deterministic transition table, where a negative state means no transition
+public interface DfaTable {
+    int getStartState();
+
+    int step(int state, char c);
+
+    boolean isAccepting(int state);
+}
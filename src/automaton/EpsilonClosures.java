@@ -0,0 +1,125 @@
+package automaton;
+
+import java.util.*;
+
+// Epsilon closures of every state, computed in one pass over the strongly connected components of the
+// epsilon graph. States of one component share a single closure set, which is never handed out directly.
+public final class EpsilonClosures {
+    private final int[] component;
+    private final BitSet[] componentClosures;
+
+    public EpsilonClosures(int stateCount, int[] epsilonOffsets, int[] epsilonTargets) {
+        this.component = new int[stateCount];
+        int componentCount = tarjan(stateCount, epsilonOffsets, epsilonTargets);
+        this.componentClosures = new BitSet[componentCount];
+
+        // Tarjan numbers components in reverse topological order, so successors are always finished first
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            memberOffsets[component[state] + 1]++;
+        }
+        for (int i = 1; i <= componentCount; i++) {
+            memberOffsets[i] += memberOffsets[i - 1];
+        }
+        int[] members = new int[stateCount];
+        int[] fill = Arrays.copyOf(memberOffsets, componentCount);
+        for (int state = 0; state < stateCount; state++) {
+            members[fill[component[state]]++] = state;
+        }
+
+        for (int c = 0; c < componentCount; c++) {
+            BitSet closure = new BitSet(stateCount);
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                int state = members[i];
+                closure.set(state);
+                for (int e = epsilonOffsets[state]; e < epsilonOffsets[state + 1]; e++) {
+                    int successor = component[epsilonTargets[e]];
+                    if (successor != c && !closure.get(epsilonTargets[e])) {
+                        closure.or(componentClosures[successor]);
+                    }
+                }
+            }
+            componentClosures[c] = closure;
+        }
+    }
+
+    // Iterative Tarjan, so long epsilon chains cannot overflow the call stack
+    private int tarjan(int stateCount, int[] epsilonOffsets, int[] epsilonTargets) {
+        int[] index = new int[stateCount];
+        int[] lowLink = new int[stateCount];
+        boolean[] onStack = new boolean[stateCount];
+        int[] sccStack = new int[stateCount];
+        int[] callStack = new int[stateCount];
+        int[] edgeCursor = new int[stateCount];
+        Arrays.fill(index, -1);
+
+        int nextIndex = 0;
+        int sccTop = 0;
+        int componentCount = 0;
+        for (int root = 0; root < stateCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            edgeCursor[root] = epsilonOffsets[root];
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int state = callStack[callTop - 1];
+                if (edgeCursor[state] < epsilonOffsets[state + 1]) {
+                    int next = epsilonTargets[edgeCursor[state]++];
+                    if (index[next] < 0) {
+                        index[next] = lowLink[next] = nextIndex++;
+                        edgeCursor[next] = epsilonOffsets[next];
+                        sccStack[sccTop++] = next;
+                        onStack[next] = true;
+                        callStack[callTop++] = next;
+                    } else if (onStack[next]) {
+                        lowLink[state] = Math.min(lowLink[state], index[next]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[state]);
+                }
+                if (lowLink[state] == index[state]) {
+                    int member;
+                    do {
+                        member = sccStack[--sccTop];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                    } while (member != state);
+                    componentCount++;
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    public BitSet closureOf(int state) {
+        return (BitSet) componentClosures[component[state]].clone();
+    }
+
+    // Adds the closure of the state to the target set without copying it
+    public void addClosure(int state, BitSet target) {
+        target.or(componentClosures[component[state]]);
+    }
+
+    public boolean inClosure(int state, int member) {
+        return componentClosures[component[state]].get(member);
+    }
+
+    public int getComponent(int state) {
+        return component[state];
+    }
+
+    public int getComponentCount() {
+        return componentClosures.length;
+    }
+}
@@ -9,6 +9,7 @@ public class FiniteAutomaton {
     private Transition[] transitions;
     private String startState;
     private Set<String> acceptStates;
+    private CompiledAutomaton compiled;
 
     public FiniteAutomaton(Transition[] transitions) {
         this.states = new HashSet<>();
@@ -48,6 +49,7 @@ public class FiniteAutomaton {
 
     public void setStates(Set<String> states) {
         this.states = states;
+        this.compiled = null;
     }
 
     public Set<String> getAlphabet() {
@@ -56,6 +58,7 @@ public class FiniteAutomaton {
 
     public void setAlphabet(Set<String> alphabet) {
         this.alphabet = alphabet;
+        this.compiled = null;
     }
 
     public String getStartState() {
@@ -64,6 +67,7 @@ public class FiniteAutomaton {
 
     public void setStartState(String startState) {
         this.startState = startState;
+        this.compiled = null;
     }
 
     public Set<String> getAcceptStates() {
@@ -72,13 +76,17 @@ public class FiniteAutomaton {
 
     public void setAcceptStates(Set<String> acceptStates) {
         this.acceptStates = acceptStates;
+        this.compiled = null;
     }
 
     public String printTransitions() {
         return "Transitions = " + Arrays.toString(this.transitions);
     }
 
-    public void setTransitions(Transition[] newTransitions) {this.transitions = newTransitions;}
+    public void setTransitions(Transition[] newTransitions) {
+        this.transitions = newTransitions;
+        this.compiled = null;
+    }
 
     public Transition[] getTransitions() {return this.transitions;}
 
@@ -92,22 +100,17 @@ public class FiniteAutomaton {
     }
 
     public boolean wordIsValid(String word) {
-        String currentState = startState;
-        for (int i = 0; i < word.length(); i++) {
-            char c = word.charAt(i);
-            boolean foundTransition = false;
-            for (Transition t : transitions) {
-                if (Objects.equals(t.getCurrentState(), currentState) && Objects.equals(t.getTransitionLabel(), Character.toString(c))) {
-                    currentState = t.getNextState();
-                    foundTransition = true;
-                    break;
-                }
-            }
-            if (!foundTransition) {
-                return false;
-            }
+        return compile().matches(word);
+    }
+
+    // Interns states and symbols into a flat next-state table; cached until the automaton is modified
+    public CompiledAutomaton compile() {
+        CompiledAutomaton result = compiled;
+        if (result == null) {
+            result = CompiledAutomaton.compile(this);
+            compiled = result;
         }
-        return acceptStates.contains(currentState);
+        return result;
     }
 
     public Grammar toGrammar(){
@@ -170,104 +173,122 @@ public class FiniteAutomaton {
     }
 
     public FiniteAutomaton convertToDFA() {
+        return convertToDFA(SubsetConstruction.DEFAULT_MAX_STATES, SubsetConstruction.DEFAULT_TIMEOUT_MILLIS);
+    }
 
-        FiniteAutomaton dfa = new FiniteAutomaton(new Transition[0]);
-
-        Map<Set<String>, Set<String>> epsilonClosures = new HashMap<>();
-        for (String state : states) {
-            Set<String> closure = getEpsilonClosure(state);
-            epsilonClosures.put(closure, closure);
-        }
+    // Fails with an IllegalStateException once the subset construction grows past maxStates or timeoutMillis
+    public FiniteAutomaton convertToDFA(int maxStates, long timeoutMillis) {
+        AutomatonIndex index = new AutomatonIndex(this);
+        return SubsetConstruction.determinize(index, maxStates, timeoutMillis).toFiniteAutomaton(this.alphabet);
+    }
 
-        Set<String> startClosure = epsilonClosures.get(getEpsilonClosure(this.startState));
-        dfa.states.add(setToString(startClosure));
-        dfa.startState = setToString(startClosure);
-        dfa.alphabet = this.alphabet;
-
-        // Compute the transitions for the DFA
-        Set<Set<String>> unmarkedStates = new HashSet<>();
-        unmarkedStates.add(startClosure);
-        while (!unmarkedStates.isEmpty()) {
-            Set<String> currentStateSet = unmarkedStates.iterator().next();
-            unmarkedStates.remove(currentStateSet);
-
-            for (String label : this.alphabet) {
-                Set<String> nextStateSet = new HashSet<>();
-                for (String state : currentStateSet) {
-                    for (Transition t : this.transitions) {
-                        if (t.getCurrentState().equals(state) && t.getTransitionLabel().equals(label)) {
-                            Set<String> targetClosure = epsilonClosures.get(getEpsilonClosure(t.getNextState()));
-                            nextStateSet.addAll(targetClosure);
-                        }
+    // Hopcroft minimization; non-deterministic automata are determinized first
+    public MinimizedAutomaton minimize() {
+        SubsetConstruction subsets = isDeterministic() ? null : SubsetConstruction.determinize(new AutomatonIndex(this));
+        FiniteAutomaton dfa = subsets == null ? this : subsets.toFiniteAutomaton(this.alphabet);
+        CompiledAutomaton table = dfa.compile();
+        int symbolCount = table.getAlphabetSize();
+
+        // Keep only states reachable from the start, plus one sink standing in for missing transitions
+        int[] reachableId = new int[table.getStateCount()];
+        Arrays.fill(reachableId, -1);
+        int[] order = new int[table.getStateCount()];
+        int reachable = 0;
+        if (table.getStartState() != CompiledAutomaton.DEAD_STATE) {
+            reachableId[table.getStartState()] = reachable;
+            order[reachable++] = table.getStartState();
+            for (int i = 0; i < reachable; i++) {
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int next = table.next(order[i], symbol);
+                    if (next != CompiledAutomaton.DEAD_STATE && reachableId[next] < 0) {
+                        reachableId[next] = reachable;
+                        order[reachable++] = next;
                     }
                 }
+            }
+        }
 
-                if (!nextStateSet.isEmpty()) {
-                    String nextStateName = setToString(nextStateSet);
-                    dfa.states.add(nextStateName);
-
-                    if (dfa.startState == null && nextStateSet.contains(this.startState)) {
-                        dfa.startState = nextStateName;
-                    }
-
-                    if (isAcceptState(nextStateSet)) {
-                        dfa.acceptStates.add(nextStateName);
+        int sink = reachable;
+        int[] complete = new int[(reachable + 1) * symbolCount];
+        int[] initialClass = new int[reachable + 1];
+        for (int state = 0; state <= reachable; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int next = state == sink ? CompiledAutomaton.DEAD_STATE : table.next(order[state], symbol);
+                complete[state * symbolCount + symbol] = next == CompiledAutomaton.DEAD_STATE ? sink : reachableId[next];
+            }
+            initialClass[state] = state != sink && table.isAccepting(order[state]) ? 1 : 0;
+        }
+        int[] blocks = Hopcroft.refine(reachable + 1, symbolCount, complete, initialClass);
+
+        // Number the surviving blocks in breadth first order from the start; the sink's block is dropped
+        int deadBlock = blocks[sink];
+        Map<Integer, String> blockNames = new HashMap<>();
+        Set<String> newStates = new HashSet<>();
+        Set<String> newAcceptStates = new HashSet<>();
+        List<Transition> newTransitions = new ArrayList<>();
+        Map<String, String> mapping = new HashMap<>();
+        String newStart = "q0";
+        newStates.add(newStart);
+
+        if (reachable > 0 && blocks[0] != deadBlock) {
+            int[] representatives = new int[reachable];
+            int named = 0;
+            blockNames.put(blocks[0], newStart);
+            representatives[named++] = 0;
+            for (int i = 0; i < named; i++) {
+                int state = representatives[i];
+                String name = blockNames.get(blocks[state]);
+                if (initialClass[state] == 1) {
+                    newAcceptStates.add(name);
+                }
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int next = complete[state * symbolCount + symbol];
+                    if (blocks[next] == deadBlock) {
+                        continue;
                     }
-
-                    String currentStateName = setToString(currentStateSet);
-                    dfa.transitions = Arrays.copyOf(dfa.transitions, dfa.transitions.length + 1);
-                    dfa.transitions[dfa.transitions.length - 1] = new Transition(currentStateName, nextStateName, label);
-
-                    if (!epsilonClosures.containsKey(nextStateSet)) {
-                        epsilonClosures.put(nextStateSet, nextStateSet);
-                        unmarkedStates.add(nextStateSet);
+                    String nextName = blockNames.get(blocks[next]);
+                    if (nextName == null) {
+                        nextName = "q" + named;
+                        blockNames.put(blocks[next], nextName);
+                        newStates.add(nextName);
+                        representatives[named++] = next;
                     }
+                    newTransitions.add(new Transition(name, nextName, Character.toString(table.getSymbol(symbol))));
                 }
             }
-        }
-
-        return dfa;
-    }
-
-    private Set<String> getEpsilonClosure(String state) {
-        Set<String> closure = new HashSet<>();
-        closure.add(state);
-        Stack<String> stack = new Stack<>();
-        stack.push(state);
-        while(!stack.empty()) {
-            String currentState = stack.pop();
-            for(Transition t : transitions) {
-                if(t.getCurrentState().equals(currentState) && t.getTransitionLabel().equals("") && !closure.contains(t.getNextState())) {
-                    closure.add(t.getNextState());
-                    stack.push(t.getNextState());
+            for (int state = 0; state < reachable; state++) {
+                String name = blockNames.get(blocks[state]);
+                if (name != null) {
+                    mapping.put(table.getStateName(order[state]), name);
                 }
             }
         }
-        return closure;
-    }
 
-    private boolean isAcceptState(Set<String> stateSet) {
-        for (String state : stateSet) {
-            if (acceptStates.contains(state)) {
-                return true;
-            }
+        // Every state of this automaton, even an unreachable one, to the minimal states whose subsets contain it
+        Map<String, Set<String>> originalMapping = new HashMap<>();
+        for (String state : states) {
+            originalMapping.put(state, new TreeSet<>());
         }
-        return false;
-    }
-
-    private String setToString(Set<String> set) {
-        StringBuilder sb = new StringBuilder("{");
-        boolean first = true;
-        for (String element : set) {
-            if (!first) {
-                sb.append(",");
+        if (subsets == null) {
+            for (Map.Entry<String, String> entry : mapping.entrySet()) {
+                originalMapping.computeIfAbsent(entry.getKey(), k -> new TreeSet<>()).add(entry.getValue());
+            }
+        } else {
+            AutomatonIndex index = subsets.getIndex();
+            for (int subset = 0; subset < subsets.getStateCount(); subset++) {
+                String name = mapping.get(subsets.getStateName(subset));
+                if (name == null) {
+                    continue;
+                }
+                BitSet members = subsets.getMembers(subset);
+                for (int state = members.nextSetBit(0); state >= 0; state = members.nextSetBit(state + 1)) {
+                    originalMapping.computeIfAbsent(index.getStateName(state), k -> new TreeSet<>()).add(name);
+                }
             }
-            sb.append(element);
-            first = false;
         }
-        sb.append("}");
-        return sb.toString();
-    }
-
 
+        FiniteAutomaton minimal = new FiniteAutomaton(newStates, new HashSet<>(dfa.getAlphabet()),
+                newTransitions.toArray(new Transition[0]), newStart, newAcceptStates);
+        return new MinimizedAutomaton(minimal, mapping, originalMapping);
+    }
 }
@@ -0,0 +1,151 @@
+package automaton;
+
+import java.util.*;
+
+public final class Hopcroft {
+
+    private Hopcroft() {
+    }
+
+    // Coarsest partition of a complete DFA (table[state * symbolCount + symbol], no dead entries) that refines
+    // initialClass and is stable under every transition. Returns the block id of every state.
+    public static int[] refine(int stateCount, int symbolCount, int[] table, int[] initialClass) {
+        // Inverse transitions: sources of (symbol, target) stored as compressed rows
+        int[] inverseOffsets = new int[symbolCount * stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                inverseOffsets[symbol * stateCount + table[state * symbolCount + symbol] + 1]++;
+            }
+        }
+        for (int i = 1; i < inverseOffsets.length; i++) {
+            inverseOffsets[i] += inverseOffsets[i - 1];
+        }
+        int[] inverseSources = new int[stateCount * symbolCount];
+        int[] fill = Arrays.copyOf(inverseOffsets, inverseOffsets.length - 1);
+        for (int state = 0; state < stateCount; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                inverseSources[fill[symbol * stateCount + table[state * symbolCount + symbol]]++] = state;
+            }
+        }
+
+        // Partition as a permutation of states where every block owns a contiguous range [blockStart, blockEnd)
+        int[] elements = new int[stateCount];
+        int[] location = new int[stateCount];
+        int[] blockOf = new int[stateCount];
+        int[] blockStart = new int[stateCount + 1];
+        int[] blockEnd = new int[stateCount + 1];
+        int[] marked = new int[stateCount + 1];
+        int blockCount = 0;
+
+        Map<Integer, Integer> classBlocks = new HashMap<>();
+        int[] classSizes = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            Integer block = classBlocks.get(initialClass[state]);
+            if (block == null) {
+                block = blockCount++;
+                classBlocks.put(initialClass[state], block);
+            }
+            blockOf[state] = block;
+            classSizes[block]++;
+        }
+        int position = 0;
+        for (int block = 0; block < blockCount; block++) {
+            blockStart[block] = position;
+            blockEnd[block] = position;
+            position += classSizes[block];
+        }
+        for (int state = 0; state < stateCount; state++) {
+            int block = blockOf[state];
+            elements[blockEnd[block]] = state;
+            location[state] = blockEnd[block]++;
+        }
+
+        // Worklist of (block, symbol) splitters; every initial block but the largest is enough
+        boolean[] inWorklist = new boolean[(stateCount + 1) * symbolCount];
+        int[] worklist = new int[(stateCount + 1) * symbolCount];
+        int worklistSize = 0;
+        int largest = 0;
+        for (int block = 1; block < blockCount; block++) {
+            if (blockEnd[block] - blockStart[block] > blockEnd[largest] - blockStart[largest]) {
+                largest = block;
+            }
+        }
+        for (int block = 0; block < blockCount; block++) {
+            if (block == largest) {
+                continue;
+            }
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                inWorklist[block * symbolCount + symbol] = true;
+                worklist[worklistSize++] = block * symbolCount + symbol;
+            }
+        }
+
+        int[] splitter = new int[stateCount];
+        int[] touched = new int[stateCount];
+        while (worklistSize > 0) {
+            int entry = worklist[--worklistSize];
+            inWorklist[entry] = false;
+            int splitterBlock = entry / symbolCount;
+            int symbol = entry % symbolCount;
+
+            // Snapshot the splitter, marking moves states around inside their blocks
+            int splitterSize = blockEnd[splitterBlock] - blockStart[splitterBlock];
+            System.arraycopy(elements, blockStart[splitterBlock], splitter, 0, splitterSize);
+
+            int touchedCount = 0;
+            for (int i = 0; i < splitterSize; i++) {
+                int row = symbol * stateCount + splitter[i];
+                for (int j = inverseOffsets[row]; j < inverseOffsets[row + 1]; j++) {
+                    int source = inverseSources[j];
+                    int block = blockOf[source];
+                    int markedEnd = blockStart[block] + marked[block];
+                    if (location[source] < markedEnd) {
+                        continue;
+                    }
+                    if (marked[block] == 0) {
+                        touched[touchedCount++] = block;
+                    }
+                    // Swap the source into the marked prefix of its block
+                    int other = elements[markedEnd];
+                    elements[markedEnd] = source;
+                    elements[location[source]] = other;
+                    location[other] = location[source];
+                    location[source] = markedEnd;
+                    marked[block]++;
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                int block = touched[i];
+                int markedCount = marked[block];
+                marked[block] = 0;
+                if (markedCount == blockEnd[block] - blockStart[block]) {
+                    continue;
+                }
+
+                // The marked prefix becomes a new block
+                int newBlock = blockCount++;
+                blockStart[newBlock] = blockStart[block];
+                blockEnd[newBlock] = blockStart[block] + markedCount;
+                blockStart[block] = blockEnd[newBlock];
+                for (int p = blockStart[newBlock]; p < blockEnd[newBlock]; p++) {
+                    blockOf[elements[p]] = newBlock;
+                }
+
+                boolean newIsSmaller = markedCount <= blockEnd[block] - blockStart[block];
+                for (int s = 0; s < symbolCount; s++) {
+                    int add;
+                    if (inWorklist[block * symbolCount + s]) {
+                        add = newBlock * symbolCount + s;
+                    } else {
+                        add = (newIsSmaller ? newBlock : block) * symbolCount + s;
+                    }
+                    inWorklist[add] = true;
+                    worklist[worklistSize++] = add;
+                }
+            }
+        }
+
+        return blockOf;
+    }
+}
@@ -0,0 +1,178 @@
+package automaton;
+
+import java.util.*;
+
+// Matches against an NFA by materializing subset states only when an input reaches them.
+// Not thread safe: every thread should use its own instance.
+public final class LazyDfa {
+    public static final long DEFAULT_MEMORY_BUDGET = 8L << 20;
+
+    private static final int UNKNOWN = -2;
+    private static final int DEAD = -1;
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final AutomatonIndex nfa;
+    private final int symbolCount;
+    private final int symbolOffset;
+    private final int[] symbolIndex;
+    private final long memoryBudget;
+
+    private final Map<BitSet, Integer> ids = new HashMap<>();
+    private final List<BitSet> sets = new ArrayList<>();
+    private boolean[] accepting = new boolean[16];
+    private int[] table;
+    private long memoryUsage;
+    private int startState;
+
+    private long hits;
+    private long misses;
+    private long flushes;
+
+    public LazyDfa(FiniteAutomaton automaton) {
+        this(automaton, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public LazyDfa(FiniteAutomaton automaton, long memoryBudget) {
+        this.nfa = new AutomatonIndex(automaton);
+        this.symbolCount = nfa.getSymbolCount();
+        this.memoryBudget = memoryBudget;
+        this.table = new int[Math.max(16, 16 * symbolCount)];
+
+        // Words are read char by char, so only single character symbols can be followed
+        int min = Character.MAX_VALUE;
+        int max = -1;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            String label = nfa.getSymbol(symbol);
+            if (label.length() == 1) {
+                min = Math.min(min, label.charAt(0));
+                max = Math.max(max, label.charAt(0));
+            }
+        }
+        this.symbolOffset = max < 0 ? 0 : min;
+        this.symbolIndex = new int[max < 0 ? 0 : max - min + 1];
+        Arrays.fill(symbolIndex, -1);
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            String label = nfa.getSymbol(symbol);
+            if (label.length() == 1) {
+                symbolIndex[label.charAt(0) - symbolOffset] = symbol;
+            }
+        }
+        flush();
+    }
+
+    public boolean matches(CharSequence word) {
+        if (startState == DEAD) {
+            return false;
+        }
+        int state = startState;
+        for (int i = 0, length = word.length(); i < length; i++) {
+            int offset = word.charAt(i) - symbolOffset;
+            if (offset < 0 || offset >= symbolIndex.length || symbolIndex[offset] < 0) {
+                return false;
+            }
+            int symbol = symbolIndex[offset];
+            int next = table[state * symbolCount + symbol];
+            if (next == UNKNOWN) {
+                misses++;
+                next = computeNext(state, symbol);
+            } else {
+                hits++;
+            }
+            if (next == DEAD) {
+                return false;
+            }
+            state = next;
+        }
+        return accepting[state];
+    }
+
+    private int computeNext(int state, int symbol) {
+        BitSet nextSet = nfa.move(sets.get(state), symbol);
+        if (nextSet.isEmpty()) {
+            table[state * symbolCount + symbol] = DEAD;
+            return DEAD;
+        }
+        Integer known = ids.get(nextSet);
+        if (known != null) {
+            table[state * symbolCount + symbol] = known;
+            return known;
+        }
+
+        long cost = stateCost(nextSet);
+        if (memoryUsage + cost > memoryBudget) {
+            // Flush on full: the edge we came from is lost with the cache, the target state survives as a fresh entry
+            flush();
+            known = ids.get(nextSet);
+            return known != null ? known : add(nextSet, cost);
+        }
+        int next = add(nextSet, cost);
+        table[state * symbolCount + symbol] = next;
+        return next;
+    }
+
+    private int add(BitSet set, long cost) {
+        int id = sets.size();
+        sets.add(set);
+        ids.put(set, id);
+        if (id >= accepting.length) {
+            accepting = Arrays.copyOf(accepting, accepting.length * 2);
+        }
+        accepting[id] = nfa.containsAccepting(set);
+        int end = (id + 1) * symbolCount;
+        if (end > table.length) {
+            table = Arrays.copyOf(table, Math.max(end, table.length * 2));
+        }
+        Arrays.fill(table, id * symbolCount, end, UNKNOWN);
+        memoryUsage += cost;
+        return id;
+    }
+
+    private long stateCost(BitSet set) {
+        return ENTRY_OVERHEAD + (set.length() + 63) / 64 * 8L + 4L * symbolCount;
+    }
+
+    private void flush() {
+        if (!sets.isEmpty()) {
+            flushes++;
+        }
+        sets.clear();
+        ids.clear();
+        memoryUsage = 0;
+        if (nfa.getStartState() < 0) {
+            startState = DEAD;
+            return;
+        }
+        BitSet start = nfa.getStartClosure();
+        startState = add(start, stateCost(start));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public int getCachedStates() {
+        return sets.size();
+    }
+
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        flushes = 0;
+    }
+}
@@ -0,0 +1,101 @@
+package automaton;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Matches directly against a buffer in the AutomatonFile layout; only the small symbol lookup is built on load
+public final class MappedAutomaton implements DfaTable {
+    private final ByteBuffer buffer;
+    private final int stateCount;
+    private final int alphabetSize;
+    private final int startState;
+    private final int tableOffset;
+    private final int acceptOffset;
+    private final int symbolOffset;
+    private final int[] symbolIndex;
+
+    public MappedAutomaton(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < AutomatonFile.HEADER_SIZE || buffer.getInt(0) != AutomatonFile.MAGIC) {
+            throw new IllegalArgumentException("Not a compiled automaton file");
+        }
+        if (buffer.getInt(4) != AutomatonFile.VERSION) {
+            throw new IllegalArgumentException("Unsupported automaton file version: " + buffer.getInt(4));
+        }
+        this.stateCount = buffer.getInt(8);
+        this.alphabetSize = buffer.getInt(12);
+        this.startState = buffer.getInt(16);
+        // size rejects negative and oversized counts, after it every offset below fits an int
+        if (buffer.capacity() < AutomatonFile.size(stateCount, alphabetSize)) {
+            throw new IllegalArgumentException("Truncated automaton file");
+        }
+        if (startState < CompiledAutomaton.DEAD_STATE || startState >= stateCount) {
+            throw new IllegalArgumentException("Start state " + startState + " is out of range");
+        }
+        this.tableOffset = AutomatonFile.HEADER_SIZE + 4 * alphabetSize;
+        this.acceptOffset = (int) AutomatonFile.acceptOffset(stateCount, alphabetSize);
+
+        int min = Character.MAX_VALUE;
+        int max = -1;
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int c = getSymbol(symbol);
+            min = Math.min(min, c);
+            max = Math.max(max, c);
+        }
+        this.symbolOffset = max < 0 ? 0 : min;
+        this.symbolIndex = new int[max < 0 ? 0 : max - min + 1];
+        Arrays.fill(symbolIndex, -1);
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            symbolIndex[getSymbol(symbol) - symbolOffset] = symbol;
+        }
+    }
+
+    public boolean matches(CharSequence word) {
+        int state = startState;
+        for (int i = 0, length = word.length(); i < length && state >= 0; i++) {
+            state = step(state, word.charAt(i));
+        }
+        return state >= 0 && isAccepting(state);
+    }
+
+    @Override
+    public int step(int state, char c) {
+        int offset = c - symbolOffset;
+        if (offset < 0 || offset >= symbolIndex.length || symbolIndex[offset] < 0) {
+            return CompiledAutomaton.DEAD_STATE;
+        }
+        checkState(state);
+        // state * alphabetSize stays below the table size that AutomatonFile.size checked
+        return buffer.getInt(tableOffset + 4 * (state * alphabetSize + symbolIndex[offset]));
+    }
+
+    // A corrupt table can point past the last state
+    private void checkState(int state) {
+        if (state < 0 || state >= stateCount) {
+            throw new IllegalStateException("State " + state + " is out of range, the automaton has " + stateCount);
+        }
+    }
+
+    @Override
+    public int getStartState() {
+        return startState;
+    }
+
+    @Override
+    public boolean isAccepting(int state) {
+        checkState(state);
+        return (buffer.getLong(acceptOffset + 8 * (state >>> 6)) & (1L << state)) != 0;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    public char getSymbol(int symbol) {
+        return (char) buffer.getInt(AutomatonFile.HEADER_SIZE + 4 * symbol);
+    }
+}
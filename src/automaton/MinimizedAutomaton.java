@@ -0,0 +1,33 @@
+package automaton;
+
+import java.util.Map;
+import java.util.Set;
+
+public class MinimizedAutomaton {
+    private final FiniteAutomaton automaton;
+    private final Map<String, String> stateMapping;
+    private final Map<String, Set<String>> originalStateMapping;
+
+    public MinimizedAutomaton(FiniteAutomaton automaton, Map<String, String> stateMapping,
+                              Map<String, Set<String>> originalStateMapping) {
+        this.automaton = automaton;
+        this.stateMapping = stateMapping;
+        this.originalStateMapping = originalStateMapping;
+    }
+
+    public FiniteAutomaton getAutomaton() {
+        return automaton;
+    }
+
+    // DFA state -> new state; unreachable and dead states have no entry. For an NFA the keys are the states of
+    // its subset construction, named like {q0,q1}
+    public Map<String, String> getStateMapping() {
+        return stateMapping;
+    }
+
+    // Every state of the automaton that was minimized -> the new states it is part of: at most one for a DFA,
+    // possibly several for an NFA, and none for unreachable and dead states
+    public Map<String, Set<String>> getOriginalStateMapping() {
+        return originalStateMapping;
+    }
+}
@@ -0,0 +1,119 @@
+package automaton;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Runs a DFA over input that arrives in chunks. The automaton state is carried across chunk boundaries,
+// so memory use does not depend on the size of the input or of a single record.
+public final class StreamingMatcher {
+    public static final int NO_DELIMITER = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public interface RecordListener {
+        void onRecord(long record, boolean accepted);
+    }
+
+    private final DfaTable dfa;
+    private final int delimiter;
+    private final RecordListener listener;
+
+    private int state;
+    private boolean pending;
+    private long records;
+    private long accepted;
+
+    // Without a delimiter the whole input is a single record, reported when finish() is called
+    public StreamingMatcher(DfaTable dfa, RecordListener listener) {
+        this(dfa, NO_DELIMITER, listener);
+    }
+
+    public StreamingMatcher(DfaTable dfa, int delimiter, RecordListener listener) {
+        this.dfa = dfa;
+        this.delimiter = delimiter;
+        this.listener = listener;
+        this.state = dfa.getStartState();
+    }
+
+    public void feed(CharSequence chunk) {
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    public void feed(char[] chunk, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(chunk[i]);
+        }
+    }
+
+    // Bytes are read as ISO-8859-1, one char per byte; the buffer's position is advanced to its limit
+    public void feed(ByteBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            accept((char) (chunk.get() & 0xFF));
+        }
+    }
+
+    private void accept(char c) {
+        if (c == delimiter) {
+            endRecord();
+            return;
+        }
+        pending = true;
+        if (state >= 0) {
+            state = dfa.step(state, c);
+        }
+    }
+
+    private void endRecord() {
+        boolean result = state >= 0 && dfa.isAccepting(state);
+        if (result) {
+            accepted++;
+        }
+        listener.onRecord(records++, result);
+        state = dfa.getStartState();
+        pending = false;
+    }
+
+    // Reports the trailing record; an empty record after a final delimiter is not reported
+    public void finish() {
+        if (pending || (delimiter == NO_DELIMITER && records == 0)) {
+            endRecord();
+        }
+    }
+
+    public void match(Reader reader) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            feed(buffer, 0, read);
+        }
+        finish();
+    }
+
+    public void match(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            feed(buffer);
+            buffer.clear();
+        }
+        finish();
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public static boolean matches(DfaTable dfa, Reader reader) throws IOException {
+        boolean[] result = new boolean[1];
+        new StreamingMatcher(dfa, (record, accepted) -> result[0] = accepted).match(reader);
+        return result[0];
+    }
+}
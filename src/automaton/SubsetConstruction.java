@@ -0,0 +1,157 @@
+package automaton;
+
+import java.util.*;
+
+public final class SubsetConstruction {
+    public static final int DEFAULT_MAX_STATES = 100_000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private final AutomatonIndex nfa;
+    private final List<BitSet> dfaStates = new ArrayList<>();
+    private int[] table;
+    private final int startState;
+
+    private SubsetConstruction(AutomatonIndex nfa, int maxStates, long timeoutMillis) {
+        this.nfa = nfa;
+        int symbolCount = nfa.getSymbolCount();
+        this.table = new int[Math.max(16, symbolCount * 16)];
+
+        if (nfa.getStartState() < 0) {
+            this.startState = -1;
+            return;
+        }
+
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        Map<BitSet, Integer> ids = new HashMap<>();
+        BitSet start = nfa.getStartClosure();
+        ids.put(start, 0);
+        dfaStates.add(start);
+        this.startState = 0;
+
+        // DFA states are numbered in discovery order, so the worklist is just the next unprocessed id
+        for (int current = 0; current < dfaStates.size(); current++) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Subset construction timed out after " + timeoutMillis + " ms with " + dfaStates.size() + " states");
+            }
+            BitSet currentSet = dfaStates.get(current);
+            ensureCapacity((current + 1) * symbolCount);
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                BitSet nextSet = nfa.move(currentSet, symbol);
+                int next = -1;
+                if (!nextSet.isEmpty()) {
+                    Integer known = ids.get(nextSet);
+                    if (known == null) {
+                        if (dfaStates.size() >= maxStates) {
+                            throw new IllegalStateException("Subset construction exceeded the limit of " + maxStates + " states");
+                        }
+                        known = dfaStates.size();
+                        ids.put(nextSet, known);
+                        dfaStates.add(nextSet);
+                    }
+                    next = known;
+                }
+                table[current * symbolCount + symbol] = next;
+            }
+        }
+        this.table = Arrays.copyOf(table, dfaStates.size() * symbolCount);
+    }
+
+    public static SubsetConstruction determinize(AutomatonIndex nfa) {
+        return determinize(nfa, DEFAULT_MAX_STATES, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public static SubsetConstruction determinize(AutomatonIndex nfa, int maxStates, long timeoutMillis) {
+        return new SubsetConstruction(nfa, maxStates, timeoutMillis);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > table.length) {
+            table = Arrays.copyOf(table, Math.max(size, table.length * 2));
+        }
+    }
+
+    public int getStateCount() {
+        return dfaStates.size();
+    }
+
+    public int getStartState() {
+        return startState;
+    }
+
+    // Next DFA state for the symbol id of the index, or -1 when the subset is empty
+    public int next(int state, int symbol) {
+        return table[state * nfa.getSymbolCount() + symbol];
+    }
+
+    // Name the state gets in toFiniteAutomaton
+    public String getStateName(int state) {
+        return stateName(dfaStates.get(state));
+    }
+
+    public BitSet getMembers(int state) {
+        return (BitSet) dfaStates.get(state).clone();
+    }
+
+    public boolean isAccepting(int state) {
+        return nfa.containsAccepting(dfaStates.get(state));
+    }
+
+    public AutomatonIndex getIndex() {
+        return nfa;
+    }
+
+    public FiniteAutomaton toFiniteAutomaton(Set<String> alphabet) {
+        FiniteAutomaton dfa = new FiniteAutomaton(new Transition[0]);
+        dfa.setAlphabet(alphabet);
+        if (startState < 0) {
+            return dfa;
+        }
+
+        String[] names = new String[dfaStates.size()];
+        Set<String> states = new HashSet<>();
+        Set<String> acceptStates = new HashSet<>();
+        for (int state = 0; state < names.length; state++) {
+            names[state] = stateName(dfaStates.get(state));
+            states.add(names[state]);
+            if (isAccepting(state)) {
+                acceptStates.add(names[state]);
+            }
+        }
+
+        int symbolCount = nfa.getSymbolCount();
+        List<Transition> transitions = new ArrayList<>();
+        for (int state = 0; state < names.length; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int next = table[state * symbolCount + symbol];
+                if (next >= 0) {
+                    transitions.add(new Transition(names[state], names[next], nfa.getSymbol(symbol)));
+                }
+            }
+        }
+
+        dfa.setStates(states);
+        dfa.setStartState(names[startState]);
+        dfa.setAcceptStates(acceptStates);
+        dfa.setTransitions(transitions.toArray(new Transition[0]));
+        return dfa;
+    }
+
+    // Same "{a,b}" naming the string based construction used, ordered like a HashSet of the members
+    private String stateName(BitSet members) {
+        Set<String> set = new HashSet<>();
+        for (int state = members.nextSetBit(0); state >= 0; state = members.nextSetBit(state + 1)) {
+            set.add(nfa.getStateName(state));
+        }
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (String element : set) {
+            if (!first) {
+                sb.append(",");
+            }
+            sb.append(element);
+            first = false;
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package automaton;
+
+import grammar.Grammar;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Counts the accepted words of every length and draws uniformly random words of a given length. Runs on the
+// compiled transition table of a DFA (non-deterministic automata are determinized first), where accepted
+// words and accepting paths are the same thing. For every length k there is a vector with the number of words
+// of length k accepted from each state; it is computed once from the vector for k - 1 and cached. Counts stay
+// long until a length overflows, from that length on they are BigInteger. Sampling walks from the start state
+// and picks every symbol with probability proportional to the count of its target, so it costs one pass over
+// the alphabet per character.
+public final class WordCounter {
+    private final CompiledAutomaton dfa;
+    private final int stateCount;
+    private final int alphabetSize;
+
+    // Vectors for lengths below overflowLength are long, the others BigInteger; both grow by copying, so a
+    // reader that saw a length as computed can keep using the arrays it read
+    private volatile long[][] exact;
+    private volatile BigInteger[][] big;
+    private volatile int computed;
+    private volatile int overflowLength = Integer.MAX_VALUE;
+
+    public WordCounter(FiniteAutomaton automaton) {
+        this.dfa = (automaton.isDeterministic() ? automaton : automaton.convertToDFA()).compile();
+        this.stateCount = dfa.getStateCount();
+        this.alphabetSize = dfa.getAlphabetSize();
+        long[] empty = new long[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            empty[state] = dfa.isAccepting(state) ? 1 : 0;
+        }
+        this.exact = new long[][]{empty};
+        this.big = new BigInteger[1][];
+        this.computed = 1;
+    }
+
+    // The grammar has to be right-linear, see Grammar.toFiniteAutomaton
+    public WordCounter(Grammar grammar) {
+        this(grammar.toFiniteAutomaton());
+    }
+
+    // Number of accepted words with exactly length characters
+    public BigInteger count(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative word length: " + length);
+        }
+        extendTo(length);
+        int start = dfa.getStartState();
+        return start == CompiledAutomaton.DEAD_STATE ? BigInteger.ZERO : countAt(length, start);
+    }
+
+    public String sample(int length, SplittableRandom random) {
+        if (count(length).signum() == 0) {
+            throw new IllegalArgumentException("No accepted word of length " + length);
+        }
+        long[][] exact = this.exact;
+        BigInteger[][] big = this.big;
+        int overflow = overflowLength;
+
+        // Rank of the word among all accepted words of the remaining length from the current state
+        int state = dfa.getStartState();
+        BigInteger bigRank = length >= overflow ? below(big[length][state], random) : null;
+        long rank = length < overflow ? random.nextLong(exact[length][state]) : 0;
+        StringBuilder word = new StringBuilder(length);
+        for (int remaining = length; remaining > 0; remaining--) {
+            int rest = remaining - 1;
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int target = dfa.next(state, symbol);
+                if (target == CompiledAutomaton.DEAD_STATE) {
+                    continue;
+                }
+                if (bigRank != null) {
+                    BigInteger count = rest >= overflow ? big[rest][target] : BigInteger.valueOf(exact[rest][target]);
+                    if (bigRank.compareTo(count) < 0) {
+                        word.append(dfa.getSymbol(symbol));
+                        state = target;
+                        break;
+                    }
+                    bigRank = bigRank.subtract(count);
+                } else {
+                    long count = exact[rest][target];
+                    if (rank < count) {
+                        word.append(dfa.getSymbol(symbol));
+                        state = target;
+                        break;
+                    }
+                    rank -= count;
+                }
+            }
+            if (bigRank != null && rest < overflow) {
+                rank = bigRank.longValueExact();
+                bigRank = null;
+            }
+        }
+        return word.toString();
+    }
+
+    private BigInteger countAt(int length, int state) {
+        BigInteger[] vector = big[length];
+        return vector != null ? vector[state] : BigInteger.valueOf(exact[length][state]);
+    }
+
+    private synchronized void extendTo(int length) {
+        if (length < computed) {
+            return;
+        }
+        long[][] exact = Arrays.copyOf(this.exact, Math.max(length + 1, this.exact.length * 2));
+        BigInteger[][] big = Arrays.copyOf(this.big, exact.length);
+        for (int k = computed; k <= length; k++) {
+            if (k < overflowLength) {
+                exact[k] = step(exact[k - 1]);
+                if (exact[k] != null) {
+                    continue;
+                }
+                overflowLength = k;
+            }
+            big[k] = step(big[k - 1] != null ? big[k - 1] : toBig(exact[k - 1]));
+        }
+        this.exact = exact;
+        this.big = big;
+        this.computed = length + 1;
+    }
+
+    // Counts one length further, or null once a count no longer fits in a long
+    private long[] step(long[] previous) {
+        long[] counts = new long[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            long sum = 0;
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int target = dfa.next(state, symbol);
+                if (target != CompiledAutomaton.DEAD_STATE) {
+                    sum += previous[target];
+                    if (sum < 0) {
+                        return null;
+                    }
+                }
+            }
+            counts[state] = sum;
+        }
+        return counts;
+    }
+
+    private BigInteger[] step(BigInteger[] previous) {
+        BigInteger[] counts = new BigInteger[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int target = dfa.next(state, symbol);
+                if (target != CompiledAutomaton.DEAD_STATE) {
+                    sum = sum.add(previous[target]);
+                }
+            }
+            counts[state] = sum;
+        }
+        return counts;
+    }
+
+    private static BigInteger[] toBig(long[] counts) {
+        BigInteger[] result = new BigInteger[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            result[i] = BigInteger.valueOf(counts[i]);
+        }
+        return result;
+    }
+
+    // Uniform in [0, bound) by rejection on bound.bitLength() random bits
+    private static BigInteger below(BigInteger bound, SplittableRandom random) {
+        int bits = bound.bitLength();
+        // A leading zero byte keeps the value positive
+        byte[] bytes = new byte[(bits + 7) / 8 + 1];
+        int excess = (bytes.length - 1) * 8 - bits;
+        while (true) {
+            for (int i = 1; i < bytes.length; i++) {
+                bytes[i] = (byte) random.nextInt();
+            }
+            bytes[1] &= (byte) (0xFF >>> excess);
+            BigInteger value = new BigInteger(bytes);
+            if (value.compareTo(bound) < 0) {
+                return value;
+            }
+        }
+    }
+}
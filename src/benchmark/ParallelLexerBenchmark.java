@@ -0,0 +1,58 @@
+package benchmark;
+
+import lexer.Lexer;
+import lexer.ParallelLexer;
+import lexer.Token;
+
+import java.util.List;
+
+// Sequential Lexer.lex against ParallelLexer.lex on a large generated program (32 MB by default, the size in MB
+// can be passed as the first argument). Run with: java -Xmx8g -cp out benchmark.ParallelLexerBenchmark
+public class ParallelLexerBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        String program = "x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}\nif ( x == 0) {\nprint(x);\n} else {\nprint(1);\n}\n"
+                + "y = 5.25;\nx = y * 2 / z;\nprint(x);\nfoo(y);\nwhile (y > 0) { y = y + x; }\n";
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < megabytes << 20) {
+            builder.append(program);
+        }
+        String text = builder.toString();
+
+        ParallelLexer parallel = new ParallelLexer();
+        List<Token> expected = new Lexer(text).lex();
+        List<Token> actual = parallel.lex(text);
+        if (!expected.toString().equals(actual.toString())) {
+            throw new IllegalStateException("Parallel lexing differs from sequential lexing");
+        }
+        System.out.println("Tokens: " + expected.size() + " from " + text.length() + " chars, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        expected = null;
+        actual = null;
+
+        report("Lexer", text.length(), () -> new Lexer(text).lex().size());
+        report("ParallelLexer", text.length(), () -> parallel.lex(text).size());
+    }
+
+    private interface Round {
+        long run() throws Exception;
+    }
+
+    private static void report(String name, int chars, Round round) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-14s best %.1f ms, %.1f MB/s (checksum %d)%n",
+                name, best / 1e6, chars / 1048576.0 / (best / 1e9), sink);
+    }
+}
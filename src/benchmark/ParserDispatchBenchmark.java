@@ -0,0 +1,144 @@
+package benchmark;
+
+import lexer.TokenCursor;
+import lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parser dispatch cost on a ~10 MB token stream: the old String.equals chains against a switch over TokenKind.
+// Plain harness with warmup rounds; run with: java -cp out benchmark.ParserDispatchBenchmark
+public class ParserDispatchBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String program = "x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}\nif ( x == 0) {\nprint(x);\n} else {\nprint(1);\n}\n"
+                + "y = 5;\nx = y * 2 / z;\nprint(x);\nfoo(y);\nwhile (y > 0) { y = y + x; }\n";
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10 << 20) {
+            text.append(program);
+        }
+
+        List<String> typeList = new ArrayList<>();
+        List<TokenKind> kindList = new ArrayList<>();
+        TokenCursor cursor = new TokenCursor(text);
+        while (cursor.advance()) {
+            typeList.add(cursor.tokenType());
+            kindList.add(cursor.kind());
+        }
+        String[] types = typeList.toArray(new String[0]);
+        TokenKind[] kinds = kindList.toArray(new TokenKind[0]);
+        System.out.println("Tokens: " + types.length + " from " + text.length() + " chars");
+
+        report("String dispatch", types.length, () -> stringDispatch(types));
+        report("TokenKind switch", kinds.length, () -> kindDispatch(kinds));
+    }
+
+    private interface Round {
+        long run();
+    }
+
+    private static void report(String name, int tokens, Round round) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += round.run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf("%-18s best %.2f ns/token, mean %.2f ns/token (checksum %d)%n",
+                name, (double) best / tokens, (double) total / MEASURED_ROUNDS / tokens, sink);
+    }
+
+    // Same decision chains Parser.parse and Parser.parseExpression used before token kinds
+    private static long stringDispatch(String[] types) {
+        long result = 0;
+        for (String type : types) {
+            if (type.equals("IDENTIFIER")) {
+                result += 1;
+            } else if (type.equals("PRINT")) {
+                result += 2;
+            } else if (type.equals("WHILE")) {
+                result += 3;
+            } else if (type.equals("IF")) {
+                result += 4;
+            } else if (type.equals("ELSE")) {
+                result += 5;
+            } else if (type.equals("RBRACE")) {
+                result += 6;
+            } else if (type.equals("EQUALS")) {
+                result += 7;
+            } else if (type.equals("NOT_EQUALS")) {
+                result += 8;
+            } else if (type.equals("GREATER_THAN")) {
+                result += 9;
+            } else if (type.equals("PLUS")) {
+                result += 10;
+            } else if (type.equals("MULTIPLY")) {
+                result += 11;
+            } else if (type.equals("DIVIDE")) {
+                result += 12;
+            } else if (type.equals("ASSIGNMENT")) {
+                result += 13;
+            }
+        }
+        return result;
+    }
+
+    private static long kindDispatch(TokenKind[] kinds) {
+        long result = 0;
+        for (TokenKind kind : kinds) {
+            switch (kind) {
+                case IDENTIFIER:
+                    result += 1;
+                    break;
+                case PRINT:
+                    result += 2;
+                    break;
+                case WHILE:
+                    result += 3;
+                    break;
+                case IF:
+                    result += 4;
+                    break;
+                case ELSE:
+                    result += 5;
+                    break;
+                case RBRACE:
+                    result += 6;
+                    break;
+                case EQUALS:
+                    result += 7;
+                    break;
+                case NOT_EQUALS:
+                    result += 8;
+                    break;
+                case GREATER_THAN:
+                    result += 9;
+                    break;
+                case PLUS:
+                    result += 10;
+                    break;
+                case MULTIPLY:
+                    result += 11;
+                    break;
+                case DIVIDE:
+                    result += 12;
+                    break;
+                case ASSIGNMENT:
+                    result += 13;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+}
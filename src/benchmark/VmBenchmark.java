@@ -0,0 +1,65 @@
+package benchmark;
+
+import vm.BytecodeCompiler;
+import vm.Program;
+import vm.TieredScript;
+import vm.VirtualMachine;
+
+// Loop iterations per second on tight while loops, interpreted by the bytecode VM and compiled to a hidden class
+// by TieredScript (10M iterations by default, the count can be passed as the first argument).
+// Run with: java -cp out benchmark.VmBenchmark
+public class VmBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        // A bare x = x + 1 loop is folded by the JIT to its final value, so the counter row carries a hash that
+        // has no closed form; every row checks the value its loop computes
+        report("counter", iterations, "h", "x = 0;\nh = 0;\nwhile (x < " + iterations + ") {\nh = h * 31 + x;\nx = x + 1;\n}");
+        report("arithmetic", iterations, "y", "x = 0;\ny = 0;\nwhile (x < " + iterations + ") {\ny = y + x * 2 - x / 3;\nx = x + 1;\n}");
+        report("float", iterations, "y", "x = 0;\ny = 0.5;\nwhile (x < " + iterations + ") {\ny = y * 0.999 + 1.5;\nx = x + 1;\n}");
+        report("branches", iterations, "n", "x = 0;\nn = 0;\nwhile (x < " + iterations + ") {\n"
+                + "if (x % 3 == 0 || x % 5 == 0 && x > 10) {\nn = n + 1;\n} else {\nn = n - 1;\n}\nx = x + 1;\n}");
+    }
+
+    private interface Round {
+        long run() throws Exception;
+    }
+
+    private static void report(String name, long iterations, String result, String source) throws Exception {
+        Program program = BytecodeCompiler.compile(source);
+        report(name + " vm", iterations, () -> {
+            VirtualMachine vm = new VirtualMachine(program);
+            vm.run();
+            return checksum(vm.getValue(result));
+        });
+        TieredScript script = new TieredScript(source, 0, System.out);
+        report(name + " jvm", iterations, () -> {
+            script.run();
+            return checksum(script.getValue(result));
+        });
+        if (!script.isCompiled()) {
+            throw new IllegalStateException(name + " was not compiled");
+        }
+    }
+
+    private static long checksum(Object value) {
+        return value instanceof Double ? Double.doubleToLongBits((Double) value) : (Long) value;
+    }
+
+    private static void report(String name, long iterations, Round round) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-15s best %.1f ms, %.1f M iterations/s, %.1f ns/iteration (checksum %d)%n",
+                name, best / 1e6, iterations / 1e3 / (best / 1e6), (double) best / iterations, sink);
+    }
+}
@@ -0,0 +1,45 @@
+package benchmark;
+
+import grammar.Grammar;
+import grammar.WordGenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Words per second from WordGenerator.words on the base grammar and on balanced brackets (2M words by default,
+// the count can be passed as the first argument). Run with: java -cp out benchmark.WordGeneratorBenchmark
+public class WordGeneratorBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        Map<String, List<String>> rules = new HashMap<>();
+        rules.put("S", new ArrayList<>(List.of("(S)S", "")));
+        Grammar brackets = new Grammar("S", new HashSet<>(Set.of("(", ")")), new HashSet<>(Set.of("S")), rules);
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+        report("base 0..40", count, new WordGenerator(Grammar.baseGrammar(), 1), 0, 40);
+        report("base 100..200", count / 10, new WordGenerator(Grammar.baseGrammar(), 1), 100, 200);
+        report("brackets 0..64", count, new WordGenerator(brackets, 1), 0, 64);
+    }
+
+    private static void report(String name, long count, WordGenerator generator, int minLength, int maxLength) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += generator.words(count, minLength, maxLength).mapToLong(String::length).sum();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += generator.words(count, minLength, maxLength).mapToLong(String::length).sum();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-15s best %.1f ms, %.2f M words/s (checksum %d)%n",
+                name, best / 1e6, count / 1e6 / (best / 1e9), sink);
+    }
+}
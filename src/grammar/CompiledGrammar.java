@@ -0,0 +1,231 @@
+package grammar;
+
+import automaton.FiniteAutomaton;
+import automaton.Transition;
+
+import java.util.*;
+
+// Grammar with every symbol interned to an int: sorted non-terminals get ids 0..n-1 and sorted terminals follow
+// them, so "is terminal" is a single comparison. Right-hand sides are stored back to back in one int arena;
+// production p spans arena[bodyStart[p]..bodyStart[p + 1]) and non-terminal a owns the productions
+// firstProduction[a]..firstProduction[a + 1]. The original right-hand side texts are kept next to the ids, so
+// toGrammar() gives back the same start symbol, symbol sets and production lists.
+public final class CompiledGrammar {
+    private final String startName;
+    private final int startSymbol;
+    private final String[] symbols;
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final int nonTerminalCount;
+
+    private final int[] firstProduction;
+    private final int[] head;
+    private final int[] bodyStart;
+    private final int[] arena;
+    private final String[] text;
+    // Whether the non-terminal had an entry in the production map, even an empty one
+    private final boolean[] hasRules;
+
+    private CompiledGrammar(Grammar grammar) {
+        String[] nonTerminals = grammar.getNonTerminals().stream().sorted().toArray(String[]::new);
+        String[] terminals = grammar.getTerminals().stream().sorted().toArray(String[]::new);
+        this.nonTerminalCount = nonTerminals.length;
+        this.symbols = new String[nonTerminals.length + terminals.length];
+        System.arraycopy(nonTerminals, 0, symbols, 0, nonTerminals.length);
+        System.arraycopy(terminals, 0, symbols, nonTerminals.length, terminals.length);
+        for (int id = 0; id < symbols.length; id++) {
+            if (symbolIds.putIfAbsent(symbols[id], id) != null) {
+                throw new IllegalArgumentException("Symbol " + symbols[id] + " is both a terminal and a non-terminal");
+            }
+        }
+        this.startName = grammar.getStartSymbol();
+        this.startSymbol = isNonTerminal(startName) ? symbolIds.get(startName) : -1;
+
+        Map<String, List<String>> rules = grammar.getProductionRules();
+        for (String leftHandSide : rules.keySet()) {
+            if (!isNonTerminal(leftHandSide)) {
+                throw new IllegalArgumentException("Left-hand side " + leftHandSide + " is not a single non-terminal");
+            }
+        }
+        this.firstProduction = new int[nonTerminalCount + 1];
+        this.hasRules = new boolean[nonTerminalCount];
+        int productionCount = 0;
+        for (int a = 0; a < nonTerminalCount; a++) {
+            List<String> rightHandSides = rules.get(nonTerminals[a]);
+            hasRules[a] = rightHandSides != null;
+            firstProduction[a] = productionCount;
+            productionCount += rightHandSides == null ? 0 : rightHandSides.size();
+        }
+        firstProduction[nonTerminalCount] = productionCount;
+
+        this.head = new int[productionCount];
+        this.bodyStart = new int[productionCount + 1];
+        this.text = new String[productionCount];
+        int[] arena = new int[Math.max(16, productionCount * 2)];
+        int size = 0;
+        int p = 0;
+        for (int a = 0; a < nonTerminalCount; a++) {
+            for (String rightHandSide : rules.getOrDefault(nonTerminals[a], List.of())) {
+                List<String> parts = grammar.symbolsOf(rightHandSide);
+                if (size + parts.size() > arena.length) {
+                    arena = Arrays.copyOf(arena, Math.max(arena.length * 2, size + parts.size()));
+                }
+                head[p] = a;
+                bodyStart[p] = size;
+                text[p] = rightHandSide;
+                for (String part : parts) {
+                    arena[size++] = symbolIds.get(part);
+                }
+                p++;
+            }
+        }
+        bodyStart[productionCount] = size;
+        this.arena = Arrays.copyOf(arena, size);
+    }
+
+    public static CompiledGrammar compile(Grammar grammar) {
+        return new CompiledGrammar(grammar);
+    }
+
+    public Grammar toGrammar() {
+        Set<String> terminals = new HashSet<>();
+        Set<String> nonTerminals = new HashSet<>();
+        Map<String, List<String>> rules = new HashMap<>();
+        for (int id = 0; id < symbols.length; id++) {
+            (isTerminal(id) ? terminals : nonTerminals).add(symbols[id]);
+        }
+        for (int a = 0; a < nonTerminalCount; a++) {
+            if (hasRules[a]) {
+                rules.put(symbols[a], new ArrayList<>(Arrays.asList(text).subList(firstProduction[a], firstProduction[a + 1])));
+            }
+        }
+        return new Grammar(startName, terminals, nonTerminals, rules);
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    public int getTerminalCount() {
+        return symbols.length - nonTerminalCount;
+    }
+
+    public boolean isTerminal(int symbol) {
+        return symbol >= nonTerminalCount;
+    }
+
+    public String getSymbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    // Id of the symbol, or -1 when it is not declared
+    public int getSymbolId(String symbol) {
+        return symbolIds.getOrDefault(symbol, -1);
+    }
+
+    private boolean isNonTerminal(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        return id != null && id < nonTerminalCount;
+    }
+
+    // Id of the start symbol, or -1 when it is not a declared non-terminal
+    public int getStartSymbol() {
+        return startSymbol;
+    }
+
+    public String getStartSymbolName() {
+        return startName;
+    }
+
+    public int getProductionCount() {
+        return head.length;
+    }
+
+    // Productions of a non-terminal are getFirstProduction(a) up to, not including, getFirstProduction(a + 1)
+    public int getFirstProduction(int nonTerminal) {
+        return firstProduction[nonTerminal];
+    }
+
+    public int getHead(int production) {
+        return head[production];
+    }
+
+    public int getBodyStart(int production) {
+        return bodyStart[production];
+    }
+
+    public int getBodyLength(int production) {
+        return bodyStart[production + 1] - bodyStart[production];
+    }
+
+    public int getBodySymbol(int production, int index) {
+        return arena[bodyStart[production] + index];
+    }
+
+    public int[] getBody(int production) {
+        return Arrays.copyOfRange(arena, bodyStart[production], bodyStart[production + 1]);
+    }
+
+    // Right-hand side exactly as it was written in the source grammar
+    public String getText(int production) {
+        return text[production];
+    }
+
+    // Every production is a terminal, a terminal followed by a non-terminal or a non-terminal followed by a terminal
+    public boolean isRegular() {
+        for (int p = 0; p < head.length; p++) {
+            int length = getBodyLength(p);
+            int first = length > 0 ? arena[bodyStart[p]] : -1;
+            if (length == 1 && isTerminal(first)) {
+                continue;
+            } else if (length == 2 && isTerminal(first) != isTerminal(arena[bodyStart[p] + 1])) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // A -> a B becomes a transition A --a--> B and A -> a one into a fresh accepting state; A -> ε makes A
+    // itself accepting. Transitions follow the non-terminal ids and then the production order.
+    public FiniteAutomaton toFiniteAutomaton() {
+        String finalState = "X";
+        while (symbolIds.containsKey(finalState)) {
+            finalState += "'";
+        }
+        Set<String> states = new HashSet<>();
+        Set<String> finalStates = new HashSet<>(Set.of(finalState));
+        List<Transition> transitions = new ArrayList<>();
+        for (int a = 0; a < nonTerminalCount; a++) {
+            states.add(symbols[a]);
+            for (int p = firstProduction[a]; p < firstProduction[a + 1]; p++) {
+                int length = getBodyLength(p);
+                int first = length > 0 ? arena[bodyStart[p]] : -1;
+                if (length == 0) {
+                    finalStates.add(symbols[a]);
+                } else if (length == 1 && isTerminal(first)) {
+                    transitions.add(new Transition(symbols[a], finalState, symbols[first]));
+                } else if (length == 2 && isTerminal(first) && !isTerminal(arena[bodyStart[p] + 1])) {
+                    transitions.add(new Transition(symbols[a], symbols[arena[bodyStart[p] + 1]], symbols[first]));
+                } else {
+                    throw new IllegalStateException("Production " + symbols[a] + " -> " + text[p] + " is not right-linear");
+                }
+            }
+        }
+
+        FiniteAutomaton automaton = new FiniteAutomaton(transitions.toArray(new Transition[0]));
+        states.add(finalState);
+        automaton.setStates(states);
+        automaton.setStartState(startName);
+        automaton.setAcceptStates(finalStates);
+        Set<String> alphabet = new HashSet<>();
+        for (int t = nonTerminalCount; t < symbols.length; t++) {
+            alphabet.add(symbols[t]);
+        }
+        automaton.setAlphabet(alphabet);
+        return automaton;
+    }
+}
@@ -0,0 +1,258 @@
+package grammar;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// CYK membership test for any context-free Grammar. The grammar is brought into a binary normal form on the
+// fly: right-hand sides longer than two are split with helper symbols, terminals stay symbols of their own
+// (so no lifting rules are needed), nullable symbols turn binary rules into unit rules and unit rules are
+// folded into a reflexive closure. Every table cell is a long[] bitset over all symbols and a binary rule
+// index maps (left symbol, right symbol) to the already closed set of heads, so combining two cells is a
+// handful of bit tests and ORs. Cells of the same span length are independent and are filled in parallel
+// once the word is long enough.
+public class CykRecognizer {
+    public static final int PARALLEL_THRESHOLD = 128;
+
+    private final String[] terminals;
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final int symbolCount;
+    private final int words;
+    private final int terminalOffset;
+    private final boolean acceptsEmpty;
+    private final int startId;
+
+    // closure[X]: symbols deriving X through unit rules, X included
+    private final long[][] closure;
+    // For a left symbol X: the right symbols Y of rules A -> X Y and the closed heads of each pair
+    private final int[][] rightSymbols;
+    private final long[][][] heads;
+
+    public CykRecognizer(Grammar grammar) {
+        this(grammar.compile());
+    }
+
+    public CykRecognizer(CompiledGrammar grammar) {
+        // Declared non-terminals keep their ids, helper symbols come next and terminals are shifted after them
+        int declared = grammar.getNonTerminalCount();
+        int helperCount = 0;
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            helperCount += Math.max(0, grammar.getBodyLength(p) - 2);
+        }
+        this.terminalOffset = declared + helperCount;
+        this.terminals = new String[grammar.getTerminalCount()];
+        for (int t = 0; t < terminals.length; t++) {
+            terminals[t] = grammar.getSymbol(declared + t);
+            symbolIds.put(terminals[t], terminalOffset + t);
+        }
+        this.symbolCount = terminalOffset + terminals.length;
+        this.words = (symbolCount + 63) >>> 6;
+        if (grammar.getStartSymbol() < 0) {
+            throw new IllegalArgumentException("Start symbol " + grammar.getStartSymbolName() + " is not a non-terminal");
+        }
+        this.startId = grammar.getStartSymbol();
+
+        int nextHelper = declared;
+        List<int[]> binaryRules = new ArrayList<>();
+        List<int[]> unitRules = new ArrayList<>();
+        List<int[]> emptyRules = new ArrayList<>();
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            int[] symbols = grammar.getBody(p);
+            for (int i = 0; i < symbols.length; i++) {
+                if (grammar.isTerminal(symbols[i])) {
+                    symbols[i] += helperCount;
+                }
+            }
+            int head = grammar.getHead(p);
+            if (symbols.length == 0) {
+                emptyRules.add(new int[]{head});
+            } else if (symbols.length == 1) {
+                unitRules.add(new int[]{head, symbols[0]});
+            } else {
+                // A -> X1 H1, H1 -> X2 H2, ..., Hk -> X(n-1) Xn
+                for (int i = 0; i < symbols.length - 2; i++) {
+                    int helper = nextHelper++;
+                    binaryRules.add(new int[]{head, symbols[i], helper});
+                    head = helper;
+                }
+                binaryRules.add(new int[]{head, symbols[symbols.length - 2], symbols[symbols.length - 1]});
+            }
+        }
+
+        // Nullable symbols by fixed point over the binary form
+        boolean[] nullable = new boolean[symbolCount];
+        for (int[] rule : emptyRules) {
+            nullable[rule[0]] = true;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int[] rule : unitRules) {
+                if (!nullable[rule[0]] && nullable[rule[1]]) {
+                    nullable[rule[0]] = changed = true;
+                }
+            }
+            for (int[] rule : binaryRules) {
+                if (!nullable[rule[0]] && nullable[rule[1]] && nullable[rule[2]]) {
+                    nullable[rule[0]] = changed = true;
+                }
+            }
+        }
+        this.acceptsEmpty = nullable[startId];
+
+        // A -> X Y with a nullable side also derives the other side alone
+        for (int[] rule : binaryRules) {
+            if (nullable[rule[1]]) {
+                unitRules.add(new int[]{rule[0], rule[2]});
+            }
+            if (nullable[rule[2]]) {
+                unitRules.add(new int[]{rule[0], rule[1]});
+            }
+        }
+
+        this.closure = new long[symbolCount][words];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            set(closure[symbol], symbol);
+        }
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int[] rule : unitRules) {
+                // Whatever derives the head also derives the body
+                long[] target = closure[rule[1]];
+                long[] source = closure[rule[0]];
+                for (int w = 0; w < words; w++) {
+                    long merged = target[w] | source[w];
+                    if (merged != target[w]) {
+                        target[w] = merged;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        Map<Integer, Map<Integer, long[]>> index = new HashMap<>();
+        for (int[] rule : binaryRules) {
+            long[] pairHeads = index.computeIfAbsent(rule[1], k -> new TreeMap<>())
+                    .computeIfAbsent(rule[2], k -> new long[words]);
+            or(pairHeads, closure[rule[0]]);
+        }
+        this.rightSymbols = new int[symbolCount][];
+        this.heads = new long[symbolCount][][];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            Map<Integer, long[]> pairs = index.getOrDefault(symbol, Map.of());
+            rightSymbols[symbol] = new int[pairs.size()];
+            heads[symbol] = new long[pairs.size()][];
+            int i = 0;
+            for (Map.Entry<Integer, long[]> pair : pairs.entrySet()) {
+                rightSymbols[symbol][i] = pair.getKey();
+                heads[symbol][i++] = pair.getValue();
+            }
+        }
+    }
+
+    // The span grid is over character positions, so every split of the word into terminals is tried: a terminal
+    // of k characters seeds the cell of the k characters it covers and longer spans combine at every position
+    public boolean accepts(String word) {
+        int n = word.length();
+        if (n == 0) {
+            return acceptsEmpty;
+        }
+        int[] rowOffset = rowOffsets(n);
+        long[] table = new long[rowOffset[n + 1] * words];
+        for (int i = 0; i < n; i++) {
+            for (int t = 0; t < terminals.length; t++) {
+                if (!terminals[t].isEmpty() && word.startsWith(terminals[t], i)) {
+                    int cell = (rowOffset[terminals[t].length()] + i) * words;
+                    long[] seed = closure[terminalOffset + t];
+                    for (int w = 0; w < words; w++) {
+                        table[cell + w] |= seed[w];
+                    }
+                }
+            }
+        }
+        return recognize(table, rowOffset, n);
+    }
+
+    public boolean accepts(List<String> input) {
+        int n = input.size();
+        if (n == 0) {
+            return acceptsEmpty;
+        }
+        int[] tokens = new int[n];
+        for (int i = 0; i < n; i++) {
+            Integer id = symbolIds.get(input.get(i));
+            if (id == null || id < terminalOffset) {
+                return false;
+            }
+            tokens[i] = id;
+        }
+
+        int[] rowOffset = rowOffsets(n);
+        long[] table = new long[rowOffset[n + 1] * words];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(closure[tokens[i]], 0, table, (rowOffset[1] + i) * words, words);
+        }
+        return recognize(table, rowOffset, n);
+    }
+
+    // Cell (start, length) lives at rowOffset[length] + start, one row per span length
+    private static int[] rowOffsets(int n) {
+        int[] rowOffset = new int[n + 2];
+        for (int length = 1; length <= n; length++) {
+            rowOffset[length + 1] = rowOffset[length] + (n - length + 1);
+        }
+        return rowOffset;
+    }
+
+    private boolean recognize(long[] table, int[] rowOffset, int n) {
+        for (int length = 2; length <= n; length++) {
+            int spanLength = length;
+            IntStream starts = IntStream.range(0, n - length + 1);
+            if (n >= PARALLEL_THRESHOLD) {
+                starts = starts.parallel();
+            }
+            starts.forEach(start -> fillCell(table, rowOffset, start, spanLength));
+        }
+        return get(table, rowOffset[n] * words, startId);
+    }
+
+    private void fillCell(long[] table, int[] rowOffset, int start, int length) {
+        int cell = (rowOffset[length] + start) * words;
+        for (int split = 1; split < length; split++) {
+            int left = (rowOffset[split] + start) * words;
+            int right = (rowOffset[length - split] + start + split) * words;
+            for (int w = 0; w < words; w++) {
+                for (long bits = table[left + w]; bits != 0; bits &= bits - 1) {
+                    int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    int[] ys = rightSymbols[x];
+                    for (int i = 0; i < ys.length; i++) {
+                        if (get(table, right, ys[i])) {
+                            long[] pairHeads = heads[x][i];
+                            for (int h = 0; h < words; h++) {
+                                table[cell + h] |= pairHeads[h];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean get(long[] table, int offset, int symbol) {
+        return (table[offset + (symbol >>> 6)] & (1L << symbol)) != 0;
+    }
+
+    private static void set(long[] bits, int symbol) {
+        bits[symbol >>> 6] |= 1L << symbol;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= source[w];
+        }
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+}
@@ -1,23 +1,26 @@
 package grammar;
 
 import automaton.FiniteAutomaton;
-import automaton.Transition;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
 
 public class Grammar {
-    private String startSymbol;
-    private Set<String> terminals;
-    private Set<String> nonTerminals;
-    private Map<String, List<String>> productionRules;
-
+    private final String startSymbol;
+    private final Set<String> terminals;
+    private final Set<String> nonTerminals;
+    private final Map<String, List<String>> productionRules = new HashMap<>();
+    // Built on first use and dropped by every change to the symbols or productions
+    private CompiledGrammar compiled;
+    private CykRecognizer recognizer;
+
+    // The grammar keeps its own copies, so only its own passes can change it and the cache stays valid
     public Grammar(String startSymbol, Set<String> terminals, Set<String> nonTerminals, Map<String, List<String>> productionRules) {
         this.startSymbol = startSymbol;
-        this.terminals = terminals;
-        this.nonTerminals = nonTerminals;
-        this.productionRules = productionRules;
+        this.terminals = new HashSet<>(terminals);
+        this.nonTerminals = new HashSet<>(nonTerminals);
+        replaceProductionRules(productionRules);
     }
 
     public static Grammar baseGrammar(){
@@ -33,87 +36,73 @@ public class Grammar {
     }
 
     public Map<String, List<String>> getProductionRules() {
-        return productionRules;
+        return Collections.unmodifiableMap(productionRules);
     }
 
     public Set<String> getNonTerminals() {
-        return nonTerminals;
+        return Collections.unmodifiableSet(nonTerminals);
     }
 
     public Set<String> getTerminals() {
-        return terminals;
+        return Collections.unmodifiableSet(terminals);
     }
 
     public String getStartSymbol() {
         return startSymbol;
     }
 
-    public String generateWord() {
-        return generateWord(startSymbol);
-    }
-
-    private String generateWord(String symbol) {
-        if (terminals.contains(symbol)) {
-            return symbol;
+    // Splits a right-hand side into declared symbols, longest match first; spaces are ignored and "" or "ε" is empty
+    public List<String> symbolsOf(String rightHandSide) {
+        List<String> symbols = new ArrayList<>();
+        if (rightHandSide.equals("ε")) {
+            return symbols;
         }
-        List<String> rightHandSides = productionRules.get(symbol);
-        String randomRightHandSide = rightHandSides.get(new Random().nextInt(rightHandSides.size()));
-        StringBuilder word = new StringBuilder();
-        for (char rightSymbol : randomRightHandSide.toCharArray()) {
-            if (this.terminals.contains(Character.toString(rightSymbol))) {
-                word.append(generateWord(Character.toString(rightSymbol)));
-            } else if (rightSymbol == 'q') {
-                word.append(generateWord(Character.toString(rightSymbol) + randomRightHandSide.charAt(randomRightHandSide.length() - 1)));
-            } else if (!this.nonTerminals.contains(Character.toString(rightSymbol))) {
+        int pos = 0;
+        while (pos < rightHandSide.length()) {
+            if (rightHandSide.charAt(pos) == ' ') {
+                pos++;
                 continue;
-            } else {
-                word.append(generateWord(Character.toString(rightSymbol)));
             }
+            String longest = null;
+            for (Set<String> symbolSet : List.of(terminals, nonTerminals)) {
+                for (String symbol : symbolSet) {
+                    if (!symbol.isEmpty() && rightHandSide.startsWith(symbol, pos)
+                            && (longest == null || symbol.length() > longest.length())) {
+                        longest = symbol;
+                    }
+                }
+            }
+            if (longest == null) {
+                throw new IllegalArgumentException("Undeclared symbol at " + pos + " in production " + rightHandSide);
+            }
+            symbols.add(longest);
+            pos += longest.length();
         }
-        return word.toString();
+        return symbols;
     }
 
-    public FiniteAutomaton toFiniteAutomaton() {
-
-        Set<String> states = new HashSet<>();
-        Set<String> finalStates = new HashSet<>(Set.of("X"));
-        int dimension = 0;
-        int dimCheck = 0;
+    public String generateWord() {
+        return new WordGenerator(this).generate();
+    }
 
-        for (String nonTerminal : nonTerminals) {
-            dimension += productionRules.get(nonTerminal).size();
+    // CYK membership test, the grammar does not have to be in Chomsky Normal Form
+    public boolean accepts(String word) {
+        if (recognizer == null) {
+            recognizer = new CykRecognizer(compile());
         }
+        return recognizer.accepts(word);
+    }
 
-        Transition[] transition = new Transition[dimension];
-
-        for (String nonTerminal : nonTerminals) {
-            states.add(nonTerminal);
-            List<String> rightHandSides = productionRules.get(nonTerminal);
-            for (String str : rightHandSides) {
-                String nextState = "";
-                if (str.length() > 1) {
-                    if (str.charAt(1) == 'q') {
-                        nextState = "q" + str.charAt(2);
-                    } else {
-                        nextState = Character.toString(str.charAt(1));
-                    }
-                } else {
-                    nextState = "X";
-                }
-                char transitionLabel = str.charAt(0);
-                transition[dimCheck] = new Transition(nonTerminal, nextState, Character.toString(transitionLabel));
-                dimCheck++;
-            }
+    // Symbols interned to ints with all right-hand sides in one arena, compiled once per version of the productions
+    public CompiledGrammar compile() {
+        if (compiled == null) {
+            compiled = CompiledGrammar.compile(this);
         }
+        return compiled;
+    }
 
-        FiniteAutomaton automaton = new FiniteAutomaton(transition);
-        states.add("X");
-        automaton.setStates(states);
-        automaton.setStartState(startSymbol);
-        automaton.setAcceptStates(finalStates);
-        automaton.setAlphabet(terminals);
-
-        return automaton;
+    public FiniteAutomaton toFiniteAutomaton() {
+        return compile().toFiniteAutomaton();
     }
 
     public String getGrammarType() {
@@ -129,54 +118,48 @@ public class Grammar {
     }
 
     public boolean isRegularGrammar() {
-        for (String nonTerminal : nonTerminals) {
-            List<String> rightHandSides = productionRules.get(nonTerminal);
-            for (String rightSide : rightHandSides) {
-                if (rightSide.length() == 1 && Character.isLowerCase(rightSide.charAt(0))) {
-                    continue;
-                } else if (rightSide.length() == 2) {
-                    char firstSymbol = rightSide.charAt(0);
-                    char secondSymbol = rightSide.charAt(1);
-                    if (Character.isUpperCase(firstSymbol) && Character.isLowerCase(secondSymbol)) {
-                        continue;
-                    } else if (Character.isLowerCase(firstSymbol) && Character.isUpperCase(secondSymbol)) {
-                        continue;
-                    }
-                }
-                return false;
-            }
-        }
-        return true;
+        CompiledGrammar compiled = compileIfDeclared();
+        return compiled != null && compiled.isRegular();
     }
 
+    // Only grammars whose left-hand sides are single non-terminals compile
     public boolean isContextFreeGrammar() {
-        for (String nonTerminal : nonTerminals) {
-            List<String> rightHandSides = productionRules.get(nonTerminal);
-            for (String rightSide : rightHandSides) {
-                if (nonTerminal.length() != 1 || !Character.isUpperCase(nonTerminal.charAt(0))) {
+        return compileIfDeclared() != null;
+    }
+
+    // Non-contracting: every left-hand side has a non-terminal and no right-hand side has fewer symbols than its
+    // left-hand side, except S -> ε for a start symbol S that no right-hand side uses
+    public boolean isContextSensitiveGrammar() {
+        boolean startErases = false;
+        boolean startOnRight = false;
+        try {
+            for (Map.Entry<String, List<String>> rule : productionRules.entrySet()) {
+                List<String> left = symbolsOf(rule.getKey());
+                if (left.stream().noneMatch(nonTerminals::contains)) {
                     return false;
                 }
-                for (int i = 0; i < rightSide.length(); i++) {
-                    char symbol = rightSide.charAt(i);
-                    if (!Character.isUpperCase(symbol) && !Character.isLowerCase(symbol)) {
+                for (String rightHandSide : rule.getValue()) {
+                    List<String> right = symbolsOf(rightHandSide);
+                    startOnRight |= right.contains(startSymbol);
+                    if (right.isEmpty() && left.equals(List.of(startSymbol))) {
+                        startErases = true;
+                    } else if (right.size() < left.size()) {
                         return false;
                     }
                 }
             }
+        } catch (IllegalArgumentException e) {
+            return false;
         }
-        return true;
+        return !(startErases && startOnRight);
     }
 
-    public boolean isContextSensitiveGrammar() {
-        for (String nonTerminal : nonTerminals) {
-            List<String> rightHandSides = productionRules.get(nonTerminal);
-            for (String rightSide : rightHandSides) {
-                if (nonTerminal.length() > rightSide.length()) {
-                    return false;
-                }
-            }
+    private CompiledGrammar compileIfDeclared() {
+        try {
+            return compile();
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        return true;
     }
 
     public void grammar_info(String additional) {
@@ -210,333 +193,53 @@ public class Grammar {
     }
 
     private void eliminateEpsilonProductions() {
-        // Step 1: Eliminate epsilon productions
-        Set<String> nullableSymbols = new HashSet<>();
-
-        // Find nullable symbols
-        for (String nonTerminal : nonTerminals) {
-            if (productionRules.get(nonTerminal).contains("")) {
-                nullableSymbols.add(nonTerminal);
-            }
-        }
-
-        // Remove epsilon productions
-        for (String nonTerminal : nonTerminals) {
-            List<String> productions = new ArrayList<>(productionRules.get(nonTerminal));
-            for (String production : productions) {
-                if (production.isEmpty()) {
-                    // Remove epsilon production
-                    productionRules.get(nonTerminal).remove("");
-                } else {
-                    // Remove nullable symbols from production
-                    for (int i = 0; i < production.length(); i++) {
-                        if (nullableSymbols.contains(String.valueOf(production.charAt(i)))) {
-                            String newProduction = production.substring(0, i) + production.substring(i + 1);
-                            if (!newProduction.isEmpty() && !productionRules.get(nonTerminal).contains(newProduction)) {
-                                productionRules.get(nonTerminal).add(newProduction);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        // Long right-hand sides may have been split with fresh non-terminals
+        Map<String, List<String>> rules = new GrammarNormalizer(compile()).withoutEpsilonProductions();
+        nonTerminals.addAll(rules.keySet());
+        replaceProductionRules(rules);
 
         grammar_info("After removing epsilon productions".toUpperCase());
 
-
-        // Remove non-terminal symbols that have no productions
-        for (String nonTerminal_null : nullableSymbols) {
-            List<String> productions_nullable = new ArrayList<>(productionRules.get(nonTerminal_null));
-
-            // Check if there are no productions in this non-terminal form the null-list
-            if (productions_nullable.isEmpty()) {
-
-                // Remove the non-terminal and all of its other usages from production rules and non-terminal symbols
-                productionRules.remove(nonTerminal_null);
-                nonTerminals.remove(nonTerminal_null);
-
-                // Iterate through all the non-terminals and remove productions that contain the null-term
-                for (String nonTerminal : nonTerminals) {
-                    List<String> productions = new ArrayList<>(productionRules.get(nonTerminal));
-                    for (String production : productions) {
-                        if (production.contains(nonTerminal_null)) {
-                            productionRules.get(nonTerminal).remove(production);
-                        }
-                    }
-                }
+        // Remove non-terminal symbols that have no productions left, and every production using them
+        Set<String> withProductions = new HashSet<>();
+        for (String nonTerminal : nonTerminals) {
+            if (!productionRules.get(nonTerminal).isEmpty()) {
+                withProductions.add(nonTerminal);
             }
         }
+        restrictTo(withProductions);
     }
 
-
     private void eliminateUnitProductions() {
-
-        Map<String, Set<String>> unitProductions = new HashMap<>();
-
-        // Find unit productions
-        for (String nonTerminal : nonTerminals) {
-            Set<String> unitNonTerminals = new HashSet<>();
-            for (String production : productionRules.get(nonTerminal)) {
-                if (production.length() == 1 && nonTerminals.contains(production)) {
-                    unitNonTerminals.add(production);
-                }
-            }
-            unitProductions.put(nonTerminal, unitNonTerminals);
-
-        }
-
-        // Add the production rules of unit productions
-        // And the remove unit productions
-        for (String nonTerminal : nonTerminals) {
-            Set<String> unitNonTerminals = unitProductions.get(nonTerminal);
-            if (!unitNonTerminals.isEmpty()) {
-                for (String unit : unitNonTerminals) {
-                    if (unitProductions.get(unit).isEmpty()) {
-                        for (String production : productionRules.get(unit)) {
-                            productionRules.get(nonTerminal).add(production);
-                        }
-                        productionRules.get(nonTerminal).remove(unit);
-                        unitProductions.get(nonTerminal).remove(unit);
-                    }
-                }
-            }
-        }
+        replaceProductionRules(new GrammarNormalizer(compile()).withoutUnitProductions());
     }
 
     private void removeInaccessibleSymbols() {
-
-        ArrayList<String> accessibleSymbols = new ArrayList<>();
-
-        // Check for each non-terminal if there is a way to get to it
-        for (String nonTerminal : nonTerminals) {
-            String current = nonTerminal;
-            for (String nonTerminal2 : nonTerminals) {
-                String check = nonTerminal2;
-
-                if (accessibleSymbols.contains(current)) {
-                    break;
-                }
-
-                if (Objects.equals(current, check)) {
-                    continue;
-                }
-                for (String production : productionRules.get(check)) {
-                    if (production.contains(current) && !accessibleSymbols.contains(current)) {
-                        accessibleSymbols.add(current);
-                    } else {
-                        break;
-                    }
-                }
-            }
-        }
-
-        // Remove all the non-terminal symbols that are unreachable
-        for (String nonTerminal : nonTerminals) {
-            if (!accessibleSymbols.contains(nonTerminal)) {
-                productionRules.remove(nonTerminal);
-                nonTerminals.remove(nonTerminal);
-            }
-        }
+        restrictTo(new GrammarNormalizer(compile()).reachable());
     }
 
     private void removeNonproductiveSymbols() {
+        restrictTo(new GrammarNormalizer(compile()).productive());
+    }
 
-        // Set all the non-terminals to unproductive
-        Map<String, Boolean> productive = new HashMap<>();
-        for (String nonTerminal : nonTerminals) {
-            productive.put(nonTerminal, false);
-        }
-
-        // Check for single terminal symbols in each non-terminal
-        for (String nonTerminal : nonTerminals) {
-            for (String production : productionRules.get(nonTerminal)) {
-                if (terminals.contains(production)) {
-                    productive.put(nonTerminal, true);
-                }
-            }
-        }
-
-        // Check for productive non-terminals in all the unproductive terminals
-        for (String nonTerminal : nonTerminals) {
-            boolean productiveSymbol = false;
-            if (productive.get(nonTerminal)) {
-                continue;
-            }
-            for (String production : productionRules.get(nonTerminal)) {
-                for (String nonTerminalCheck : nonTerminals) {
-                    if (production.contains(nonTerminalCheck) && productive.get(nonTerminalCheck)) {
-                        productiveSymbol = true;
-                    }
-                }
-            }
-            productive.put(nonTerminal, productiveSymbol);
-        }
-
-        int count = 0;
-        for (String nonTerminal : nonTerminals) {
-            if (productive.get(nonTerminal)) {
-                count++;
-            }
-        }
-
-        // Build the new production rules with only the productive non-terminals
-        if (!(count == productive.size())) {
-            Map<String, List<String>> newProductions = new HashMap<>();
-            for (String nonTerminal : nonTerminals) {
-                List<String> empty = new ArrayList<>();
-                for (String production : productionRules.get(nonTerminal)) {
-                    if (productive.get(nonTerminal)) {
-                        if (newProductions.isEmpty()) {
-                            newProductions.put(nonTerminal, empty);
-                            newProductions.get(nonTerminal).add(production);
-                        } else if (newProductions.containsKey(nonTerminal)) {
-                            newProductions.get(nonTerminal).add(production);
-                        } else {
-                            newProductions.put(nonTerminal, empty);
-                            newProductions.get(nonTerminal).add(production);
-                        }
-                    }
-                }
-            }
-        }
+    private void restrictTo(Set<String> kept) {
+        replaceProductionRules(new GrammarNormalizer(compile()).restrictedTo(kept));
+        nonTerminals.retainAll(kept);
     }
 
     private void grammarToChomskyNormalForm() {
+        Map<String, List<String>> rules = new GrammarNormalizer(compile()).chomskyNormalForm();
+        nonTerminals.addAll(rules.keySet());
+        replaceProductionRules(rules);
+    }
 
-        List<String> newNonTerminals = new ArrayList<>(nonTerminals);
-        Map<String, List<String>> newProductions = new HashMap<>();
-        List <String> addedProductions = new ArrayList<>();
-        Map <String, String> changedProductions = new HashMap<>();
-
-        char newSymbol = 'Z';
-
-        for (String nonTerminal: nonTerminals) {
-            for (String production : productionRules.get(nonTerminal)) {
-
-                // More than two symbols
-                if (production.length() > 2 && production.matches("[a-z][A-Z][a-z][A-Z]+")) {
-
-                    if (addedProductions.contains(production)) {
-                        continue;
-                    } else {
-                        addedProductions.add(production);
-                    }
-
-                    // Iterate through the production's characters
-                    for (int i = 0; i < production.length(); i++) {
-                        String oldSymbol = String.valueOf(production.charAt(i));
-
-                        // If the character at index i is a terminal symbol
-                        if (terminals.contains(oldSymbol)) {
-                            if (!changedProductions.containsValue(oldSymbol)) {
-                                if (newProductions.containsKey(String.valueOf(newSymbol))) {
-                                    newProductions.get(String.valueOf(newSymbol)).add(oldSymbol);
-                                } else {
-                                    List<String> empty = new ArrayList<>();
-                                    newProductions.put(String.valueOf(newSymbol), empty);
-                                    newProductions.get(String.valueOf(newSymbol)).add(oldSymbol);
-
-                                }
-                                changedProductions.put(String.valueOf(newSymbol), oldSymbol);
-                                newNonTerminals.add(String.valueOf(newSymbol));
-                                newSymbol--;
-
-                            }
-
-                        // If the character at index i is a non-terminal symbol
-                        } else if (nonTerminals.contains(oldSymbol)) {
-                            if (changedProductions.containsValue(String.valueOf(production.charAt(i-1)))) {
-                                String keyValue = null;
-                                for (String changedProduction: changedProductions.keySet()){
-                                    if (changedProductions.get(changedProduction).contains(String.valueOf(production.charAt(i-1)))){
-                                        keyValue = changedProduction;
-                                    }
-                                }
-                                List<String> empty = new ArrayList<>();
-                                newProductions.put(String.valueOf(newSymbol), empty);
-                                char nonTerminalSymbol = newSymbol;
-                                nonTerminalSymbol++;
-                                newProductions.get(String.valueOf(newSymbol)).add(keyValue + oldSymbol);
-                                changedProductions.put(String.valueOf(newSymbol), keyValue + oldSymbol);
-
-                                newNonTerminals.add(String.valueOf(newSymbol));
-                                newSymbol--;
-                            }
-                        }
-
-                        // If we have reached the end of the string
-                        if (i + 1 == production.length()) {
-                            String initialSymbol = String.valueOf(newSymbol);
-                            String computedSymbols = String.valueOf(newSymbol += 2) + String.valueOf(newSymbol -= 1);
-                            changedProductions.put(computedSymbols, production);
-                            newSymbol -= 2;
-                        }
-                    }
-                }
-
-
-                // For terminal + non-terminal
-                if (production.matches("[a-z][A-Z]")) {
-
-                    if (addedProductions.contains(production)) {
-                        continue;
-                    } else {
-                        addedProductions.add(production);
-                    }
-
-                    String keyValue = null;
-
-
-                    // Verify if the terminal was already added
-                    String terminal = String.valueOf(production.charAt(0));
-                    if (!changedProductions.containsValue(terminal)) {
-                        List<String> empty = new ArrayList<>();
-                        newProductions.put(String.valueOf(newSymbol), empty);
-                        newProductions.get(String.valueOf(newSymbol)).add(terminal);
-                        changedProductions.put(String.valueOf(newSymbol), terminal);
-                        newNonTerminals.add(String.valueOf(newSymbol));
-                        newSymbol--;
-                    }
-
-                    // Add the new-made production to the production rules
-                    for (String changedProduction: changedProductions.keySet()){
-                        boolean contain = changedProductions.get(changedProduction).contains(String.valueOf(production.charAt(0)));
-                        if ( contain && changedProductions.get(changedProduction).length() == 1){
-                            keyValue = changedProduction;
-                            break;
-                        }
-                    }
-                    changedProductions.put(keyValue + production.charAt(1), production);
-
-                }
-
-
-            }
-        }
-        Map<String, List<String>> updatedProductionRules = new HashMap<>(newProductions);
-
-        // Update the existing production rules with the added productions
-        for (String nonTerminal: nonTerminals){
-
-            updatedProductionRules.put(nonTerminal, new ArrayList<>());
-            for (String production: productionRules.get(nonTerminal)){
-
-                for (String changedProduction: changedProductions.keySet()){
-
-                    if (Objects.equals(production, changedProductions.get(changedProduction)) && changedProductions.get(changedProduction).length() > 1){
-                        updatedProductionRules.get(nonTerminal).add(changedProduction);
-                        break;
-                    } else if (Objects.equals(production, changedProductions.get(changedProduction)) && changedProductions.get(changedProduction).length() == 1) {
-                        updatedProductionRules.get(nonTerminal).add(production);
-                        break;
-                    }
-                }
-            }
+    private void replaceProductionRules(Map<String, List<String>> rules) {
+        productionRules.clear();
+        for (Map.Entry<String, List<String>> rule : rules.entrySet()) {
+            productionRules.put(rule.getKey(), Collections.unmodifiableList(new ArrayList<>(rule.getValue())));
         }
-
-        nonTerminals = new HashSet<>(newNonTerminals);
-        productionRules = updatedProductionRules;
-
+        compiled = null;
+        recognizer = null;
     }
 }
 
@@ -0,0 +1,450 @@
+package grammar;
+
+import java.util.*;
+
+// Fixed points behind the normalization passes, computed over a CompiledGrammar instead of substring checks.
+// Productions are int arrays of symbol ids (non-terminals first, then terminals) and every non-terminal knows
+// the productions it occurs in, so nullable and productive sets are worklists that decrement a counter per
+// production, and reachability is a single traversal: each runs in time linear in the size of the grammar.
+// Unit closures are one traversal of the unit graph per non-terminal.
+public final class GrammarNormalizer {
+    // Right-hand sides with more nullable occurrences are binarized before their variants are expanded
+    public static final int EXPANDED_OPTIONAL = 3;
+
+    private final CompiledGrammar grammar;
+    private final String[] nonTerminals;
+    private final int startId;
+
+    // Production p belongs to head[p]; its right-hand side as ids and the original text
+    private final int[] head;
+    private final int[][] body;
+    private final String[] text;
+    private final int[][] productionsOf;
+    // occurrences[n]: productions with n on the right-hand side, once per occurrence
+    private final int[][] occurrences;
+
+    public GrammarNormalizer(Grammar grammar) {
+        this(grammar.compile());
+    }
+
+    public GrammarNormalizer(CompiledGrammar grammar) {
+        this.grammar = grammar;
+        this.nonTerminals = new String[grammar.getNonTerminalCount()];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            nonTerminals[n] = grammar.getSymbol(n);
+        }
+        this.startId = grammar.getStartSymbol();
+
+        int productionCount = grammar.getProductionCount();
+        this.head = new int[productionCount];
+        this.body = new int[productionCount][];
+        this.text = new String[productionCount];
+        int[] occurrenceCount = new int[nonTerminals.length];
+        for (int p = 0; p < productionCount; p++) {
+            head[p] = grammar.getHead(p);
+            body[p] = grammar.getBody(p);
+            text[p] = grammar.getText(p);
+            for (int symbol : body[p]) {
+                if (symbol < nonTerminals.length) {
+                    occurrenceCount[symbol]++;
+                }
+            }
+        }
+
+        this.productionsOf = new int[nonTerminals.length][];
+        this.occurrences = new int[nonTerminals.length][];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            productionsOf[n] = new int[grammar.getFirstProduction(n + 1) - grammar.getFirstProduction(n)];
+            for (int i = 0; i < productionsOf[n].length; i++) {
+                productionsOf[n][i] = grammar.getFirstProduction(n) + i;
+            }
+            occurrences[n] = new int[occurrenceCount[n]];
+        }
+        int[] occurrenceFill = new int[nonTerminals.length];
+        for (int p = 0; p < head.length; p++) {
+            for (int symbol : body[p]) {
+                if (symbol < nonTerminals.length) {
+                    occurrences[symbol][occurrenceFill[symbol]++] = p;
+                }
+            }
+        }
+    }
+
+    public Set<String> nullable() {
+        return names(nullableIds());
+    }
+
+    public Set<String> productive() {
+        return names(productiveIds());
+    }
+
+    public Set<String> reachable() {
+        boolean[] reachable = new boolean[nonTerminals.length];
+        if (startId < 0 || startId >= nonTerminals.length) {
+            return names(reachable);
+        }
+        int[] worklist = new int[nonTerminals.length];
+        int size = 0;
+        reachable[startId] = true;
+        worklist[size++] = startId;
+        while (size > 0) {
+            int n = worklist[--size];
+            for (int p : productionsOf[n]) {
+                for (int symbol : body[p]) {
+                    if (symbol < nonTerminals.length && !reachable[symbol]) {
+                        reachable[symbol] = true;
+                        worklist[size++] = symbol;
+                    }
+                }
+            }
+        }
+        return names(reachable);
+    }
+
+    // For every non-terminal A the non-terminals B with A =>* B through unit productions, A itself first
+    public Map<String, Set<String>> unitClosure() {
+        int[][] unitTargets = new int[nonTerminals.length][];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            unitTargets[n] = Arrays.stream(productionsOf[n])
+                    .filter(this::isUnit)
+                    .map(p -> body[p][0])
+                    .toArray();
+        }
+        Map<String, Set<String>> closure = new HashMap<>();
+        int[] seenBy = new int[nonTerminals.length];
+        Arrays.fill(seenBy, -1);
+        int[] queue = new int[nonTerminals.length];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            Set<String> targets = new LinkedHashSet<>();
+            int first = 0;
+            int last = 0;
+            queue[last++] = n;
+            seenBy[n] = n;
+            while (first < last) {
+                int current = queue[first++];
+                targets.add(nonTerminals[current]);
+                for (int target : unitTargets[current]) {
+                    if (seenBy[target] != n) {
+                        seenBy[target] = n;
+                        queue[last++] = target;
+                    }
+                }
+            }
+            closure.put(nonTerminals[n], targets);
+        }
+        return closure;
+    }
+
+    // Drops epsilon productions and adds every variant that leaves out nullable occurrences. Existing
+    // productions keep their order and new variants follow them. A right-hand side with more than
+    // EXPANDED_OPTIONAL nullable occurrences would need 2^k variants, so it is binarized first (BIN before DEL)
+    // and each link of the chain gets at most three. The empty word itself is not kept, even when the start
+    // symbol is nullable.
+    public Map<String, List<String>> withoutEpsilonProductions() {
+        boolean[] nullableIds = nullableIds();
+        Rewrite rewrite = new Rewrite(grammar);
+        for (int p = 0; p < head.length; p++) {
+            int optional = 0;
+            for (int symbol : body[p]) {
+                if (symbol < nonTerminals.length && nullableIds[symbol]) {
+                    optional++;
+                }
+            }
+            if (optional > EXPANDED_OPTIONAL) {
+                rewrite.chain(head[p], body[p]);
+            } else if (body[p].length > 0) {
+                rewrite.add(head[p], body[p], text[p]);
+            }
+        }
+        // A helper is nullable when its whole suffix is
+        BitSet nullable = new BitSet();
+        for (int n = 0; n < nonTerminals.length; n++) {
+            nullable.set(n, nullableIds[n]);
+        }
+        for (Map.Entry<List<Integer>, Integer> suffix : rewrite.suffixes.entrySet()) {
+            nullable.set(suffix.getValue(), suffix.getKey().stream().allMatch(nullable::get));
+        }
+
+        int count = rewrite.size();
+        for (int r = 0; r < count; r++) {
+            int[] symbols = rewrite.bodies.get(r);
+            String original = rewrite.texts.get(r);
+            List<Integer> optional = new ArrayList<>();
+            for (int i = 0; i < symbols.length; i++) {
+                if (rewrite.isNonTerminal(symbols[i]) && nullable.get(symbols[i])) {
+                    optional.add(i);
+                }
+            }
+            // Every subset of the nullable occurrences, one bit per occurrence; mask 0 is the production itself
+            for (int mask = 1; mask < (1 << optional.size()); mask++) {
+                int[] kept = new int[symbols.length - Integer.bitCount(mask)];
+                List<String> keptNames = new ArrayList<>();
+                for (int i = 0, bit = 0, size = 0; i < symbols.length; i++) {
+                    if (bit < optional.size() && optional.get(bit) == i) {
+                        if ((mask & (1 << bit++)) != 0) {
+                            continue;
+                        }
+                    }
+                    kept[size++] = symbols[i];
+                    keptNames.add(rewrite.names.get(symbols[i]));
+                }
+                if (kept.length > 0) {
+                    rewrite.add(rewrite.heads.get(r), kept, original == null ? null : join(keptNames, original));
+                }
+            }
+        }
+        return rewrite.toRules();
+    }
+
+    // Replaces unit productions A -> B by the non-unit productions of everything in A's unit closure
+    public Map<String, List<String>> withoutUnitProductions() {
+        Map<String, Set<String>> closure = unitClosure();
+        Map<String, Set<String>> rules = new LinkedHashMap<>();
+        for (String nonTerminal : nonTerminals) {
+            Set<String> productions = new LinkedHashSet<>();
+            for (String target : closure.get(nonTerminal)) {
+                for (int p : productionsOf[grammar.getSymbolId(target)]) {
+                    if (!isUnit(p)) {
+                        productions.add(text[p]);
+                    }
+                }
+            }
+            rules.put(nonTerminal, productions);
+        }
+        return toLists(rules);
+    }
+
+    // Keeps only the given non-terminals and the productions that use nothing else
+    public Map<String, List<String>> restrictedTo(Set<String> kept) {
+        Map<String, Set<String>> rules = new LinkedHashMap<>();
+        for (String nonTerminal : nonTerminals) {
+            if (kept.contains(nonTerminal)) {
+                rules.put(nonTerminal, new LinkedHashSet<>());
+            }
+        }
+        for (int p = 0; p < head.length; p++) {
+            boolean usable = kept.contains(nonTerminals[head[p]]);
+            for (int i = 0; i < body[p].length && usable; i++) {
+                usable = body[p][i] >= nonTerminals.length || kept.contains(nonTerminals[body[p][i]]);
+            }
+            if (usable) {
+                rules.get(nonTerminals[head[p]]).add(text[p]);
+            }
+        }
+        return toLists(rules);
+    }
+
+    // TERM and BIN over the interned productions. Terminals inside right-hand sides of two or more symbols are
+    // replaced by a fresh non-terminal deriving only that terminal, and longer right-hand sides become a chain of
+    // fresh non-terminals, one per suffix, shared by every production ending in the same suffix. Epsilon and unit
+    // productions should be gone already, they are copied as they are.
+    public Map<String, List<String>> chomskyNormalForm() {
+        Rewrite rewrite = new Rewrite(grammar);
+        Map<Integer, Integer> lifted = new HashMap<>();
+        for (int p = 0; p < head.length; p++) {
+            int[] symbols = body[p].clone();
+            boolean changed = false;
+            for (int i = 0; i < symbols.length && symbols.length > 1; i++) {
+                if (symbols[i] >= nonTerminals.length) {
+                    Integer helper = lifted.get(symbols[i]);
+                    if (helper == null) {
+                        helper = rewrite.fresh();
+                        lifted.put(symbols[i], helper);
+                        rewrite.add(helper, new int[]{symbols[i]}, null);
+                    }
+                    symbols[i] = helper;
+                    changed = true;
+                }
+            }
+            if (symbols.length <= 2) {
+                rewrite.add(head[p], symbols, changed ? null : text[p]);
+            } else {
+                rewrite.chain(head[p], symbols);
+            }
+        }
+        return rewrite.toRules();
+    }
+
+    private boolean[] nullableIds() {
+        // Remaining symbols per production that are not known to be nullable; terminals never are
+        int[] remaining = new int[head.length];
+        boolean[] nullable = new boolean[nonTerminals.length];
+        int[] worklist = new int[nonTerminals.length];
+        int size = 0;
+        for (int p = 0; p < head.length; p++) {
+            remaining[p] = body[p].length;
+            if (remaining[p] == 0 && !nullable[head[p]]) {
+                nullable[head[p]] = true;
+                worklist[size++] = head[p];
+            }
+        }
+        while (size > 0) {
+            int n = worklist[--size];
+            for (int p : occurrences[n]) {
+                if (--remaining[p] == 0 && !nullable[head[p]]) {
+                    nullable[head[p]] = true;
+                    worklist[size++] = head[p];
+                }
+            }
+        }
+        return nullable;
+    }
+
+    private boolean[] productiveIds() {
+        // Remaining non-terminal occurrences per production not known to be productive
+        int[] remaining = new int[head.length];
+        boolean[] productive = new boolean[nonTerminals.length];
+        int[] worklist = new int[nonTerminals.length];
+        int size = 0;
+        for (int p = 0; p < head.length; p++) {
+            for (int symbol : body[p]) {
+                if (symbol < nonTerminals.length) {
+                    remaining[p]++;
+                }
+            }
+            if (remaining[p] == 0 && !productive[head[p]]) {
+                productive[head[p]] = true;
+                worklist[size++] = head[p];
+            }
+        }
+        while (size > 0) {
+            int n = worklist[--size];
+            for (int p : occurrences[n]) {
+                if (--remaining[p] == 0 && !productive[head[p]]) {
+                    productive[head[p]] = true;
+                    worklist[size++] = head[p];
+                }
+            }
+        }
+        return productive;
+    }
+
+    private boolean isUnit(int production) {
+        return body[production].length == 1 && body[production][0] < nonTerminals.length;
+    }
+
+    private Set<String> names(boolean[] members) {
+        Set<String> names = new TreeSet<>();
+        for (int n = 0; n < members.length; n++) {
+            if (members[n]) {
+                names.add(nonTerminals[n]);
+            }
+        }
+        return names;
+    }
+
+    // Productions over symbol ids for the passes that add non-terminals; fresh ones are numbered from the symbol
+    // count on. Fresh names count down from Z and continue with Z1, Z2, ... once the single letters are taken.
+    private static final class Rewrite {
+        private final int symbolCount;
+        private final int nonTerminalCount;
+        private final List<String> names = new ArrayList<>();
+        private final Set<String> used = new HashSet<>();
+        // Helper deriving each suffix split off by chain
+        private final Map<List<Integer>, Integer> suffixes = new HashMap<>();
+        private final List<Integer> heads = new ArrayList<>();
+        private final List<int[]> bodies = new ArrayList<>();
+        // Text of a production taken over from the grammar, null for the ones built here
+        private final List<String> texts = new ArrayList<>();
+
+        Rewrite(CompiledGrammar grammar) {
+            this.symbolCount = grammar.getSymbolCount();
+            this.nonTerminalCount = grammar.getNonTerminalCount();
+            for (int id = 0; id < symbolCount; id++) {
+                names.add(grammar.getSymbol(id));
+                used.add(grammar.getSymbol(id));
+            }
+        }
+
+        boolean isNonTerminal(int symbol) {
+            return symbol < nonTerminalCount || symbol >= symbolCount;
+        }
+
+        int size() {
+            return heads.size();
+        }
+
+        int fresh() {
+            String name = null;
+            for (char letter = 'Z'; letter >= 'A' && name == null; letter--) {
+                if (!used.contains(String.valueOf(letter))) {
+                    name = String.valueOf(letter);
+                }
+            }
+            for (int n = 1; name == null; n++) {
+                if (!used.contains("Z" + n)) {
+                    name = "Z" + n;
+                }
+            }
+            used.add(name);
+            names.add(name);
+            return names.size() - 1;
+        }
+
+        void add(int head, int[] body, String text) {
+            heads.add(head);
+            bodies.add(body);
+            texts.add(text);
+        }
+
+        // A -> X1 H1, H1 -> X2 H2, ..., Hk -> X(n-1) Xn, stopping at the first suffix that already has a helper
+        void chain(int head, int[] symbols) {
+            int current = head;
+            for (int i = 0; i < symbols.length - 2; i++) {
+                List<Integer> suffix = new ArrayList<>();
+                for (int j = i + 1; j < symbols.length; j++) {
+                    suffix.add(symbols[j]);
+                }
+                Integer helper = suffixes.get(suffix);
+                if (helper != null) {
+                    add(current, new int[]{symbols[i], helper}, null);
+                    return;
+                }
+                helper = fresh();
+                suffixes.put(suffix, helper);
+                add(current, new int[]{symbols[i], helper}, null);
+                current = helper;
+            }
+            add(current, new int[]{symbols[symbols.length - 2], symbols[symbols.length - 1]}, null);
+        }
+
+        // Every non-terminal gets an entry, even without productions. Symbols are written without separators only
+        // while every symbol is one character; a fresh name like Z1 could be read back as the longest match
+        // inside a text taken over from the grammar, so those are written out again as well.
+        Map<String, List<String>> toRules() {
+            String separator = names.stream().allMatch(name -> name.length() == 1) ? "" : " ";
+            boolean rewrite = names.subList(symbolCount, names.size()).stream().anyMatch(name -> name.length() > 1);
+            Map<String, Set<String>> rules = new LinkedHashMap<>();
+            for (int id = 0; id < names.size(); id++) {
+                if (isNonTerminal(id)) {
+                    rules.put(names.get(id), new LinkedHashSet<>());
+                }
+            }
+            for (int r = 0; r < heads.size(); r++) {
+                String production = texts.get(r);
+                if (production == null || rewrite) {
+                    List<String> parts = new ArrayList<>();
+                    for (int symbol : bodies.get(r)) {
+                        parts.add(names.get(symbol));
+                    }
+                    production = String.join(separator, parts);
+                }
+                rules.get(names.get(heads.get(r))).add(production);
+            }
+            return toLists(rules);
+        }
+    }
+
+    // Symbols are separated the same way as in the production they come from
+    private static String join(List<String> parts, String original) {
+        return String.join(original.indexOf(' ') >= 0 ? " " : "", parts);
+    }
+
+    private static Map<String, List<String>> toLists(Map<String, Set<String>> rules) {
+        Map<String, List<String>> lists = new HashMap<>();
+        for (Map.Entry<String, Set<String>> rule : rules.entrySet()) {
+            lists.put(rule.getKey(), new ArrayList<>(rule.getValue()));
+        }
+        return lists;
+    }
+}
@@ -0,0 +1,248 @@
+package grammar;
+
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+// Random words of a Grammar with a length range, measured in characters. Minimum derivation lengths are
+// computed once (Knuth's generalization of Dijkstra over productions), so while a word is expanded the
+// generator always knows the shortest completion of everything still pending: a production is only chosen if
+// the word can still end within the maximum, and while the word is too short and the current non-terminal is
+// the last one pending, only productions that keep a non-terminal are chosen. Expansion runs on an explicit
+// int stack, and words() derives an independent SplittableRandom per word index, so a parallel stream gives
+// the same words for the same seed.
+public final class WordGenerator {
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+    public static final int MAX_ATTEMPTS = 256;
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final CompiledGrammar grammar;
+    private final long seed;
+    private final SplittableRandom random;
+
+    // Per symbol: its length for terminals, its shortest derivable word for non-terminals (INFINITE if none)
+    private final int[] minLength;
+    // Per production: the shortest word its right-hand side derives and its number of non-terminals
+    private final int[] productionMinLength;
+    private final int[] productionNonTerminals;
+
+    public WordGenerator(Grammar grammar) {
+        this(grammar.compile(), new SplittableRandom().nextLong());
+    }
+
+    public WordGenerator(Grammar grammar, long seed) {
+        this(grammar.compile(), seed);
+    }
+
+    public WordGenerator(CompiledGrammar grammar, long seed) {
+        if (grammar.getStartSymbol() < 0) {
+            throw new IllegalArgumentException("Start symbol " + grammar.getStartSymbolName() + " is not a non-terminal");
+        }
+        this.grammar = grammar;
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+
+        int symbolCount = grammar.getSymbolCount();
+        int nonTerminalCount = grammar.getNonTerminalCount();
+        int productionCount = grammar.getProductionCount();
+        this.minLength = new int[symbolCount];
+        this.productionMinLength = new int[productionCount];
+        this.productionNonTerminals = new int[productionCount];
+        Arrays.fill(minLength, 0, nonTerminalCount, INFINITE);
+        for (int t = nonTerminalCount; t < symbolCount; t++) {
+            minLength[t] = grammar.getSymbol(t).length();
+        }
+
+        // remaining[p]: non-terminal occurrences of p whose minimum is not final yet
+        int[] remaining = new int[productionCount];
+        int[][] occurrences = occurrences(grammar);
+        boolean[] done = new boolean[nonTerminalCount];
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry[0]));
+        for (int p = 0; p < productionCount; p++) {
+            for (int i = 0; i < grammar.getBodyLength(p); i++) {
+                if (!grammar.isTerminal(grammar.getBodySymbol(p, i))) {
+                    remaining[p]++;
+                }
+            }
+            productionNonTerminals[p] = remaining[p];
+            if (remaining[p] == 0) {
+                queue.add(new long[]{bodyLength(p), p});
+            }
+        }
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int head = grammar.getHead((int) entry[1]);
+            if (done[head]) {
+                continue;
+            }
+            done[head] = true;
+            minLength[head] = (int) entry[0];
+            for (int p : occurrences[head]) {
+                if (--remaining[p] == 0) {
+                    queue.add(new long[]{bodyLength(p), p});
+                }
+            }
+        }
+        for (int p = 0; p < productionCount; p++) {
+            productionMinLength[p] = (int) bodyLength(p);
+        }
+    }
+
+    // Productions with the non-terminal on the right-hand side, once per occurrence
+    private static int[][] occurrences(CompiledGrammar grammar) {
+        int[] count = new int[grammar.getNonTerminalCount()];
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            for (int i = 0; i < grammar.getBodyLength(p); i++) {
+                int symbol = grammar.getBodySymbol(p, i);
+                if (!grammar.isTerminal(symbol)) {
+                    count[symbol]++;
+                }
+            }
+        }
+        int[][] occurrences = new int[count.length][];
+        for (int n = 0; n < count.length; n++) {
+            occurrences[n] = new int[count[n]];
+            count[n] = 0;
+        }
+        for (int p = 0; p < grammar.getProductionCount(); p++) {
+            for (int i = 0; i < grammar.getBodyLength(p); i++) {
+                int symbol = grammar.getBodySymbol(p, i);
+                if (!grammar.isTerminal(symbol)) {
+                    occurrences[symbol][count[symbol]++] = p;
+                }
+            }
+        }
+        return occurrences;
+    }
+
+    // Sum of the current minimum lengths of the right-hand side, saturated at INFINITE
+    private long bodyLength(int production) {
+        long length = 0;
+        for (int i = 0; i < grammar.getBodyLength(production); i++) {
+            length += minLength[grammar.getBodySymbol(production, i)];
+        }
+        return Math.min(length, INFINITE);
+    }
+
+    // Length of the shortest word of the grammar, or -1 if the start symbol derives no word at all
+    public int getMinLength() {
+        int length = minLength[grammar.getStartSymbol()];
+        return length == INFINITE ? -1 : length;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Uses this generator's own SplittableRandom, so it must not be shared between threads
+    public String generate() {
+        return generate(0, UNBOUNDED);
+    }
+
+    public String generate(int minLength, int maxLength) {
+        return generate(random, minLength, maxLength);
+    }
+
+    // count words with a length in [minLength, maxLength]; word i only depends on the seed and i
+    public Stream<String> words(long count, int minLength, int maxLength) {
+        checkRange(minLength, maxLength);
+        return LongStream.range(0, count)
+                .parallel()
+                .mapToObj(i -> generate(new SplittableRandom(mix(seed + i * 0x9E3779B97F4A7C15L)), minLength, maxLength));
+    }
+
+    private String generate(SplittableRandom random, int minLength, int maxLength) {
+        checkRange(minLength, maxLength);
+        StringBuilder word = new StringBuilder();
+        int[] stack = new int[16];
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            word.setLength(0);
+            if (expand(random, word, stack, minLength, maxLength)) {
+                return word.toString();
+            }
+        }
+        throw new IllegalStateException("No word with a length in [" + minLength + ", " + maxLength
+                + "] found after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    private void checkRange(int minLength, int maxLength) {
+        int shortest = this.minLength[grammar.getStartSymbol()];
+        if (shortest == INFINITE) {
+            throw new IllegalStateException("Start symbol " + grammar.getStartSymbolName() + " derives no word");
+        }
+        if (minLength < 0 || maxLength < minLength || maxLength < shortest) {
+            throw new IllegalArgumentException("No word of the grammar can have a length in ["
+                    + minLength + ", " + maxLength + "], the shortest has " + shortest);
+        }
+    }
+
+    // One attempt; false if the word ends up too short or the expansion takes too many steps
+    private boolean expand(SplittableRandom random, StringBuilder word, int[] stack, int minLength, int maxLength) {
+        // Cycles of unit and epsilon productions do not make the word longer, so the steps are bounded as well
+        long steps = 64L * (Math.min(maxLength, 1 << 20) + 16);
+        int top = 0;
+        stack[top++] = grammar.getStartSymbol();
+        // Shortest length of everything still on the stack
+        long pending = this.minLength[grammar.getStartSymbol()];
+        int pendingNonTerminals = 1;
+        int[] candidates = new int[4];
+        while (top > 0) {
+            int symbol = stack[--top];
+            pending -= this.minLength[symbol];
+            if (grammar.isTerminal(symbol)) {
+                word.append(grammar.getSymbol(symbol));
+                continue;
+            }
+            pendingNonTerminals--;
+            if (--steps < 0) {
+                return false;
+            }
+
+            // Productions that still fit under the maximum; a short word must not end with this non-terminal
+            long fixed = word.length() + pending;
+            int first = grammar.getFirstProduction(symbol);
+            int last = grammar.getFirstProduction(symbol + 1);
+            if (candidates.length < last - first) {
+                candidates = new int[last - first];
+            }
+            boolean grow = pendingNonTerminals == 0 && fixed + this.minLength[symbol] < minLength;
+            int count = 0;
+            for (int p = first; p < last; p++) {
+                if (fits(p, fixed, maxLength) && (!grow || productionNonTerminals[p] > 0)) {
+                    candidates[count++] = p;
+                }
+            }
+            if (count == 0) {
+                for (int p = first; p < last; p++) {
+                    if (fits(p, fixed, maxLength)) {
+                        candidates[count++] = p;
+                    }
+                }
+            }
+            int production = candidates[random.nextInt(count)];
+
+            int length = grammar.getBodyLength(production);
+            if (top + length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + length));
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                stack[top++] = grammar.getBodySymbol(production, i);
+            }
+            pending += productionMinLength[production];
+            pendingNonTerminals += productionNonTerminals[production];
+        }
+        return word.length() >= minLength;
+    }
+
+    private boolean fits(int production, long fixed, int maxLength) {
+        return productionMinLength[production] != INFINITE && fixed + productionMinLength[production] <= maxLength;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,63 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Re-lexes only the part of a document damaged by an edit. Lexing is stateless between tokens, so once a new
+// token starts past the edit exactly where an old token started (after shifting), the rest of the old stream
+// is reused as is. Pass a TokenBuffer as the old tokens and apply the delta to it to keep every edit
+// proportional to the damaged region instead of the document.
+public class IncrementalLexer {
+    private final LexerTable table;
+
+    public IncrementalLexer() {
+        this(LexerTable.getDefault());
+    }
+
+    public IncrementalLexer(LexerTable table) {
+        this.table = table;
+    }
+
+    // oldTokens is the Lexer.lex() output for the text before the edit, newText the text after it. Text that no
+    // pattern matches becomes ERROR tokens, an editor sends such states all the time.
+    public TokenDelta relex(List<Token> oldTokens, String newText, int offset, int removedLength, String insertedText) throws Exception {
+        int shift = insertedText.length() - removedLength;
+        int editEnd = offset + insertedText.length();
+        int eofIndex = oldTokens.size() - 1;
+
+        // First token touching the edit, by binary search over the token ends; one more token back covers a
+        // match that looked ahead into it
+        int touched = 0;
+        int high = eofIndex;
+        while (touched < high) {
+            int middle = (touched + high) >>> 1;
+            if (oldTokens.get(middle).getEnd() < offset) {
+                touched = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int startIndex = Math.max(0, touched - 1);
+        int restart = startIndex == 0 ? 0 : oldTokens.get(startIndex).getStart();
+
+        TokenCursor cursor = new TokenCursor(newText, table, true);
+        cursor.reset(restart);
+        List<Token> inserted = new ArrayList<>();
+        int oldIndex = startIndex;
+        while (cursor.advance()) {
+            int start = cursor.start();
+            if (start >= editEnd) {
+                int oldStart = start - shift;
+                while (oldIndex < eofIndex && oldTokens.get(oldIndex).getStart() < oldStart) {
+                    oldIndex++;
+                }
+                if (oldIndex < eofIndex && oldTokens.get(oldIndex).getStart() == oldStart) {
+                    return new TokenDelta(startIndex, oldIndex - startIndex, inserted, shift);
+                }
+            }
+            inserted.add(cursor.token());
+        }
+        inserted.add(new Token(TokenKind.EOF, "", newText.length(), newText.length()));
+        return new TokenDelta(startIndex, oldTokens.size() - startIndex, inserted, shift);
+    }
+}
@@ -2,44 +2,40 @@ package lexer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import parser.Parser;
-import static lexer.TokenList.TOKEN_PATTERNS;
 
 public class Lexer {
 
-    private String text;
+    private final String text;
+    private final LexerTable table;
+    private final boolean emitErrors;
 
     public Lexer(String text) {
+        this(text, LexerTable.getDefault());
+    }
+
+    public Lexer(String text, LexerTable table) {
+        this(text, table, false);
+    }
+
+    // With emitErrors, unmatched text is lexed into ERROR tokens instead of failing, see TokenCursor
+    public Lexer(String text, LexerTable table, boolean emitErrors) {
         this.text = text;
+        this.table = table;
+        this.emitErrors = emitErrors;
     }
 
+    public TokenCursor cursor() {
+        return new TokenCursor(text, table, emitErrors);
+    }
+
+    // Single pass over the text: longest match first, ties go to the pattern listed first in TOKEN_PATTERNS
     public List<Token> lex() throws Exception {
         List<Token> tokens = new ArrayList<Token>();
-        int pos = 0;
-        while (pos < text.length()) {
-            Matcher matcher = null;
-            for (TokenPattern pattern : TOKEN_PATTERNS) {
-                matcher = pattern.getPattern().matcher(text);
-                matcher.region(pos, text.length());
-                if (matcher.lookingAt()) {
-                    String matchedText = matcher.group();
-                    if (pattern.getTokenType() != null) {
-                        Token token = new Token(pattern.getTokenType(), matchedText);
-                        tokens.add(token);
-                    }
-                    pos = matcher.end();
-                    break;
-                }
-            }
-            if (matcher != null && !matcher.lookingAt()) {
-                throw new Exception("Unexpected character at position: " + matcher.start());
-            }
+        TokenCursor cursor = cursor();
+        while (cursor.advance()) {
+            tokens.add(cursor.token());
         }
-        tokens.add(new Token(null, ""));
+        tokens.add(new Token(TokenKind.EOF, "", text.length(), text.length()));
         return tokens;
     }
-
-
 }
-
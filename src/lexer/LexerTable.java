@@ -0,0 +1,185 @@
+package lexer;
+
+import automaton.*;
+
+import java.util.*;
+
+// All token patterns combined into one minimized DFA over character classes. Each accepting state carries the
+// index of the first pattern in the list that accepts there, so the longest match wins and ties go to priority.
+public final class LexerTable {
+    public static final int NO_TOKEN = -1;
+
+    private static LexerTable defaultTable;
+
+    private final List<TokenPattern> patterns;
+    private final TokenKind[] kinds;
+    private final int[] charClass;
+    private final int classCount;
+    private final int[] table;
+    private final int[] acceptedPattern;
+    private final int startState;
+
+    private LexerTable(List<TokenPattern> patterns) {
+        this.patterns = List.copyOf(patterns);
+        this.kinds = new TokenKind[patterns.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = patterns.get(i).getKind();
+        }
+
+        // Combined NFA: a fresh start state with an epsilon edge into every pattern
+        RegexNfa nfa = new RegexNfa();
+        String start = nfa.newState();
+        String[] patternEnds = new String[patterns.size()];
+        for (int i = 0; i < patterns.size(); i++) {
+            RegexNfa.Fragment fragment = nfa.add(patterns.get(i).getRegex());
+            nfa.addEpsilon(start, fragment.start);
+            patternEnds[i] = fragment.end;
+        }
+        FiniteAutomaton automaton = new FiniteAutomaton(new HashSet<>(), nfa.getAlphabet(),
+                nfa.getTransitions().toArray(new Transition[0]), start, new HashSet<>(Arrays.asList(patternEnds)));
+
+        AutomatonIndex index = new AutomatonIndex(automaton);
+        SubsetConstruction subsets = SubsetConstruction.determinize(index);
+        int symbolCount = index.getSymbolCount();
+        int dfaStates = subsets.getStateCount();
+
+        // Winning pattern of every subset state, highest priority first
+        int[] patternOf = new int[index.getStateCount()];
+        Arrays.fill(patternOf, NO_TOKEN);
+        for (int i = patternEnds.length - 1; i >= 0; i--) {
+            patternOf[index.getStateId(patternEnds[i])] = i;
+        }
+        int sink = dfaStates;
+        int[] complete = new int[(dfaStates + 1) * symbolCount];
+        int[] initialClass = new int[dfaStates + 1];
+        for (int state = 0; state < dfaStates; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int next = subsets.next(state, symbol);
+                complete[state * symbolCount + symbol] = next < 0 ? sink : next;
+            }
+            int winner = NO_TOKEN;
+            BitSet members = subsets.getMembers(state);
+            for (int member = members.nextSetBit(0); member >= 0; member = members.nextSetBit(member + 1)) {
+                if (patternOf[member] != NO_TOKEN && (winner == NO_TOKEN || patternOf[member] < winner)) {
+                    winner = patternOf[member];
+                }
+            }
+            initialClass[state] = winner + 1;
+        }
+        Arrays.fill(complete, sink * symbolCount, (sink + 1) * symbolCount, sink);
+
+        int[] blocks = Hopcroft.refine(dfaStates + 1, symbolCount, complete, initialClass);
+
+        // Renumber blocks so the start is 0 and the sink's block becomes the dead state
+        int[] blockIds = new int[dfaStates + 1];
+        Arrays.fill(blockIds, -1);
+        int deadBlock = blocks[sink];
+        int stateCount = 0;
+        int[] representative = new int[dfaStates + 1];
+        if (dfaStates > 0 && blocks[subsets.getStartState()] != deadBlock) {
+            blockIds[blocks[subsets.getStartState()]] = stateCount;
+            representative[stateCount++] = subsets.getStartState();
+        }
+        for (int state = 0; state < dfaStates; state++) {
+            if (blocks[state] != deadBlock && blockIds[blocks[state]] < 0) {
+                blockIds[blocks[state]] = stateCount;
+                representative[stateCount++] = state;
+            }
+        }
+
+        // Characters with identical columns share a class
+        Map<String, Integer> columns = new HashMap<>();
+        int[] symbolClass = new int[symbolCount];
+        List<Integer> classSymbols = new ArrayList<>();
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            StringBuilder column = new StringBuilder();
+            for (int state = 0; state < stateCount; state++) {
+                int next = complete[representative[state] * symbolCount + symbol];
+                column.append(blocks[next] == deadBlock ? -1 : blockIds[blocks[next]]).append(',');
+            }
+            Integer known = columns.get(column.toString());
+            if (known == null) {
+                known = classSymbols.size();
+                columns.put(column.toString(), known);
+                classSymbols.add(symbol);
+            }
+            symbolClass[symbol] = known;
+        }
+        this.classCount = classSymbols.size();
+
+        int maxChar = -1;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            maxChar = Math.max(maxChar, index.getSymbol(symbol).charAt(0));
+        }
+        this.charClass = new int[maxChar + 1];
+        Arrays.fill(charClass, -1);
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            charClass[index.getSymbol(symbol).charAt(0)] = symbolClass[symbol];
+        }
+
+        this.table = new int[stateCount * classCount];
+        this.acceptedPattern = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            for (int c = 0; c < classCount; c++) {
+                int next = complete[representative[state] * symbolCount + classSymbols.get(c)];
+                table[state * classCount + c] = blocks[next] == deadBlock ? -1 : blockIds[blocks[next]];
+            }
+            acceptedPattern[state] = initialClass[representative[state]] - 1;
+        }
+        this.startState = stateCount > 0 ? 0 : -1;
+    }
+
+    public static LexerTable build(List<TokenPattern> patterns) {
+        return new LexerTable(patterns);
+    }
+
+    public static synchronized LexerTable getDefault() {
+        if (defaultTable == null) {
+            defaultTable = new LexerTable(TokenList.TOKEN_PATTERNS);
+        }
+        return defaultTable;
+    }
+
+    // End of the longest token starting at pos, or -1 when no pattern matches; the winning pattern
+    // index is left in matchedPattern[0]
+    public int longestMatch(CharSequence text, int pos, int limit, int[] matchedPattern) {
+        int state = startState;
+        int lastEnd = -1;
+        int lastPattern = NO_TOKEN;
+        for (int i = pos; i < limit && state >= 0; ) {
+            char c = text.charAt(i);
+            int cls = c < charClass.length ? charClass[c] : -1;
+            if (cls < 0) {
+                break;
+            }
+            state = table[state * classCount + cls];
+            i++;
+            if (state >= 0 && acceptedPattern[state] != NO_TOKEN) {
+                lastEnd = i;
+                lastPattern = acceptedPattern[state];
+            }
+        }
+        matchedPattern[0] = lastPattern;
+        return lastEnd;
+    }
+
+    public List<TokenPattern> getPatterns() {
+        return patterns;
+    }
+
+    public TokenPattern getPattern(int pattern) {
+        return patterns.get(pattern);
+    }
+
+    public TokenKind getKind(int pattern) {
+        return kinds[pattern];
+    }
+
+    public int getStateCount() {
+        return acceptedPattern.length;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+}
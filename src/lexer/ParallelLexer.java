@@ -0,0 +1,141 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Lexes large inputs in chunks on a ForkJoinPool and stitches them into exactly the sequential token list.
+// Chunks start right after a newline, which is where a token boundary almost always is. Every chunk is lexed
+// speculatively; while stitching, a chunk is only trusted if the sequential position reached by the previous
+// chunk is one of its own token boundaries, otherwise that chunk is lexed again from the real position.
+public class ParallelLexer {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final LexerTable table;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelLexer() {
+        this(LexerTable.getDefault(), ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelLexer(LexerTable table, ForkJoinPool pool, int chunkSize) {
+        this.table = table;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String text;
+        private final int chunkStart;
+        private final int chunkEnd;
+
+        // Every lexer step of the speculative run, skipped tokens included
+        private int[] ends = new int[64];
+        private int steps;
+        private boolean failed;
+        private final List<Token> tokens = new ArrayList<>();
+        private int[] tokenStep = new int[64];
+
+        Chunk(String text, int chunkStart, int chunkEnd) {
+            this.text = text;
+            this.chunkStart = chunkStart;
+            this.chunkEnd = chunkEnd;
+        }
+
+        @Override
+        protected void compute() {
+            int[] matchedPattern = new int[1];
+            int pos = chunkStart;
+            while (pos < chunkEnd) {
+                int end = table.longestMatch(text, pos, text.length(), matchedPattern);
+                if (end < 0) {
+                    failed = true;
+                    return;
+                }
+                if (steps == ends.length) {
+                    ends = Arrays.copyOf(ends, steps * 2);
+                }
+                TokenKind kind = table.getKind(matchedPattern[0]);
+                String tokenType = table.getPattern(matchedPattern[0]).getTokenType();
+                if (tokenType != null) {
+                    if (tokens.size() == tokenStep.length) {
+                        tokenStep = Arrays.copyOf(tokenStep, tokens.size() * 2);
+                    }
+                    tokenStep[tokens.size()] = steps;
+                    String value = text.substring(pos, end);
+                    tokens.add(kind != null ? new Token(kind, value, pos, end) : new Token(tokenType, value, pos, end));
+                }
+                ends[steps++] = end;
+                pos = end;
+            }
+        }
+
+        // Index of the first step the speculative run takes from pos, or -1 if pos is not one of its boundaries
+        int stepAt(int pos) {
+            if (pos == chunkStart) {
+                return 0;
+            }
+            int found = Arrays.binarySearch(ends, 0, steps, pos);
+            return found < 0 ? -1 : found + 1;
+        }
+    }
+
+    public List<Token> lex(String text) throws Exception {
+        // Speculative chunks only pay off with at least two chunks and two workers
+        if (text.length() < 2 * chunkSize || pool.getParallelism() < 2) {
+            return new Lexer(text, table).lex();
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + chunkSize);
+            int newline = text.indexOf('\n', end);
+            end = newline < 0 || end == text.length() ? text.length() : newline + 1;
+            chunks.add(new Chunk(text, start, end));
+            start = end;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(chunks);
+            }
+        });
+
+        List<Token> result = new ArrayList<>();
+        int pos = 0;
+        TokenCursor cursor = new TokenCursor(text, table);
+        for (Chunk chunk : chunks) {
+            if (pos >= chunk.chunkEnd) {
+                continue;
+            }
+            int step = chunk.failed ? -1 : chunk.stepAt(pos);
+            if (step >= 0) {
+                // In sync: take the speculative tokens from that step on
+                int first = 0;
+                while (first < chunk.tokens.size() && chunk.tokenStep[first] < step) {
+                    first++;
+                }
+                result.addAll(chunk.tokens.subList(first, chunk.tokens.size()));
+                pos = chunk.steps == 0 ? pos : chunk.ends[chunk.steps - 1];
+                continue;
+            }
+
+            // Out of sync (or the chunk hit an error): lex this chunk again from the real position
+            cursor.reset(pos);
+            while (cursor.advance() && cursor.start() < chunk.chunkEnd) {
+                result.add(cursor.token());
+            }
+            // Start of the first token past the chunk, which is a boundary of the next chunk when they agree
+            pos = cursor.start();
+        }
+        result.add(new Token(TokenKind.EOF, "", text.length(), text.length()));
+        return result;
+    }
+}
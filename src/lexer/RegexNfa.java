@@ -0,0 +1,208 @@
+package lexer;
+
+import automaton.Transition;
+
+import java.util.*;
+
+// Thompson construction for the regex subset used by token patterns: literals, escapes (\d, \s, \w or an
+// escaped literal), character classes with ranges, groups, alternation and the *, + and ? quantifiers.
+class RegexNfa {
+    private final List<Transition> transitions = new ArrayList<>();
+    private final Set<String> alphabet = new HashSet<>();
+    private int stateCount;
+
+    private String regex;
+    private int pos;
+
+    static final class Fragment {
+        final String start;
+        final String end;
+
+        Fragment(String start, String end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    String newState() {
+        return "n" + stateCount++;
+    }
+
+    void addEpsilon(String from, String to) {
+        transitions.add(new Transition(from, to, ""));
+    }
+
+    private void addChar(String from, String to, char c) {
+        String label = Character.toString(c);
+        alphabet.add(label);
+        transitions.add(new Transition(from, to, label));
+    }
+
+    List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    Set<String> getAlphabet() {
+        return alphabet;
+    }
+
+    Fragment add(String pattern) {
+        this.regex = pattern;
+        this.pos = 0;
+        Fragment fragment = parseAlternation();
+        if (pos != regex.length()) {
+            throw error("Unexpected '" + regex.charAt(pos) + "'");
+        }
+        return fragment;
+    }
+
+    private Fragment parseAlternation() {
+        Fragment first = parseConcatenation();
+        if (pos >= regex.length() || regex.charAt(pos) != '|') {
+            return first;
+        }
+        String start = newState();
+        String end = newState();
+        addEpsilon(start, first.start);
+        addEpsilon(first.end, end);
+        while (pos < regex.length() && regex.charAt(pos) == '|') {
+            pos++;
+            Fragment next = parseConcatenation();
+            addEpsilon(start, next.start);
+            addEpsilon(next.end, end);
+        }
+        return new Fragment(start, end);
+    }
+
+    private Fragment parseConcatenation() {
+        String start = newState();
+        String end = start;
+        while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+            Fragment next = parseRepetition();
+            addEpsilon(end, next.start);
+            end = next.end;
+        }
+        return new Fragment(start, end);
+    }
+
+    private Fragment parseRepetition() {
+        Fragment atom = parseAtom();
+        while (pos < regex.length() && "*+?".indexOf(regex.charAt(pos)) >= 0) {
+            char quantifier = regex.charAt(pos++);
+            String start = newState();
+            String end = newState();
+            addEpsilon(start, atom.start);
+            addEpsilon(atom.end, end);
+            if (quantifier != '+') {
+                addEpsilon(start, end);
+            }
+            if (quantifier != '?') {
+                addEpsilon(atom.end, atom.start);
+            }
+            atom = new Fragment(start, end);
+        }
+        return atom;
+    }
+
+    private Fragment parseAtom() {
+        char c = regex.charAt(pos++);
+        if (c == '(') {
+            Fragment inner = parseAlternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw error("Missing ')'");
+            }
+            pos++;
+            return inner;
+        }
+
+        Set<Character> chars = new TreeSet<>();
+        if (c == '[') {
+            parseClass(chars);
+        } else if (c == '\\') {
+            parseEscape(chars);
+        } else if ("*+?.^$)".indexOf(c) >= 0) {
+            throw error("Unsupported '" + c + "'");
+        } else {
+            chars.add(c);
+        }
+
+        String start = newState();
+        String end = newState();
+        for (char member : chars) {
+            addChar(start, end, member);
+        }
+        return new Fragment(start, end);
+    }
+
+    private void parseClass(Set<Character> chars) {
+        if (pos < regex.length() && regex.charAt(pos) == '^') {
+            throw error("Negated character classes are not supported");
+        }
+        while (pos < regex.length() && regex.charAt(pos) != ']') {
+            char c = regex.charAt(pos++);
+            if (c == '\\') {
+                parseEscape(chars);
+                continue;
+            }
+            if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                char last = regex.charAt(pos + 1);
+                pos += 2;
+                addRange(chars, c, last);
+            } else {
+                chars.add(c);
+            }
+        }
+        if (pos >= regex.length()) {
+            throw error("Missing ']'");
+        }
+        pos++;
+    }
+
+    private void parseEscape(Set<Character> chars) {
+        if (pos >= regex.length()) {
+            throw error("Dangling '\\'");
+        }
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case 'd':
+                addRange(chars, '0', '9');
+                break;
+            case 's':
+                for (char member : new char[]{' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+                    chars.add(member);
+                }
+                break;
+            case 'w':
+                addRange(chars, 'a', 'z');
+                addRange(chars, 'A', 'Z');
+                addRange(chars, '0', '9');
+                chars.add('_');
+                break;
+            case 't':
+                chars.add('\t');
+                break;
+            case 'n':
+                chars.add('\n');
+                break;
+            case 'r':
+                chars.add('\r');
+                break;
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw error("Unsupported escape '\\" + c + "'");
+                }
+                chars.add(c);
+        }
+    }
+
+    // Counts on an int, a char would wrap from '\uffff' back to 0 and never pass last
+    private static void addRange(Set<Character> chars, char first, char last) {
+        for (int c = first; c <= last; c++) {
+            chars.add((char) c);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " in token pattern " + regex + " at " + pos);
+    }
+}
@@ -1,27 +1,54 @@
 package lexer;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Token {
+    private final TokenKind kind;
     private final String tokenType;
     private final String value;
-    private List<Token> children;
+    private final int start;
+    private final int end;
+
     public Token(String tokenType, String value) {
+        this(tokenType, value, -1, -1);
+    }
+
+    public Token(String tokenType, String value, int start, int end) {
+        this.kind = TokenKind.fromTokenType(tokenType);
         this.tokenType = tokenType;
         this.value = value;
-        this.children = new ArrayList<>();
+        this.start = start;
+        this.end = end;
+    }
+
+    public Token(TokenKind kind, String value, int start, int end) {
+        this.kind = kind;
+        this.tokenType = kind == TokenKind.EOF ? null : kind.name();
+        this.value = value;
+        this.start = start;
+        this.end = end;
     }
+
+    // EOF for the end marker, null when the type is not one of the language's kinds
+    public TokenKind getKind() {
+        return tokenType == null ? TokenKind.EOF : kind;
+    }
+
     public String getTokenType() {
         return tokenType;
     }
+
     public String getValue() {
         return value;
     }
 
-    public List<Token> getChildren() {
-        return children;
+    // Offsets into the lexed text, -1 for tokens that were not produced by a lexer
+    public int getStart() {
+        return start;
     }
+
+    public int getEnd() {
+        return end;
+    }
+
     @Override
     public String toString() {
         return "(" + tokenType + ", " + value + ")";
@@ -0,0 +1,105 @@
+package lexer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Token list of a document under editing, kept as a gap buffer at the last edit: edits cluster, so applying a
+// TokenDelta only moves the tokens between the previous edit and this one. Tokens are stored as they were
+// lexed plus a bias; behind the gap the bias is relative to the end of the text, so the shift of an edit never
+// touches the tokens after it. get applies the bias on read and only allocates for tokens that moved.
+public final class TokenBuffer extends AbstractList<Token> implements RandomAccess {
+    private Token[] tokens;
+    private int[] bias;
+    private int gapStart;
+    private int gapEnd;
+    private int textLength;
+
+    // tokens is the Lexer.lex() output for a text of textLength characters
+    public TokenBuffer(List<Token> tokens, int textLength) {
+        int capacity = Math.max(16, tokens.size() + tokens.size() / 8);
+        this.tokens = tokens.toArray(new Token[capacity]);
+        this.bias = new int[capacity];
+        this.gapStart = tokens.size();
+        this.gapEnd = capacity;
+        this.textLength = textLength;
+    }
+
+    @Override
+    public Token get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Token " + index + " of " + size());
+        }
+        int slot = index < gapStart ? index : index + gapEnd - gapStart;
+        int shift = index < gapStart ? bias[slot] : bias[slot] + textLength;
+        Token token = tokens[slot];
+        if (shift == 0) {
+            return token;
+        }
+        return token.getKind() != null
+                ? new Token(token.getKind(), token.getValue(), token.getStart() + shift, token.getEnd() + shift)
+                : new Token(token.getTokenType(), token.getValue(), token.getStart() + shift, token.getEnd() + shift);
+    }
+
+    @Override
+    public int size() {
+        return tokens.length - (gapEnd - gapStart);
+    }
+
+    public int getTextLength() {
+        return textLength;
+    }
+
+    // Applies a delta computed by IncrementalLexer.relex against this buffer
+    public void apply(TokenDelta delta) {
+        int start = delta.getStartIndex();
+        int removed = delta.getRemovedCount();
+        if (start < 0 || removed < 0 || start + removed > size()) {
+            throw new IllegalArgumentException("Delta " + delta + " does not fit " + size() + " tokens");
+        }
+        moveGap(start);
+        Arrays.fill(tokens, gapEnd, gapEnd + removed, null);
+        gapEnd += removed;
+        List<Token> inserted = delta.getInserted();
+        if (gapEnd - gapStart < inserted.size()) {
+            grow(inserted.size());
+        }
+        for (Token token : inserted) {
+            tokens[gapStart] = token;
+            bias[gapStart++] = 0;
+        }
+        textLength += delta.getShift();
+    }
+
+    private void moveGap(int index) {
+        while (gapStart > index) {
+            gapStart--;
+            gapEnd--;
+            tokens[gapEnd] = tokens[gapStart];
+            bias[gapEnd] = bias[gapStart] - textLength;
+            tokens[gapStart] = null;
+        }
+        while (gapStart < index) {
+            tokens[gapStart] = tokens[gapEnd];
+            bias[gapStart] = bias[gapEnd] + textLength;
+            tokens[gapEnd] = null;
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void grow(int needed) {
+        int after = tokens.length - gapEnd;
+        int capacity = Math.max(tokens.length * 2, size() + needed + 16);
+        Token[] grownTokens = new Token[capacity];
+        int[] grownBias = new int[capacity];
+        System.arraycopy(tokens, 0, grownTokens, 0, gapStart);
+        System.arraycopy(bias, 0, grownBias, 0, gapStart);
+        System.arraycopy(tokens, gapEnd, grownTokens, capacity - after, after);
+        System.arraycopy(bias, gapEnd, grownBias, capacity - after, after);
+        tokens = grownTokens;
+        bias = grownBias;
+        gapEnd = capacity - after;
+    }
+}
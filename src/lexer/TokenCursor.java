@@ -0,0 +1,112 @@
+package lexer;
+
+// Walks the tokens of a text without allocating: the current token is only its pattern index and offsets.
+// Skipped patterns (those without a token type, like whitespace) are never reported.
+public final class TokenCursor {
+    public static final int EOF = -1;
+    // Pattern index of an ERROR token
+    public static final int ERROR = -2;
+
+    private final CharSequence text;
+    private final LexerTable table;
+    private final boolean emitErrors;
+    private final int[] matchedPattern = new int[1];
+    private int pattern = EOF;
+    private TokenKind kind = TokenKind.EOF;
+    private int start;
+    private int end;
+
+    public TokenCursor(CharSequence text) {
+        this(text, LexerTable.getDefault());
+    }
+
+    public TokenCursor(CharSequence text, LexerTable table) {
+        this(text, table, false);
+    }
+
+    // With emitErrors, text that no pattern matches becomes one ERROR token per run of such characters instead
+    // of an exception
+    public TokenCursor(CharSequence text, LexerTable table, boolean emitErrors) {
+        this.text = text;
+        this.table = table;
+        this.emitErrors = emitErrors;
+    }
+
+    // Moves to the next token; returns false and sets kind to EOF once the text is exhausted
+    public boolean advance() throws Exception {
+        int pos = end;
+        int length = text.length();
+        while (pos < length) {
+            int tokenEnd = table.longestMatch(text, pos, length, matchedPattern);
+            if (tokenEnd < 0) {
+                if (!emitErrors) {
+                    throw new Exception("Unexpected character at position: " + pos);
+                }
+                tokenEnd = pos + 1;
+                while (tokenEnd < length && table.longestMatch(text, tokenEnd, length, matchedPattern) < 0) {
+                    tokenEnd++;
+                }
+                pattern = ERROR;
+                kind = TokenKind.ERROR;
+                start = pos;
+                end = tokenEnd;
+                return true;
+            }
+            if (table.getPattern(matchedPattern[0]).getTokenType() != null) {
+                pattern = matchedPattern[0];
+                kind = table.getKind(pattern);
+                start = pos;
+                end = tokenEnd;
+                return true;
+            }
+            pos = tokenEnd;
+        }
+        pattern = EOF;
+        kind = TokenKind.EOF;
+        start = length;
+        end = length;
+        return false;
+    }
+
+    // Continues lexing from the given offset, which must be a token boundary
+    public void reset(int position) {
+        pattern = EOF;
+        kind = TokenKind.EOF;
+        start = position;
+        end = position;
+    }
+
+    // Index of the matched pattern in the lexer's pattern list, EOF or ERROR
+    public int pattern() {
+        return pattern;
+    }
+
+    // Kind of the current token, TokenKind.EOF at the end and null for patterns outside the language
+    public TokenKind kind() {
+        return kind;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public String tokenType() {
+        if (pattern == ERROR) {
+            return TokenKind.ERROR.name();
+        }
+        return pattern == EOF ? null : table.getPattern(pattern).getTokenType();
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public Token token() {
+        String value = text.subSequence(start, end).toString();
+        return kind != null ? new Token(kind, value, start, end) : new Token(tokenType(), value, start, end);
+    }
+}
@@ -0,0 +1,50 @@
+package lexer;
+
+import java.util.List;
+
+// Replace removedCount tokens starting at startIndex with the inserted ones; every old token after the
+// replaced range moves by shift characters but is otherwise unchanged
+public class TokenDelta {
+    private final int startIndex;
+    private final int removedCount;
+    private final List<Token> inserted;
+    private final int shift;
+
+    public TokenDelta(int startIndex, int removedCount, List<Token> inserted, int shift) {
+        this.startIndex = startIndex;
+        this.removedCount = removedCount;
+        this.inserted = inserted;
+        this.shift = shift;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    public List<Token> getInserted() {
+        return inserted;
+    }
+
+    public int getShift() {
+        return shift;
+    }
+
+    // The token list after the edit. A TokenBuffer is edited in place and returned, which costs the distance
+    // to its previous edit; any other list (ending in the EOF token) is first copied into a new TokenBuffer.
+    // Either way the shifted tokens are only materialized when they are read.
+    public TokenBuffer apply(List<Token> oldTokens) {
+        TokenBuffer buffer = oldTokens instanceof TokenBuffer ? (TokenBuffer) oldTokens
+                : new TokenBuffer(oldTokens, oldTokens.get(oldTokens.size() - 1).getEnd());
+        buffer.apply(this);
+        return buffer;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenDelta{at " + startIndex + ", removed " + removedCount + ", inserted " + inserted + ", shift " + shift + "}";
+    }
+}
@@ -0,0 +1,54 @@
+package lexer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Interned token types; TokenList pairs every kind with its pattern, in priority order
+public enum TokenKind {
+    PLUS,
+    MINUS,
+    MULTIPLY,
+    DIVIDE,
+    MODULO,
+    LPAREN,
+    RPAREN,
+    LBRACE,
+    RBRACE,
+    FLOAT,
+    INTEGER,
+    IF,
+    PRINT,
+    ELSE,
+    WHILE,
+    FOR,
+    IDENTIFIER,
+    EQUALS,
+    ASSIGNMENT,
+    NOT_EQUALS,
+    GREATER_THAN_EQUALS,
+    GREATER_THAN,
+    LESS_THAN_EQUALS,
+    LESS_THAN,
+    LOGICAL_AND,
+    LOGICAL_OR,
+    LOGICAL_NOT,
+    SEMICOLON,
+    COMMA,
+    COLON,
+    // Text that no pattern matches, only produced by cursors that report errors as tokens
+    ERROR,
+    EOF;
+
+    private static final Map<String, TokenKind> BY_NAME = new HashMap<>();
+
+    static {
+        for (TokenKind kind : values()) {
+            BY_NAME.put(kind.name(), kind);
+        }
+    }
+
+    // Kind for a token type name, null for names that are not part of the language (or null itself)
+    public static TokenKind fromTokenType(String tokenType) {
+        return tokenType == null ? null : BY_NAME.get(tokenType);
+    }
+}
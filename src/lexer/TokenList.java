@@ -6,36 +6,36 @@ import java.util.List;
 
 public class TokenList {
     public static final List<TokenPattern> TOKEN_PATTERNS = Arrays.asList(
-            new TokenPattern("\\+", "PLUS"),
-            new TokenPattern("\\-", "MINUS"),
-            new TokenPattern("\\*", "MULTIPLY"),
-            new TokenPattern("\\/", "DIVIDE"),
-            new TokenPattern("\\%", "MODULO"),
-            new TokenPattern("\\(", "LPAREN"),
-            new TokenPattern("\\)", "RPAREN"),
-            new TokenPattern("\\{", "LBRACE"),
-            new TokenPattern("\\}", "RBRACE"),
-            new TokenPattern("\\d+\\.\\d+", "FLOAT"),
-            new TokenPattern("\\d+", "INTEGER"),
-            new TokenPattern("if", "IF"),
-            new TokenPattern("print", "PRINT"),
-            new TokenPattern("else", "ELSE"),
-            new TokenPattern("while", "WHILE"),
-            new TokenPattern("for", "FOR"),
-            new TokenPattern("[a-zA-Z_][a-zA-Z_0-9]*", "IDENTIFIER"),
-            new TokenPattern("==", "EQUALS"),
-            new TokenPattern("\\=", "ASSIGNMENT"),
-            new TokenPattern("\\!=", "NOT_EQUALS"),
-            new TokenPattern("\\>=", "GREATER_THAN_EQUALS"),
-            new TokenPattern("\\>", "GREATER_THAN"),
-            new TokenPattern("\\<=", "LESS_THAN_EQUALS"),
-            new TokenPattern("\\<", "LESS_THAN"),
-            new TokenPattern("\\&&", "LOGICAL_AND"),
-            new TokenPattern("\\|\\|", "LOGICAL_OR"),
-            new TokenPattern("\\!", "LOGICAL_NOT"),
-            new TokenPattern("\\;", "SEMICOLON"),
-            new TokenPattern("\\,", "COMMA"),
-            new TokenPattern("\\:", "COLON"),
-            new TokenPattern("\\s+", null)
+            new TokenPattern("\\+", TokenKind.PLUS),
+            new TokenPattern("\\-", TokenKind.MINUS),
+            new TokenPattern("\\*", TokenKind.MULTIPLY),
+            new TokenPattern("\\/", TokenKind.DIVIDE),
+            new TokenPattern("\\%", TokenKind.MODULO),
+            new TokenPattern("\\(", TokenKind.LPAREN),
+            new TokenPattern("\\)", TokenKind.RPAREN),
+            new TokenPattern("\\{", TokenKind.LBRACE),
+            new TokenPattern("\\}", TokenKind.RBRACE),
+            new TokenPattern("\\d+\\.\\d+", TokenKind.FLOAT),
+            new TokenPattern("\\d+", TokenKind.INTEGER),
+            new TokenPattern("if", TokenKind.IF),
+            new TokenPattern("print", TokenKind.PRINT),
+            new TokenPattern("else", TokenKind.ELSE),
+            new TokenPattern("while", TokenKind.WHILE),
+            new TokenPattern("for", TokenKind.FOR),
+            new TokenPattern("[a-zA-Z_][a-zA-Z_0-9]*", TokenKind.IDENTIFIER),
+            new TokenPattern("==", TokenKind.EQUALS),
+            new TokenPattern("\\=", TokenKind.ASSIGNMENT),
+            new TokenPattern("\\!=", TokenKind.NOT_EQUALS),
+            new TokenPattern("\\>=", TokenKind.GREATER_THAN_EQUALS),
+            new TokenPattern("\\>", TokenKind.GREATER_THAN),
+            new TokenPattern("\\<=", TokenKind.LESS_THAN_EQUALS),
+            new TokenPattern("\\<", TokenKind.LESS_THAN),
+            new TokenPattern("\\&&", TokenKind.LOGICAL_AND),
+            new TokenPattern("\\|\\|", TokenKind.LOGICAL_OR),
+            new TokenPattern("\\!", TokenKind.LOGICAL_NOT),
+            new TokenPattern("\\;", TokenKind.SEMICOLON),
+            new TokenPattern("\\,", TokenKind.COMMA),
+            new TokenPattern("\\:", TokenKind.COLON),
+            TokenPattern.skip("\\s+")
     );
 }
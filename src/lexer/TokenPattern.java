@@ -3,19 +3,44 @@ package lexer;
 import java.util.regex.Pattern;
 
 public class TokenPattern {
-    private final String pattern;
+    private final String regex;
+    private final Pattern pattern;
     private final String tokenType;
+    private final TokenKind kind;
 
     public TokenPattern(String pattern, String tokenType) {
-        this.pattern = pattern;
+        this(pattern, tokenType, TokenKind.fromTokenType(tokenType));
+    }
+
+    public TokenPattern(String pattern, TokenKind kind) {
+        this(pattern, kind.name(), kind);
+    }
+
+    private TokenPattern(String pattern, String tokenType, TokenKind kind) {
+        this.regex = pattern;
+        this.pattern = Pattern.compile(pattern);
         this.tokenType = tokenType;
+        this.kind = kind;
+    }
+
+    // Matched text is dropped by the lexer, like whitespace
+    public static TokenPattern skip(String pattern) {
+        return new TokenPattern(pattern, (String) null);
     }
 
     public Pattern getPattern() {
-        return Pattern.compile(pattern);
+        return pattern;
+    }
+
+    public String getRegex() {
+        return regex;
     }
 
     public String getTokenType() {
         return tokenType;
     }
+
+    public TokenKind getKind() {
+        return kind;
+    }
 }
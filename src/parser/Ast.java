@@ -0,0 +1,186 @@
+package parser;
+
+import lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Syntax tree stored as parallel int arrays, node ids are indexes into them. Every node has a kind, a source
+// span and one data slot: an interned name for named kinds, a TokenKind ordinal for operators. The children of
+// a node are a contiguous range of the children array. Nodes are added bottom-up: the parser pushes finished
+// child ids on a pending stack and addNode takes everything above a mark as the children of the new node.
+public final class Ast {
+    public static final int NONE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final TokenKind[] OPERATORS = TokenKind.values();
+
+    private int[] kinds = new int[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] data = new int[64];
+    private int[] childStart = new int[64];
+    private int[] childCount = new int[64];
+    private int nodeCount;
+
+    private int[] children = new int[64];
+    private int childrenSize;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    private int[] pending = new int[16];
+    private int pendingSize;
+    private int root = NONE;
+
+    int mark() {
+        return pendingSize;
+    }
+
+    void push(int node) {
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = node;
+    }
+
+    int pop() {
+        return pending[--pendingSize];
+    }
+
+    int peek() {
+        return pending[pendingSize - 1];
+    }
+
+    // Drops what was pushed since mark, for a statement the parser gives up on; its nodes stay unreachable
+    void truncate(int mark) {
+        pendingSize = mark;
+    }
+
+    // Adds a node whose children are the nodes pushed since mark, in push order, and removes them from the stack
+    int addNode(NodeKind kind, int value, int start, int end, int mark) {
+        if (nodeCount == kinds.length) {
+            int capacity = nodeCount * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            data = Arrays.copyOf(data, capacity);
+            childStart = Arrays.copyOf(childStart, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+        }
+        int count = pendingSize - mark;
+        if (childrenSize + count > children.length) {
+            children = Arrays.copyOf(children, Math.max(children.length * 2, childrenSize + count));
+        }
+        System.arraycopy(pending, mark, children, childrenSize, count);
+        pendingSize = mark;
+
+        kinds[nodeCount] = kind.ordinal();
+        starts[nodeCount] = start;
+        ends[nodeCount] = end;
+        data[nodeCount] = value;
+        childStart[nodeCount] = childrenSize;
+        childCount[nodeCount] = count;
+        childrenSize += count;
+        return nodeCount++;
+    }
+
+    void setSpan(int node, int start, int end) {
+        starts[node] = start;
+        ends[node] = end;
+    }
+
+    int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    void setRoot(int root) {
+        this.root = root;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public NodeKind getKind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    // Offsets of the node's first and last token in the source text, -1 for tokens without positions
+    public int getStart(int node) {
+        return starts[node];
+    }
+
+    public int getEnd(int node) {
+        return ends[node];
+    }
+
+    public int getChildCount(int node) {
+        return childCount[node];
+    }
+
+    public int getChild(int node, int index) {
+        if (index < 0 || index >= childCount[node]) {
+            throw new IndexOutOfBoundsException("Node " + node + " has no child " + index);
+        }
+        return children[childStart[node] + index];
+    }
+
+    // Identifier or literal text of a named node, null for other kinds
+    public String getName(int node) {
+        return getKind(node).isNamed() ? names.get(data[node]) : null;
+    }
+
+    // Operator of a BINARY or UNARY node, null for other kinds
+    public TokenKind getOperator(int node) {
+        return getKind(node).isOperator() ? OPERATORS[data[node]] : null;
+    }
+
+    // Depth-first walk from the root on an explicit stack, so deep trees cannot overflow the call stack
+    public void walk(AstVisitor visitor) {
+        if (root == NONE) {
+            return;
+        }
+        int[] nodes = new int[16];
+        int[] nextChild = new int[16];
+        int top = 0;
+        nodes[top] = root;
+        nextChild[top++] = 0;
+        visitor.enter(this, root, 0);
+        while (top > 0) {
+            int node = nodes[top - 1];
+            int child = nextChild[top - 1]++;
+            if (child == childCount[node]) {
+                top--;
+                visitor.exit(this, node, top);
+                continue;
+            }
+            int next = children[childStart[node] + child];
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                nextChild = Arrays.copyOf(nextChild, top * 2);
+            }
+            nodes[top] = next;
+            nextChild[top++] = 0;
+            visitor.enter(this, next, top - 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return AstPrinter.print(this);
+    }
+}
@@ -0,0 +1,24 @@
+package parser;
+
+// Indented text form of an Ast, one node per line: the kind, then its name or operator if it has one
+public final class AstPrinter implements AstVisitor {
+    private final StringBuilder text = new StringBuilder();
+
+    public static String print(Ast ast) {
+        AstPrinter printer = new AstPrinter();
+        ast.walk(printer);
+        return printer.text.toString();
+    }
+
+    @Override
+    public void enter(Ast ast, int node, int depth) {
+        NodeKind kind = ast.getKind(node);
+        text.append("  ".repeat(depth)).append(kind);
+        if (kind.isNamed()) {
+            text.append(' ').append(ast.getName(node));
+        } else if (kind.isOperator()) {
+            text.append(' ').append(ast.getOperator(node));
+        }
+        text.append('\n');
+    }
+}
@@ -0,0 +1,9 @@
+package parser;
+
+// Callbacks for Ast.walk, in pre-order on enter and post-order on exit
+public interface AstVisitor {
+    void enter(Ast ast, int node, int depth);
+
+    default void exit(Ast ast, int node, int depth) {
+    }
+}
@@ -0,0 +1,44 @@
+package parser;
+
+// One error found while parsing. Offsets are into the source text; line and column count from 1 and are 0 when
+// the parser had no text to count them in, like for a token list.
+public final class Diagnostic {
+    private final String message;
+    private final int start;
+    private final int end;
+    private final int line;
+    private final int column;
+
+    public Diagnostic(String message, int start, int end, int line, int column) {
+        this.message = message;
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.column = column;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    @Override
+    public String toString() {
+        return line > 0 ? line + ":" + column + ": " + message : message;
+    }
+}
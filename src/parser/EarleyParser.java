@@ -0,0 +1,742 @@
+package parser;
+
+import grammar.CompiledGrammar;
+import grammar.Grammar;
+import lexer.TokenCursor;
+
+import java.util.*;
+
+// General context-free parser over the compiled form of a Grammar, for grammars LL1Parser rejects.
+// parse() is Scott's Earley parser ("SPPF-style parsing from Earley recognisers") and builds a ParseForest;
+// accepts() is a recognizer with the Aycock-Horspool nullable fix and Leo's memoized deterministic reduction
+// paths, which keeps right recursion linear. Earley items are dotted items (one id per production and dot
+// position) plus an origin, kept in parallel int arrays with a per-set waiting list for every non-terminal.
+public class EarleyParser {
+    private static final int COMPLETE = Integer.MIN_VALUE;
+    private static final int NO_LEO = -1;
+    private static final int LEO_UNKNOWN = -2;
+    private static final int LEO_IN_PROGRESS = -3;
+
+    private final String[] terminals;
+    private final String[] nonTerminals;
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private final Map<String, Integer> nonTerminalIds = new HashMap<>();
+    // Non-terminal ids are followed by an internal augmented start S' -> S used by the recognizer
+    private final int nonTerminalCount;
+    private final int augmentedStart;
+
+    // Right-hand sides encoded as terminal ids (>= 0) and ~non-terminal ids (< 0)
+    private final int[] productionLeft;
+    private final int[][] productionRight;
+    private final int[] productionItem;
+    private final int[][] productionsOf;
+    private final boolean[] nullable;
+
+    // Dotted items: production, dot position and the symbol after the dot (COMPLETE at the end)
+    private final int[] itemProductions;
+    private final int[] itemDot;
+    private final int[] itemNext;
+
+    public EarleyParser(Grammar grammar) {
+        CompiledGrammar compiled = grammar.compile();
+        if (compiled.getStartSymbol() < 0) {
+            throw new IllegalArgumentException("Start symbol " + compiled.getStartSymbolName() + " is not a non-terminal");
+        }
+        int declared = compiled.getNonTerminalCount();
+        this.terminals = new String[compiled.getTerminalCount()];
+        for (int t = 0; t < terminals.length; t++) {
+            terminals[t] = compiled.getSymbol(declared + t);
+            terminalIds.put(terminals[t], t);
+        }
+
+        // The start symbol moves to id 0, the others keep the order of the compiled grammar
+        int[] order = new int[declared];
+        int[] renamed = new int[declared];
+        order[0] = compiled.getStartSymbol();
+        for (int a = 0, next = 1; a < declared; a++) {
+            if (a != compiled.getStartSymbol()) {
+                order[next++] = a;
+            }
+        }
+        this.nonTerminals = new String[declared];
+        for (int n = 0; n < declared; n++) {
+            renamed[order[n]] = n;
+            nonTerminals[n] = compiled.getSymbol(order[n]);
+            nonTerminalIds.put(nonTerminals[n], n);
+        }
+        this.nonTerminalCount = nonTerminals.length + 1;
+        this.augmentedStart = nonTerminals.length;
+
+        List<Integer> lefts = new ArrayList<>();
+        List<int[]> rights = new ArrayList<>();
+        for (int n = 0; n < nonTerminals.length; n++) {
+            for (int p = compiled.getFirstProduction(order[n]); p < compiled.getFirstProduction(order[n] + 1); p++) {
+                int[] encoded = compiled.getBody(p);
+                for (int i = 0; i < encoded.length; i++) {
+                    encoded[i] = compiled.isTerminal(encoded[i]) ? encoded[i] - declared : ~renamed[encoded[i]];
+                }
+                lefts.add(n);
+                rights.add(encoded);
+            }
+        }
+        lefts.add(augmentedStart);
+        rights.add(new int[]{~0});
+        this.productionLeft = lefts.stream().mapToInt(Integer::intValue).toArray();
+        this.productionRight = rights.toArray(new int[0][]);
+
+        int itemCount = 0;
+        this.productionItem = new int[productionLeft.length];
+        for (int p = 0; p < productionLeft.length; p++) {
+            productionItem[p] = itemCount;
+            itemCount += productionRight[p].length + 1;
+        }
+        this.itemProductions = new int[itemCount];
+        this.itemDot = new int[itemCount];
+        this.itemNext = new int[itemCount];
+        for (int p = 0; p < productionLeft.length; p++) {
+            for (int dot = 0; dot <= productionRight[p].length; dot++) {
+                int item = productionItem[p] + dot;
+                itemProductions[item] = p;
+                itemDot[item] = dot;
+                itemNext[item] = dot < productionRight[p].length ? productionRight[p][dot] : COMPLETE;
+            }
+        }
+
+        List<List<Integer>> byLeft = new ArrayList<>();
+        for (int n = 0; n < nonTerminalCount; n++) {
+            byLeft.add(new ArrayList<>());
+        }
+        for (int p = 0; p < productionLeft.length; p++) {
+            byLeft.get(productionLeft[p]).add(p);
+        }
+        this.productionsOf = new int[nonTerminalCount][];
+        for (int n = 0; n < nonTerminalCount; n++) {
+            productionsOf[n] = byLeft.get(n).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.nullable = new boolean[nonTerminalCount];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionLeft.length; p++) {
+                if (nullable[productionLeft[p]]) {
+                    continue;
+                }
+                boolean allNullable = true;
+                for (int symbol : productionRight[p]) {
+                    allNullable &= symbol < 0 && nullable[~symbol];
+                }
+                if (allNullable) {
+                    nullable[productionLeft[p]] = changed = true;
+                }
+            }
+        }
+    }
+
+    // Earley sets stored back to back: items, origins, SPPF nodes and per (set, non-terminal) waiting lists
+    private final class Chart {
+        final int n;
+        int[] item = new int[256];
+        int[] origin = new int[256];
+        int[] node = new int[256];
+        int[] nextWaiting = new int[256];
+        int size;
+        final int[] setStart;
+        final int[] waitingHead;
+        final LongIntMap seen = new LongIntMap();
+
+        Chart(int n) {
+            this.n = n;
+            this.setStart = new int[n + 2];
+            this.waitingHead = new int[(n + 1) * nonTerminalCount];
+            Arrays.fill(waitingHead, -1);
+        }
+
+        // Adds (item, origin) to set i unless it is already there
+        boolean add(int set, int dottedItem, int from, int sppfNode) {
+            if (seen.putIfAbsent(key(dottedItem, from), size) >= 0) {
+                return false;
+            }
+            if (size == item.length) {
+                int capacity = size * 2;
+                item = Arrays.copyOf(item, capacity);
+                origin = Arrays.copyOf(origin, capacity);
+                node = Arrays.copyOf(node, capacity);
+                nextWaiting = Arrays.copyOf(nextWaiting, capacity);
+            }
+            item[size] = dottedItem;
+            origin[size] = from;
+            node[size] = sppfNode;
+            nextWaiting[size] = -1;
+            int next = itemNext[dottedItem];
+            if (next != COMPLETE && next < 0) {
+                int slot = set * nonTerminalCount + ~next;
+                nextWaiting[size] = waitingHead[slot];
+                waitingHead[slot] = size;
+            }
+            size++;
+            return true;
+        }
+
+        long key(int dottedItem, int from) {
+            return (long) dottedItem * (n + 1) + from;
+        }
+    }
+
+    public boolean accepts(int[] input) {
+        int[][] starting = new int[input.length][];
+        for (int i = 0; i < input.length; i++) {
+            starting[i] = new int[]{input[i]};
+        }
+        int[] width = new int[terminals.length];
+        Arrays.fill(width, 1);
+        return recognize(input.length, starting, width);
+    }
+
+    // Earley sets are numbered by input position. starting[i] holds the terminals that start at position i and
+    // width[t] is how many positions terminal t covers, so a scan from set i feeds set i + width[t] and a set
+    // no terminal ends at stays empty.
+    private boolean recognize(int n, int[][] starting, int[] width) {
+        Chart chart = new Chart(n);
+        int[] predictedAt = new int[nonTerminalCount];
+        Arrays.fill(predictedAt, -1);
+        // Leo items per (set, non-terminal): topmost completed item and its origin, or NO_LEO
+        int[] leoItem = new int[(n + 1) * nonTerminalCount];
+        int[] leoOrigin = new int[(n + 1) * nonTerminalCount];
+        Arrays.fill(leoItem, LEO_UNKNOWN);
+        // Scanned (item, origin) pairs waiting for the set they end in
+        int[][] pending = new int[n + 1][];
+        int[] pendingSize = new int[n + 1];
+        int[] startsAt = new int[terminals.length];
+        Arrays.fill(startsAt, -1);
+        int furthest = 0;
+
+        chart.add(0, productionItem[productionsOf[augmentedStart][0]], 0, -1);
+        for (int i = 0; ; i++) {
+            if (i > 0) {
+                chart.seen.clear();
+                chart.setStart[i] = chart.size;
+                for (int q = 0; q < pendingSize[i]; q += 2) {
+                    chart.add(i, pending[i][q], pending[i][q + 1], -1);
+                }
+                pending[i] = null;
+            }
+            for (int e = chart.setStart[i]; e < chart.size; e++) {
+                int item = chart.item[e];
+                int origin = chart.origin[e];
+                int next = itemNext[item];
+                if (next == COMPLETE) {
+                    // Completions with origin i are covered by advancing over nullable symbols when predicting
+                    if (origin == i) {
+                        continue;
+                    }
+                    int symbol = productionLeft[itemProductions[item]];
+                    int slot = leo(chart, leoItem, leoOrigin, origin, symbol);
+                    if (leoItem[slot] != NO_LEO) {
+                        chart.add(i, leoItem[slot], leoOrigin[slot], -1);
+                        continue;
+                    }
+                    for (int z = chart.waitingHead[origin * nonTerminalCount + symbol]; z >= 0; z = chart.nextWaiting[z]) {
+                        chart.add(i, chart.item[z] + 1, chart.origin[z], -1);
+                    }
+                } else if (next < 0) {
+                    int symbol = ~next;
+                    if (predictedAt[symbol] != i) {
+                        predictedAt[symbol] = i;
+                        for (int p : productionsOf[symbol]) {
+                            chart.add(i, productionItem[p], i, -1);
+                        }
+                    }
+                    if (nullable[symbol]) {
+                        chart.add(i, item + 1, origin, -1);
+                    }
+                }
+            }
+            if (i == n) {
+                break;
+            }
+
+            for (int t : starting[i]) {
+                startsAt[t] = i;
+            }
+            for (int e = chart.setStart[i]; e < chart.size; e++) {
+                int next = itemNext[chart.item[e]];
+                if (next >= 0 && startsAt[next] == i) {
+                    int end = i + width[next];
+                    if (pending[end] == null) {
+                        pending[end] = new int[8];
+                    } else if (pendingSize[end] + 2 > pending[end].length) {
+                        pending[end] = Arrays.copyOf(pending[end], pending[end].length * 2);
+                    }
+                    pending[end][pendingSize[end]++] = chart.item[e] + 1;
+                    pending[end][pendingSize[end]++] = chart.origin[e];
+                    furthest = Math.max(furthest, end);
+                }
+            }
+            if (furthest <= i) {
+                return false;
+            }
+        }
+        int accepted = productionItem[productionsOf[augmentedStart][0]] + 1;
+        for (int e = chart.setStart[n]; e < chart.size; e++) {
+            if (chart.item[e] == accepted && chart.origin[e] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Follows the deterministic reduction path from (set, symbol) upwards without recursion and memoizes the
+    // topmost completed item for every slot on the way. Returns the slot of (set, symbol). The augmented
+    // S' -> ·S item never belongs to a path, so a path ends at the start symbol at the latest and parse() always
+    // finds the S node spanning the whole input.
+    private int leo(Chart chart, int[] leoItem, int[] leoOrigin, int set, int symbol) {
+        int first = set * nonTerminalCount + symbol;
+        if (leoItem[first] != LEO_UNKNOWN) {
+            return first;
+        }
+        int[] path = new int[8];
+        int length = 0;
+        int baseItem = NO_LEO;
+        int baseOrigin = 0;
+        int slot = first;
+        while (true) {
+            if (leoItem[slot] >= 0 || leoItem[slot] == NO_LEO) {
+                baseItem = leoItem[slot];
+                baseOrigin = leoOrigin[slot];
+                break;
+            }
+            if (leoItem[slot] == LEO_IN_PROGRESS) {
+                break;
+            }
+            // A single waiting item whose dot is before its last symbol
+            int z = chart.waitingHead[slot];
+            if (z < 0 || chart.nextWaiting[z] >= 0 || itemNext[chart.item[z] + 1] != COMPLETE
+                    || productionLeft[itemProductions[chart.item[z]]] == augmentedStart) {
+                leoItem[slot] = NO_LEO;
+                break;
+            }
+            leoItem[slot] = LEO_IN_PROGRESS;
+            if (length == path.length) {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = slot;
+            slot = chart.origin[z] * nonTerminalCount + productionLeft[itemProductions[chart.item[z]]];
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            int z = chart.waitingHead[path[i]];
+            if (baseItem == NO_LEO) {
+                baseItem = chart.item[z] + 1;
+                baseOrigin = chart.origin[z];
+            }
+            leoItem[path[i]] = baseItem;
+            leoOrigin[path[i]] = baseOrigin;
+        }
+        return first;
+    }
+
+    public ParseForest parse(int[] input) throws Exception {
+        int n = input.length;
+        ParseForest forest = new ParseForest(this);
+        Chart chart = new Chart(n);
+        LongIntMap nodes = new LongIntMap();
+        int[] predictedAt = new int[nonTerminalCount];
+        Arrays.fill(predictedAt, -1);
+        int[] leoItem = new int[(n + 1) * nonTerminalCount];
+        int[] leoOrigin = new int[(n + 1) * nonTerminalCount];
+        Arrays.fill(leoItem, LEO_UNKNOWN);
+        // Families skipped by Leo completions as (top node, Leo slot, completed node, end) quadruples
+        int[] deferred = new int[64];
+        int deferredSize = 0;
+        // Q (items to scan over a[i]) and Q' (over a[i + 1]) as (item, origin, node) triples
+        int[] scan = new int[48];
+        int scanSize = 0;
+        int[] nextScan = new int[48];
+        int nextScanSize = 0;
+        // H: non-terminals completed with an empty span at the current position, with their nodes
+        int[] held = new int[16];
+        int heldSize = 0;
+
+        // Seeded like the recognizer: with S' -> ·S waiting on the start symbol, completions of S at origin 0
+        // are never attributed to an item above it
+        chart.add(0, productionItem[productionsOf[augmentedStart][0]], 0, -1);
+
+        for (int i = 0; i <= n; i++) {
+            heldSize = 0;
+            int[] swap = scan;
+            scan = nextScan;
+            scanSize = nextScanSize;
+            nextScan = swap;
+            nextScanSize = 0;
+
+            for (int e = chart.setStart[i]; e < chart.size; e++) {
+                int item = chart.item[e];
+                int origin = chart.origin[e];
+                int node = chart.node[e];
+                int next = itemNext[item];
+                if (next != COMPLETE) {
+                    int symbol = ~next;
+                    if (predictedAt[symbol] != i) {
+                        predictedAt[symbol] = i;
+                        for (int p : productionsOf[symbol]) {
+                            int predicted = productionItem[p];
+                            int first = itemNext[predicted];
+                            if (first == COMPLETE || first < 0) {
+                                chart.add(i, predicted, i, -1);
+                            } else if (i < n && first == input[i] && chart.seen.putIfAbsent(chart.key(predicted, i), 0) < 0) {
+                                scan = push(scan, scanSize, predicted, i, -1);
+                                scanSize += 3;
+                            }
+                        }
+                    }
+                    for (int h = 0; h < heldSize; h += 2) {
+                        if (held[h] == symbol) {
+                            int y = makeNode(forest, nodes, n, item + 1, origin, i, node, held[h + 1]);
+                            if (enqueue(chart, input, i, item + 1, origin, y)) {
+                                scan = push(scan, scanSize, item + 1, origin, y);
+                                scanSize += 3;
+                            }
+                        }
+                    }
+                    continue;
+                }
+
+                int symbol = productionLeft[itemProductions[item]];
+                if (node < 0) {
+                    node = symbolNode(forest, nodes, n, symbol, i, i);
+                    forest.addFamily(node, item, ParseForest.NONE, ParseForest.NONE);
+                    chart.node[e] = node;
+                }
+                if (origin == i) {
+                    if (heldSize + 2 > held.length) {
+                        held = Arrays.copyOf(held, held.length * 2);
+                    }
+                    held[heldSize++] = symbol;
+                    held[heldSize++] = node;
+                } else {
+                    // Right recursion: jump to the top of the deterministic reduction path and build the
+                    // nodes in between only if the finished forest reaches them
+                    int slot = leo(chart, leoItem, leoOrigin, origin, symbol);
+                    if (leoItem[slot] != NO_LEO) {
+                        int top = symbolNode(forest, nodes, n, productionLeft[itemProductions[leoItem[slot]]], leoOrigin[slot], i);
+                        if (deferredSize + 4 > deferred.length) {
+                            deferred = Arrays.copyOf(deferred, deferred.length * 2);
+                        }
+                        deferred[deferredSize++] = top;
+                        deferred[deferredSize++] = slot;
+                        deferred[deferredSize++] = node;
+                        deferred[deferredSize++] = i;
+                        chart.add(i, leoItem[slot], leoOrigin[slot], top);
+                        continue;
+                    }
+                }
+                for (int z = chart.waitingHead[origin * nonTerminalCount + symbol]; z >= 0; z = chart.nextWaiting[z]) {
+                    int y = makeNode(forest, nodes, n, chart.item[z] + 1, chart.origin[z], i, chart.node[z], node);
+                    if (enqueue(chart, input, i, chart.item[z] + 1, chart.origin[z], y)) {
+                        scan = push(scan, scanSize, chart.item[z] + 1, chart.origin[z], y);
+                        scanSize += 3;
+                    }
+                }
+            }
+            if (i == n) {
+                break;
+            }
+
+            // Scan a[i]: everything from here on ends at i + 1
+            chart.seen.clear();
+            chart.setStart[i + 1] = chart.size;
+            int terminal = forest.addNode(input[i], i, i + 1);
+            for (int q = 0; q < scanSize; q += 3) {
+                int item = scan[q] + 1;
+                int y = makeNode(forest, nodes, n, item, scan[q + 1], i + 1, scan[q + 2], terminal);
+                int next = itemNext[item];
+                if (next == COMPLETE || next < 0) {
+                    chart.add(i + 1, item, scan[q + 1], y);
+                } else if (i + 1 < n && next == input[i + 1] && chart.seen.putIfAbsent(chart.key(item, scan[q + 1]), 0) < 0) {
+                    nextScan = push(nextScan, nextScanSize, item, scan[q + 1], y);
+                    nextScanSize += 3;
+                }
+            }
+            if (chart.size == chart.setStart[i + 1] && nextScanSize == 0) {
+                throw new Exception("Unexpected " + terminals[input[i]] + " at position " + i);
+            }
+        }
+
+        int root = nodes.get(nodeKey(~0, 0, n, n));
+        if (root < 0) {
+            throw new Exception("Unexpected end of input at position " + n + ", expected more of " + nonTerminals[0]);
+        }
+        forest.setRoot(root);
+        expandDeferred(forest, nodes, chart, leoItem, leoOrigin, deferred, deferredSize, n);
+        return forest;
+    }
+
+    // Adds the families Leo completions skipped, for the nodes reachable from the root only
+    private void expandDeferred(ParseForest forest, LongIntMap nodes, Chart chart, int[] leoItem, int[] leoOrigin,
+                                int[] deferred, int deferredSize, int n) {
+        if (deferredSize == 0) {
+            return;
+        }
+        int[] firstDeferred = new int[forest.getNodeCount()];
+        Arrays.fill(firstDeferred, -1);
+        int[] nextDeferred = new int[deferredSize / 4];
+        for (int d = 0; d < deferredSize / 4; d++) {
+            nextDeferred[d] = firstDeferred[deferred[4 * d]];
+            firstDeferred[deferred[4 * d]] = d;
+        }
+
+        BitSet visited = new BitSet();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = forest.getRoot();
+        visited.set(forest.getRoot());
+        while (top > 0) {
+            int node = stack[--top];
+            for (int d = node < firstDeferred.length ? firstDeferred[node] : -1; d >= 0; d = nextDeferred[d]) {
+                int slot = deferred[4 * d + 1];
+                int w = deferred[4 * d + 2];
+                int end = deferred[4 * d + 3];
+                while (true) {
+                    int z = chart.waitingHead[slot];
+                    int advanced = chart.item[z] + 1;
+                    int y = makeNode(forest, nodes, n, advanced, chart.origin[z], end, chart.node[z], w);
+                    if (advanced == leoItem[slot] && chart.origin[z] == leoOrigin[slot]) {
+                        break;
+                    }
+                    w = y;
+                    slot = chart.origin[z] * nonTerminalCount + productionLeft[itemProductions[chart.item[z]]];
+                }
+            }
+            for (int family = forest.getFirstFamily(node); family != ParseForest.NONE; family = forest.getNextFamily(family)) {
+                for (int child : new int[]{forest.getLeft(family), forest.getRight(family)}) {
+                    if (child != ParseForest.NONE && !visited.get(child)) {
+                        visited.set(child);
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+    }
+
+    // Adds the advanced item to the current set when a non-terminal or nothing follows the dot; returns true
+    // when it has to go to the scan queue instead
+    private boolean enqueue(Chart chart, int[] input, int i, int item, int origin, int node) {
+        int next = itemNext[item];
+        if (next == COMPLETE || next < 0) {
+            chart.add(i, item, origin, node);
+            return false;
+        }
+        return i < input.length && next == input[i] && chart.seen.putIfAbsent(chart.key(item, origin), 0) < 0;
+    }
+
+    // MAKE_NODE from Scott's paper: item is the advanced item B -> αx·β spanning start..end, w the node of α
+    // (or NONE) and v the node of x
+    private int makeNode(ParseForest forest, LongIntMap nodes, int n, int item, int start, int end, int w, int v) {
+        int production = itemProductions[item];
+        int dot = itemDot[item];
+        int length = productionRight[production].length;
+        if (dot == 1 && dot < length) {
+            return v;
+        }
+        int label = dot == length ? ~productionLeft[production] : terminals.length + item;
+        long key = nodeKey(label, start, end, n);
+        int y = nodes.get(key);
+        if (y < 0) {
+            y = forest.addNode(label, start, end);
+            nodes.putIfAbsent(key, y);
+        }
+        forest.addFamily(y, item, w < 0 ? ParseForest.NONE : w, v);
+        return y;
+    }
+
+    private int symbolNode(ParseForest forest, LongIntMap nodes, int n, int nonTerminal, int start, int end) {
+        long key = nodeKey(~nonTerminal, start, end, n);
+        int node = nodes.get(key);
+        if (node < 0) {
+            node = forest.addNode(~nonTerminal, start, end);
+            nodes.putIfAbsent(key, node);
+        }
+        return node;
+    }
+
+    private long nodeKey(int label, int start, int end, int n) {
+        return ((long) (label + nonTerminalCount) * (n + 1) + start) * (n + 1) + end;
+    }
+
+    private static int[] push(int[] queue, int size, int item, int origin, int node) {
+        if (size + 3 > queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[size] = item;
+        queue[size + 1] = origin;
+        queue[size + 2] = node;
+        return queue;
+    }
+
+    public ParseForest parse(List<String> input) throws Exception {
+        return parse(toIds(input));
+    }
+
+    // Terminals are matched against the cursor's token types
+    public ParseForest parse(TokenCursor cursor) throws Exception {
+        int[] ids = new int[16];
+        int length = 0;
+        while (cursor.advance()) {
+            int id = terminalIds.getOrDefault(cursor.tokenType(), -1);
+            if (id < 0) {
+                throw new Exception("Unexpected token: " + cursor.token().getValue());
+            }
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length * 2);
+            }
+            ids[length++] = id;
+        }
+        return parse(Arrays.copyOf(ids, length));
+    }
+
+    public boolean accepts(List<String> input) {
+        try {
+            return accepts(toIds(input));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Runs the recognizer over character positions, so every split of the word into terminals is tried
+    public boolean accepts(String word) {
+        int[][] starting = new int[word.length()][];
+        int[] matches = new int[terminals.length];
+        for (int i = 0; i < word.length(); i++) {
+            int count = 0;
+            for (int t = 0; t < terminals.length; t++) {
+                if (!terminals[t].isEmpty() && word.startsWith(terminals[t], i)) {
+                    matches[count++] = t;
+                }
+            }
+            starting[i] = Arrays.copyOf(matches, count);
+        }
+        int[] width = new int[terminals.length];
+        for (int t = 0; t < terminals.length; t++) {
+            width[t] = terminals[t].length();
+        }
+        return recognize(word.length(), starting, width);
+    }
+
+    private int[] toIds(List<String> input) throws Exception {
+        int[] ids = new int[input.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = terminalIds.getOrDefault(input.get(i), -1);
+            if (ids[i] < 0) {
+                throw new Exception("Unknown terminal at position " + i + ": " + input.get(i));
+            }
+        }
+        return ids;
+    }
+
+    public int terminalId(String terminal) {
+        return terminalIds.getOrDefault(terminal, -1);
+    }
+
+    boolean isSymbolLabel(int label) {
+        return label < terminals.length;
+    }
+
+    String labelName(int label) {
+        if (label < 0) {
+            return nonTerminals[~label];
+        }
+        if (label < terminals.length) {
+            return terminals[label];
+        }
+        int item = label - terminals.length;
+        int production = itemProductions[item];
+        StringBuilder text = new StringBuilder(nonTerminals[productionLeft[production]]).append(" ->");
+        for (int i = 0; i <= productionRight[production].length; i++) {
+            if (i == itemDot[item]) {
+                text.append(" ·");
+            }
+            if (i < productionRight[production].length) {
+                int symbol = productionRight[production][i];
+                text.append(' ').append(symbol >= 0 ? terminals[symbol] : nonTerminals[~symbol]);
+            }
+        }
+        return text.toString();
+    }
+
+    String itemProduction(int item) {
+        int production = itemProductions[item];
+        StringJoiner symbols = new StringJoiner(" ");
+        for (int symbol : productionRight[production]) {
+            symbols.add(symbol >= 0 ? terminals[symbol] : nonTerminals[~symbol]);
+        }
+        return nonTerminals[productionLeft[production]] + " -> " + (productionRight[production].length == 0 ? "ε" : symbols);
+    }
+
+    // Open addressing map from long keys to ints with O(1) clearing through a generation stamp
+    private static final class LongIntMap {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int[] stamps = new int[64];
+        private int generation = 1;
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; stamps[slot] == generation; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        // Returns the existing value, or -1 after storing the new one
+        int putIfAbsent(long key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; stamps[slot] == generation; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            stamps[slot] = generation;
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            return -1;
+        }
+
+        void clear() {
+            generation++;
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            int[] oldStamps = stamps;
+            int oldGeneration = generation;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            stamps = new int[oldKeys.length * 2];
+            generation = 1;
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldStamps[slot] == oldGeneration) {
+                    putIfAbsent(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package parser;
+
+import grammar.CompiledGrammar;
+import grammar.Grammar;
+import lexer.TokenCursor;
+
+import java.util.*;
+
+// Table-driven LL(1) parser generated from a Grammar. Terminals get ids 0..n-1 with n as the end marker,
+// non-terminals get ids 0..m-1 with the start symbol first. The table maps (non-terminal, terminal) to a
+// production id and parsing runs on an explicit int stack, so nesting depth is only limited by memory.
+public class LL1Parser {
+    public static final int NO_PRODUCTION = -1;
+
+    private final String[] terminals;
+    private final String[] nonTerminals;
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private final Map<String, Integer> nonTerminalIds = new HashMap<>();
+    private final int endMarker;
+
+    // Productions with their right-hand sides encoded as terminal ids (>= 0) and ~non-terminal ids (< 0)
+    private final int[] productionLeft;
+    private final int[][] productionRight;
+
+    private final boolean[] nullable;
+    private final BitSet[] first;
+    private final BitSet[] follow;
+    private final int[] table;
+    private final List<String> conflicts = new ArrayList<>();
+
+    public LL1Parser(Grammar grammar) throws Exception {
+        CompiledGrammar compiled = grammar.compile();
+        if (compiled.getStartSymbol() < 0) {
+            throw new IllegalArgumentException("Start symbol " + compiled.getStartSymbolName() + " is not a non-terminal");
+        }
+        int declared = compiled.getNonTerminalCount();
+        this.terminals = new String[compiled.getTerminalCount()];
+        for (int t = 0; t < terminals.length; t++) {
+            terminals[t] = compiled.getSymbol(declared + t);
+            terminalIds.put(terminals[t], t);
+        }
+
+        // The start symbol moves to id 0, the others keep the order of the compiled grammar
+        int[] order = new int[declared];
+        int[] renamed = new int[declared];
+        order[0] = compiled.getStartSymbol();
+        for (int a = 0, next = 1; a < declared; a++) {
+            if (a != compiled.getStartSymbol()) {
+                order[next++] = a;
+            }
+        }
+        this.nonTerminals = new String[declared];
+        for (int n = 0; n < declared; n++) {
+            renamed[order[n]] = n;
+            nonTerminals[n] = compiled.getSymbol(order[n]);
+            nonTerminalIds.put(nonTerminals[n], n);
+        }
+        this.endMarker = terminals.length;
+
+        List<Integer> lefts = new ArrayList<>();
+        List<int[]> rights = new ArrayList<>();
+        for (int n = 0; n < nonTerminals.length; n++) {
+            for (int p = compiled.getFirstProduction(order[n]); p < compiled.getFirstProduction(order[n] + 1); p++) {
+                int[] encoded = compiled.getBody(p);
+                for (int i = 0; i < encoded.length; i++) {
+                    encoded[i] = compiled.isTerminal(encoded[i]) ? encoded[i] - declared : ~renamed[encoded[i]];
+                }
+                lefts.add(n);
+                rights.add(encoded);
+            }
+        }
+        this.productionLeft = lefts.stream().mapToInt(Integer::intValue).toArray();
+        this.productionRight = rights.toArray(new int[0][]);
+
+        this.nullable = new boolean[nonTerminals.length];
+        this.first = new BitSet[nonTerminals.length];
+        this.follow = new BitSet[nonTerminals.length];
+        for (int n = 0; n < nonTerminals.length; n++) {
+            first[n] = new BitSet(endMarker + 1);
+            follow[n] = new BitSet(endMarker + 1);
+        }
+        computeFirst();
+        computeFollow();
+
+        this.table = new int[nonTerminals.length * (endMarker + 1)];
+        Arrays.fill(table, NO_PRODUCTION);
+        BitSet lookahead = new BitSet(endMarker + 1);
+        for (int p = 0; p < productionLeft.length; p++) {
+            lookahead.clear();
+            if (firstOf(productionRight[p], 0, lookahead)) {
+                lookahead.or(follow[productionLeft[p]]);
+            }
+            for (int t = lookahead.nextSetBit(0); t >= 0; t = lookahead.nextSetBit(t + 1)) {
+                int cell = productionLeft[p] * (endMarker + 1) + t;
+                if (table[cell] != NO_PRODUCTION && table[cell] != p) {
+                    conflicts.add(nonTerminals[productionLeft[p]] + " on " + terminalName(t) + ": "
+                            + getProduction(table[cell]) + " | " + getProduction(p));
+                } else {
+                    table[cell] = p;
+                }
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new Exception("Grammar is not LL(1): " + String.join("; ", conflicts));
+        }
+    }
+
+    private void computeFirst() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionLeft.length; p++) {
+                int left = productionLeft[p];
+                int before = first[left].cardinality();
+                boolean allNullable = firstOf(productionRight[p], 0, first[left]);
+                if (allNullable && !nullable[left]) {
+                    nullable[left] = true;
+                    changed = true;
+                }
+                changed |= first[left].cardinality() != before;
+            }
+        }
+    }
+
+    private void computeFollow() {
+        follow[0].set(endMarker);
+        BitSet rest = new BitSet(endMarker + 1);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productionLeft.length; p++) {
+                int[] right = productionRight[p];
+                for (int i = 0; i < right.length; i++) {
+                    if (right[i] >= 0) {
+                        continue;
+                    }
+                    int n = ~right[i];
+                    int before = follow[n].cardinality();
+                    rest.clear();
+                    if (firstOf(right, i + 1, rest)) {
+                        rest.or(follow[productionLeft[p]]);
+                    }
+                    follow[n].or(rest);
+                    changed |= follow[n].cardinality() != before;
+                }
+            }
+        }
+    }
+
+    // Adds FIRST of symbols[from..] into target and returns whether that whole suffix is nullable
+    private boolean firstOf(int[] symbols, int from, BitSet target) {
+        for (int i = from; i < symbols.length; i++) {
+            if (symbols[i] >= 0) {
+                target.set(symbols[i]);
+                return false;
+            }
+            target.or(first[~symbols[i]]);
+            if (!nullable[~symbols[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Runs the parser over terminal ids and returns the production ids of the leftmost derivation
+    public int[] parse(int[] input) throws Exception {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = endMarker;
+        stack[top++] = ~0;
+        int[] derivation = new int[16];
+        int derivationLength = 0;
+        int pos = 0;
+
+        while (top > 0) {
+            int symbol = stack[--top];
+            int lookahead = pos < input.length ? input[pos] : endMarker;
+            if (symbol >= 0) {
+                if (symbol != lookahead) {
+                    throw new Exception("Expected " + terminalName(symbol) + " at position " + pos
+                            + ", but found: " + terminalName(lookahead));
+                }
+                pos++;
+                continue;
+            }
+
+            int production = table[~symbol * (endMarker + 1) + lookahead];
+            if (production == NO_PRODUCTION) {
+                throw new Exception("Unexpected " + terminalName(lookahead) + " at position " + pos
+                        + " while parsing " + nonTerminals[~symbol] + ", expected one of " + expected(~symbol));
+            }
+            if (derivationLength == derivation.length) {
+                derivation = Arrays.copyOf(derivation, derivationLength * 2);
+            }
+            derivation[derivationLength++] = production;
+
+            int[] right = productionRight[production];
+            if (top + right.length > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + right.length));
+            }
+            for (int i = right.length - 1; i >= 0; i--) {
+                stack[top++] = right[i];
+            }
+        }
+        return Arrays.copyOf(derivation, derivationLength);
+    }
+
+    public int[] parse(List<String> input) throws Exception {
+        int[] ids = new int[input.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = terminalId(input.get(i));
+            if (ids[i] < 0) {
+                throw new Exception("Unknown terminal at position " + i + ": " + input.get(i));
+            }
+        }
+        return parse(ids);
+    }
+
+    // Terminals are matched against the cursor's token types, e.g. a grammar over "IDENTIFIER", "ASSIGNMENT", ...
+    public int[] parse(TokenCursor cursor) throws Exception {
+        int[] ids = new int[16];
+        int length = 0;
+        while (cursor.advance()) {
+            int id = terminalId(cursor.tokenType());
+            if (id < 0) {
+                throw new Exception("Unexpected token: " + cursor.token().getValue());
+            }
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length * 2);
+            }
+            ids[length++] = id;
+        }
+        return parse(Arrays.copyOf(ids, length));
+    }
+
+    // Splits the word into terminals by longest match and checks whether the grammar derives it. Only that one
+    // split is tried: with terminals a, ab and bc the word "abc" is read as ab c and rejected even when a bc is
+    // derivable. An LL(1) parse needs a fixed token sequence; EarleyParser.accepts and Grammar.accepts try them all.
+    public boolean accepts(String word) {
+        int[] ids = new int[word.length()];
+        int length = 0;
+        int pos = 0;
+        while (pos < word.length()) {
+            int longest = -1;
+            for (int t = 0; t < terminals.length; t++) {
+                if (!terminals[t].isEmpty() && word.startsWith(terminals[t], pos)
+                        && (longest < 0 || terminals[t].length() > terminals[longest].length())) {
+                    longest = t;
+                }
+            }
+            if (longest < 0) {
+                return false;
+            }
+            ids[length++] = longest;
+            pos += terminals[longest].length();
+        }
+        try {
+            parse(Arrays.copyOf(ids, length));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private String expected(int nonTerminal) {
+        List<String> names = new ArrayList<>();
+        for (int t = 0; t <= endMarker; t++) {
+            if (table[nonTerminal * (endMarker + 1) + t] != NO_PRODUCTION) {
+                names.add(terminalName(t));
+            }
+        }
+        return names.toString();
+    }
+
+    private String terminalName(int terminal) {
+        return terminal == endMarker ? "end of input" : terminals[terminal];
+    }
+
+    public int terminalId(String terminal) {
+        return terminalIds.getOrDefault(terminal, -1);
+    }
+
+    public int nonTerminalId(String nonTerminal) {
+        return nonTerminalIds.getOrDefault(nonTerminal, -1);
+    }
+
+    public int getEndMarker() {
+        return endMarker;
+    }
+
+    public int getProductionCount() {
+        return productionLeft.length;
+    }
+
+    public String getProduction(int production) {
+        StringBuilder text = new StringBuilder(nonTerminals[productionLeft[production]]).append(" -> ");
+        if (productionRight[production].length == 0) {
+            return text.append("ε").toString();
+        }
+        StringJoiner symbols = new StringJoiner(" ");
+        for (int symbol : productionRight[production]) {
+            symbols.add(symbol >= 0 ? terminals[symbol] : nonTerminals[~symbol]);
+        }
+        return text.append(symbols).toString();
+    }
+
+    // Production used for the non-terminal on the terminal (or getEndMarker()), or NO_PRODUCTION
+    public int getEntry(int nonTerminal, int terminal) {
+        return table[nonTerminal * (endMarker + 1) + terminal];
+    }
+
+    public Set<String> getFirst(String nonTerminal) {
+        return names(first[nonTerminalIds.get(nonTerminal)]);
+    }
+
+    public Set<String> getFollow(String nonTerminal) {
+        return names(follow[nonTerminalIds.get(nonTerminal)]);
+    }
+
+    public boolean isNullable(String nonTerminal) {
+        return nullable[nonTerminalIds.get(nonTerminal)];
+    }
+
+    private Set<String> names(BitSet set) {
+        Set<String> names = new TreeSet<>();
+        for (int t = set.nextSetBit(0); t >= 0; t = set.nextSetBit(t + 1)) {
+            names.add(t == endMarker ? "$" : terminals[t]);
+        }
+        return names;
+    }
+}
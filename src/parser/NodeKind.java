@@ -0,0 +1,32 @@
+package parser;
+
+// Node types of the Ast. Named kinds carry an identifier or literal text, BINARY and UNARY carry the operator
+public enum NodeKind {
+    PROGRAM(false),
+    BLOCK(false),
+    ASSIGNMENT(true),
+    DECLARATION(true),
+    CALL(true),
+    PRINT(false),
+    WHILE(false),
+    IF(false),
+    BINARY(false),
+    UNARY(false),
+    IDENTIFIER(true),
+    INTEGER(true),
+    FLOAT(true);
+
+    private final boolean named;
+
+    NodeKind(boolean named) {
+        this.named = named;
+    }
+
+    public boolean isNamed() {
+        return named;
+    }
+
+    public boolean isOperator() {
+        return this == BINARY || this == UNARY;
+    }
+}
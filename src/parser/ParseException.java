@@ -0,0 +1,20 @@
+package parser;
+
+import java.util.List;
+
+// Thrown by Parser.parse after a full pass over an input with errors; the message lists every diagnostic, one
+// per line
+public class ParseException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Diagnostic> diagnostics;
+
+    public ParseException(List<Diagnostic> diagnostics) {
+        super(String.join("\n", diagnostics.stream().map(Diagnostic::toString).toArray(String[]::new)));
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+}
@@ -0,0 +1,286 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Shared packed parse forest built by EarleyParser. Nodes are symbol nodes (terminal or non-terminal, start, end)
+// or intermediate nodes (a dotted item, start, end); every alternative way to derive a node is one family with at
+// most two children, the left one an intermediate or symbol node and the right one a symbol node. All data lives
+// in parallel int arrays, node and family ids are indexes into them.
+public final class ParseForest {
+    public static final int NONE = -1;
+
+    private final EarleyParser parser;
+    private int root = NONE;
+
+    private int[] nodeLabel = new int[64];
+    private int[] nodeStart = new int[64];
+    private int[] nodeEnd = new int[64];
+    private int[] firstFamily = new int[64];
+    private int nodeCount;
+
+    private int[] familyItem = new int[64];
+    private int[] familyLeft = new int[64];
+    private int[] familyRight = new int[64];
+    private int[] nextFamily = new int[64];
+    private int familyCount;
+
+    ParseForest(EarleyParser parser) {
+        this.parser = parser;
+    }
+
+    int addNode(int label, int start, int end) {
+        if (nodeCount == nodeLabel.length) {
+            int capacity = nodeCount * 2;
+            nodeLabel = Arrays.copyOf(nodeLabel, capacity);
+            nodeStart = Arrays.copyOf(nodeStart, capacity);
+            nodeEnd = Arrays.copyOf(nodeEnd, capacity);
+            firstFamily = Arrays.copyOf(firstFamily, capacity);
+        }
+        nodeLabel[nodeCount] = label;
+        nodeStart[nodeCount] = start;
+        nodeEnd[nodeCount] = end;
+        firstFamily[nodeCount] = NONE;
+        return nodeCount++;
+    }
+
+    // Adds the family unless the node already has one with the same item and children
+    void addFamily(int node, int item, int left, int right) {
+        for (int family = firstFamily[node]; family != NONE; family = nextFamily[family]) {
+            if (familyItem[family] == item && familyLeft[family] == left && familyRight[family] == right) {
+                return;
+            }
+        }
+        if (familyCount == familyItem.length) {
+            int capacity = familyCount * 2;
+            familyItem = Arrays.copyOf(familyItem, capacity);
+            familyLeft = Arrays.copyOf(familyLeft, capacity);
+            familyRight = Arrays.copyOf(familyRight, capacity);
+            nextFamily = Arrays.copyOf(nextFamily, capacity);
+        }
+        familyItem[familyCount] = item;
+        familyLeft[familyCount] = left;
+        familyRight[familyCount] = right;
+        nextFamily[familyCount] = firstFamily[node];
+        firstFamily[node] = familyCount++;
+    }
+
+    void setRoot(int root) {
+        this.root = root;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getFamilyCount() {
+        return familyCount;
+    }
+
+    public String getLabel(int node) {
+        return parser.labelName(nodeLabel[node]);
+    }
+
+    public boolean isSymbolNode(int node) {
+        return parser.isSymbolLabel(nodeLabel[node]);
+    }
+
+    public int getStart(int node) {
+        return nodeStart[node];
+    }
+
+    public int getEnd(int node) {
+        return nodeEnd[node];
+    }
+
+    public int getFirstFamily(int node) {
+        return firstFamily[node];
+    }
+
+    public int getNextFamily(int family) {
+        return nextFamily[family];
+    }
+
+    // Production the family belongs to, as "A -> B c" text
+    public String getProduction(int family) {
+        return parser.itemProduction(familyItem[family]);
+    }
+
+    public int getLeft(int family) {
+        return familyLeft[family];
+    }
+
+    public int getRight(int family) {
+        return familyRight[family];
+    }
+
+    // Whether any node reachable from the root has more than one family, i.e. the input has several derivations
+    public boolean isAmbiguous() {
+        if (root == NONE) {
+            return false;
+        }
+        boolean[] visited = new boolean[nodeCount];
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = root;
+        visited[root] = true;
+        while (top > 0) {
+            int node = stack[--top];
+            int family = firstFamily[node];
+            if (family != NONE && nextFamily[family] != NONE) {
+                return true;
+            }
+            for (; family != NONE; family = nextFamily[family]) {
+                for (int child : new int[]{familyLeft[family], familyRight[family]}) {
+                    if (child != NONE && !visited[child]) {
+                        visited[child] = true;
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // One derivation tree in bracket form, e.g. "S(a A(b))". Every node takes its first family whose children all
+    // have a lower height, so cyclic grammars like S -> S | a still give a finite tree; in a forest without
+    // cycles that is the first family of every node.
+    public String firstTree() {
+        if (root == NONE) {
+            return "";
+        }
+        int[] height = heights();
+        final int close = -2;
+        final int space = -3;
+        StringBuilder tree = new StringBuilder();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = root;
+        List<Integer> children = new ArrayList<>();
+        while (top > 0) {
+            int node = stack[--top];
+            if (node == close) {
+                tree.append(')');
+                continue;
+            }
+            if (node == space) {
+                tree.append(' ');
+                continue;
+            }
+            tree.append(getLabel(node));
+            int family = lowerFamily(node, height);
+            if (family == NONE) {
+                continue;
+            }
+
+            // Children of the chosen family, unfolding intermediate nodes on the left
+            children.clear();
+            while (family != NONE) {
+                if (familyRight[family] != NONE) {
+                    children.add(familyRight[family]);
+                }
+                int left = familyLeft[family];
+                if (left == NONE) {
+                    break;
+                }
+                if (isSymbolNode(left)) {
+                    children.add(left);
+                    break;
+                }
+                family = lowerFamily(left, height);
+            }
+            Collections.reverse(children);
+
+            tree.append('(');
+            if (top + 2 * children.size() + 1 > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 2 * children.size() + 1));
+            }
+            stack[top++] = close;
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack[top++] = children.get(i);
+                if (i > 0) {
+                    stack[top++] = space;
+                }
+            }
+        }
+        return tree.toString();
+    }
+
+    // First family whose children are all lower than the node, NONE for leaves
+    private int lowerFamily(int node, int[] height) {
+        for (int family = firstFamily[node]; family != NONE; family = nextFamily[family]) {
+            if ((familyLeft[family] == NONE || height[familyLeft[family]] < height[node])
+                    && (familyRight[family] == NONE || height[familyRight[family]] < height[node])) {
+                return family;
+            }
+        }
+        return NONE;
+    }
+
+    // Height of the lowest finite derivation of every node, by Knuth's generalization of Dijkstra: a family is
+    // ready once all of its children have a height, and nodes are settled in increasing height, so the child
+    // settled last is the highest one
+    private int[] heights() {
+        int[] height = new int[nodeCount];
+        Arrays.fill(height, Integer.MAX_VALUE);
+        int[] familyNode = new int[familyCount];
+        int[] pending = new int[familyCount];
+        // Families by child, once per occurrence
+        int[] firstUse = new int[nodeCount + 1];
+        for (int family = 0; family < familyCount; family++) {
+            for (int child : new int[]{familyLeft[family], familyRight[family]}) {
+                if (child != NONE) {
+                    firstUse[child + 1]++;
+                    pending[family]++;
+                }
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            firstUse[node + 1] += firstUse[node];
+        }
+        int[] uses = new int[firstUse[nodeCount]];
+        int[] fill = Arrays.copyOf(firstUse, nodeCount);
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry[0]));
+        for (int node = 0; node < nodeCount; node++) {
+            if (firstFamily[node] == NONE) {
+                queue.add(new long[]{0, node});
+            }
+            for (int family = firstFamily[node]; family != NONE; family = nextFamily[family]) {
+                familyNode[family] = node;
+                if (pending[family] == 0) {
+                    queue.add(new long[]{1, node});
+                }
+                for (int child : new int[]{familyLeft[family], familyRight[family]}) {
+                    if (child != NONE) {
+                        uses[fill[child]++] = family;
+                    }
+                }
+            }
+        }
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (height[node] != Integer.MAX_VALUE) {
+                continue;
+            }
+            height[node] = (int) entry[0];
+            for (int u = firstUse[node]; u < firstUse[node + 1]; u++) {
+                if (--pending[uses[u]] == 0) {
+                    queue.add(new long[]{entry[0] + 1, familyNode[uses[u]]});
+                }
+            }
+        }
+        return height;
+    }
+}
@@ -1,234 +1,487 @@
 package parser;
 
+import lexer.LexerTable;
 import lexer.Token;
-import lexer.TokenList;
+import lexer.TokenCursor;
+import lexer.TokenKind;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class Parser {
+    // Binding strength of every binary operator by TokenKind ordinal, 0 for tokens that are not one; all of
+    // them are left-associative and the prefix operators bind tighter than any of them
+    private static final int[] PRECEDENCE = new int[TokenKind.values().length];
+
+    static {
+        PRECEDENCE[TokenKind.LOGICAL_OR.ordinal()] = 1;
+        PRECEDENCE[TokenKind.LOGICAL_AND.ordinal()] = 2;
+        PRECEDENCE[TokenKind.EQUALS.ordinal()] = 3;
+        PRECEDENCE[TokenKind.NOT_EQUALS.ordinal()] = 3;
+        PRECEDENCE[TokenKind.LESS_THAN.ordinal()] = 4;
+        PRECEDENCE[TokenKind.LESS_THAN_EQUALS.ordinal()] = 4;
+        PRECEDENCE[TokenKind.GREATER_THAN.ordinal()] = 4;
+        PRECEDENCE[TokenKind.GREATER_THAN_EQUALS.ordinal()] = 4;
+        PRECEDENCE[TokenKind.PLUS.ordinal()] = 5;
+        PRECEDENCE[TokenKind.MINUS.ordinal()] = 5;
+        PRECEDENCE[TokenKind.MULTIPLY.ordinal()] = 6;
+        PRECEDENCE[TokenKind.DIVIDE.ordinal()] = 6;
+        PRECEDENCE[TokenKind.MODULO.ordinal()] = 6;
+    }
+
+    // Entries of the operator stack in parseExpression
+    private static final int BINARY = 0;
+    private static final int PREFIX = 1;
+    private static final int PAREN = 2;
+
     private final List<Token> tokens;
+    private final TokenCursor cursor;
+    // Source of the tokens for line and column numbers, null if the caller only has the tokens
+    private final CharSequence text;
     private int pos;
-    private final StringBuilder ast = new StringBuilder();
+    private final Ast ast = new Ast();
+    // End offset of the last consumed token, the end of every node's span
+    private int lastEnd = -1;
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // Lines are counted lazily, only up to the latest diagnostic
+    private int countedOffset;
+    private int countedLine = 1;
+    private int countedLineStart;
+
+    // Error in the current statement with the span of the offending token; recovery makes it common, so it
+    // skips the stack trace
+    private static final class SyntaxError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        SyntaxError(String message, int start, int end) {
+            super(message, null, false, false);
+            this.start = start;
+            this.end = end;
+        }
+    }
 
     public Parser(List<Token> tokens) {
+        this(tokens, null);
+    }
+
+    // text is the source the tokens were lexed from, diagnostics then carry line and column numbers
+    public Parser(List<Token> tokens, CharSequence text) {
         this.tokens = tokens;
+        this.cursor = null;
+        this.text = text;
         this.pos = 0;
     }
 
-    public void parse() throws Exception {
-        while (pos < tokens.size()) {
-            Token token = tokens.get(pos);
-            if (token.getTokenType().equals("IDENTIFIER")) {
-                // Variable declaration
-                parseVariableDeclaration();
-            } else if (token.getTokenType().equals("PRINT")) {
-                // Print statement
-                parsePrintStatement();
-            } else if (token.getTokenType().equals("WHILE")) {
-                // While loop
-                parseWhileLoop();
-            } else if (token.getTokenType().equals("IF")) {
-                // If statement
-                parseIfStatement();
-            } else if (token.getTokenType().equals("ELSE")) {
-                // ELse statement
-                parseElseStatement();
-            } else if (token.getTokenType().equals("RBRACE")) {
-                // Right bracket
-                break;
-            } else {
-                throw new Exception("Unexpected token: " + token.getValue());
-            }
+    // Reads tokens straight from the cursor; Token objects are only created for values the parser keeps
+    public Parser(TokenCursor cursor) throws Exception {
+        this.tokens = null;
+        this.cursor = cursor;
+        this.text = cursor.text();
+        this.pos = 0;
+        cursor.advance();
+    }
+
+    // Lexes the text itself; characters no token matches are reported as diagnostics like syntax errors
+    public Parser(String text) throws Exception {
+        this(new TokenCursor(text, LexerTable.getDefault(), true));
+    }
+
+    // Parses the whole input into a PROGRAM node holding one node per statement. An error does not stop the
+    // pass: it becomes a diagnostic and parsing resumes at the next statement. If there were any, a
+    // ParseException with all of them is thrown at the end and getAst holds the statements that did parse.
+    public Ast parse() throws Exception {
+        skipErrors();
+        int start = peekStart();
+        int mark = ast.mark();
+        parseStatements();
+        while (!isNext(TokenKind.EOF)) {
+            // A closing brace outside of any block
+            report(error("Unexpected token: " + currentToken().getValue()));
+            advance();
+            parseStatements();
+        }
+        ast.setRoot(ast.addNode(NodeKind.PROGRAM, Ast.NONE, start, lastEnd, mark));
+        if (!diagnostics.isEmpty()) {
+            throw new ParseException(diagnostics);
         }
+        return ast;
+    }
+
+    public Ast getAst() {
+        return ast;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
     }
 
     public void printAST(){
         System.out.println("Abstract Syntax Tree:");
-        System.out.println(ast);
-    }
-
-    private void parseVariableDeclaration() throws Exception {
-        Token identifier = consumeToken("IDENTIFIER");
-        ast.append("\n\t\tAssignment Statement {");
-        ast.append("\n\t\t\t\tIdentifier: "+identifier.getValue());
-        Token nextToken = tokens.get(pos);
-        if (nextToken.getTokenType().equals("ASSIGNMENT")) {
-            consumeToken("ASSIGNMENT");
-            //ast.append("\n\t\t\t\tValue: 0");
-            Token value = parseExpression();
-            consumeToken("SEMICOLON");
-            System.out.println("Variable assignment: " + identifier.getValue() + " = " + value.getValue());
-        } else if (nextToken.getTokenType().equals("LPAREN")) {
-            // Function call
-            consumeToken("LPAREN");
-            parseExpression(); // Parse the argument expression
-            consumeToken("RPAREN");
-            consumeToken("SEMICOLON");
-            System.out.println("Function call: " + identifier.getValue() + "()");
-        } else if (nextToken.getTokenType().equals("SEMICOLON")) {
-            consumeToken("SEMICOLON");
-            System.out.println("Variable declaration: " + identifier.getValue());
+        System.out.print(AstPrinter.print(ast));
+    }
+
+    // Pushes statements until the end of the input or of the enclosing block; a statement with an error is
+    // dropped along with its partial nodes
+    private void parseStatements() throws Exception {
+        while (!isNext(TokenKind.EOF) && !isNext(TokenKind.RBRACE)) {
+            int mark = ast.mark();
+            try {
+                ast.push(parseStatement());
+            } catch (SyntaxError e) {
+                report(e);
+                ast.truncate(mark);
+                synchronize();
+            }
+        }
+    }
+
+    // Panic mode: skips to the end of the broken statement, which is after its semicolon at brace depth 0, after
+    // the brace closing a block it opened, or before the brace closing the enclosing block
+    private void synchronize() throws Exception {
+        int depth = 0;
+        while (!isNext(TokenKind.EOF)) {
+            TokenKind kind = peekKind();
+            if (kind == TokenKind.RBRACE) {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+                advance();
+                if (depth == 0) {
+                    return;
+                }
+            } else {
+                advance();
+                if (kind == TokenKind.LBRACE) {
+                    depth++;
+                } else if (kind == TokenKind.SEMICOLON && depth == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int parseStatement() throws Exception {
+        TokenKind kind = peekKind();
+        if (kind == null) {
+            throw error("Unexpected token: " + currentToken().getValue());
+        }
+        switch (kind) {
+            case IDENTIFIER:
+                // Assignment, function call or declaration
+                return parseVariableDeclaration();
+            case PRINT:
+                return parsePrintStatement();
+            case WHILE:
+                return parseWhileLoop();
+            case IF:
+                return parseIfStatement();
+            default:
+                throw error("Unexpected token: " + currentToken().getValue());
+        }
+    }
+
+    private int parseVariableDeclaration() throws Exception {
+        int start = peekStart();
+        Token identifier = consumeToken(TokenKind.IDENTIFIER);
+        int name = ast.intern(identifier.getValue());
+        int mark = ast.mark();
+        NodeKind kind;
+        if (isNext(TokenKind.ASSIGNMENT)) {
+            expect(TokenKind.ASSIGNMENT);
+            ast.push(parseExpression());
+            kind = NodeKind.ASSIGNMENT;
+        } else if (isNext(TokenKind.LPAREN)) {
+            // Function call with one argument
+            expect(TokenKind.LPAREN);
+            ast.push(parseExpression());
+            expect(TokenKind.RPAREN);
+            kind = NodeKind.CALL;
+        } else if (isNext(TokenKind.SEMICOLON)) {
+            kind = NodeKind.DECLARATION;
+        } else {
+            throw error("Unexpected token: " + currentToken().getValue());
+        }
+        expect(TokenKind.SEMICOLON);
+        return ast.addNode(kind, name, start, lastEnd, mark);
+    }
+
+    private int parsePrintStatement() throws Exception {
+        int start = peekStart();
+        expect(TokenKind.PRINT);
+        expect(TokenKind.LPAREN);
+        int mark = ast.mark();
+        ast.push(parseExpression());
+        expect(TokenKind.RPAREN);
+        expect(TokenKind.SEMICOLON);
+        return ast.addNode(NodeKind.PRINT, Ast.NONE, start, lastEnd, mark);
+    }
+
+    private int parseWhileLoop() throws Exception {
+        int start = peekStart();
+        expect(TokenKind.WHILE);
+        expect(TokenKind.LPAREN);
+        int mark = ast.mark();
+        ast.push(parseExpression());
+        expect(TokenKind.RPAREN);
+        ast.push(parseBlock());
+        return ast.addNode(NodeKind.WHILE, Ast.NONE, start, lastEnd, mark);
+    }
+
+    // Condition, then block and an optional else block
+    private int parseIfStatement() throws Exception {
+        int start = peekStart();
+        expect(TokenKind.IF);
+        expect(TokenKind.LPAREN);
+        int mark = ast.mark();
+        ast.push(parseExpression());
+        expect(TokenKind.RPAREN);
+        ast.push(parseBlock());
+        if (isNext(TokenKind.ELSE)) {
+            expect(TokenKind.ELSE);
+            ast.push(parseBlock());
+        }
+        return ast.addNode(NodeKind.IF, Ast.NONE, start, lastEnd, mark);
+    }
+
+    private int parseBlock() throws Exception {
+        int start = peekStart();
+        expect(TokenKind.LBRACE);
+        int mark = ast.mark();
+        parseStatements();
+        expect(TokenKind.RBRACE);
+        return ast.addNode(NodeKind.BLOCK, Ast.NONE, start, lastEnd, mark);
+    }
+
+    // Operator precedence parsing on explicit stacks: operands are the Ast's pending nodes, operators and open
+    // parentheses sit on a local stack, and an operator is reduced as soon as the next one binds no tighter.
+    // Every token is pushed and reduced once, so the time is linear and nesting depth costs no call stack.
+    private int parseExpression() throws Exception {
+        int[] entry = new int[16];
+        int[] operator = new int[16];
+        int[] start = new int[16];
+        int top = 0;
+        int openParens = 0;
+        while (true) {
+            // Prefix operators and open parentheses in front of an operand
+            while (isNext(TokenKind.LOGICAL_NOT) || isNext(TokenKind.MINUS) || isNext(TokenKind.LPAREN)) {
+                if (top == entry.length) {
+                    entry = Arrays.copyOf(entry, top * 2);
+                    operator = Arrays.copyOf(operator, top * 2);
+                    start = Arrays.copyOf(start, top * 2);
+                }
+                entry[top] = isNext(TokenKind.LPAREN) ? PAREN : PREFIX;
+                operator[top] = peekKind().ordinal();
+                start[top++] = peekStart();
+                if (isNext(TokenKind.LPAREN)) {
+                    openParens++;
+                }
+                advance();
+            }
+            ast.push(parseOperand());
+
+            // Closing parentheses reduce everything back to their opening one; unmatched ones end the expression
+            while (openParens > 0 && isNext(TokenKind.RPAREN)) {
+                while (entry[top - 1] != PAREN) {
+                    top--;
+                    reduce(entry[top], operator[top], start[top]);
+                }
+                top--;
+                openParens--;
+                advance();
+                ast.setSpan(ast.peek(), start[top], lastEnd);
+            }
+
+            TokenKind next = peekKind();
+            int precedence = next == null ? 0 : PRECEDENCE[next.ordinal()];
+            if (precedence == 0) {
+                break;
+            }
+            while (top > 0 && entry[top - 1] != PAREN
+                    && (entry[top - 1] == PREFIX || PRECEDENCE[operator[top - 1]] >= precedence)) {
+                top--;
+                reduce(entry[top], operator[top], start[top]);
+            }
+            if (top == entry.length) {
+                entry = Arrays.copyOf(entry, top * 2);
+                operator = Arrays.copyOf(operator, top * 2);
+                start = Arrays.copyOf(start, top * 2);
+            }
+            entry[top] = BINARY;
+            operator[top] = next.ordinal();
+            start[top++] = peekStart();
+            advance();
+        }
+        if (openParens > 0) {
+            expect(TokenKind.RPAREN);
+        }
+        while (top > 0) {
+            top--;
+            reduce(entry[top], operator[top], start[top]);
+        }
+        return ast.pop();
+    }
+
+    // Replaces the topmost pending operands of the operator by its node
+    private void reduce(int entry, int operator, int start) {
+        if (entry == PREFIX) {
+            int operand = ast.peek();
+            ast.push(ast.addNode(NodeKind.UNARY, operator, start, ast.getEnd(operand), ast.mark() - 1));
         } else {
-            throw new Exception("Unexpected token: " + nextToken.getValue());
+            int node = ast.addNode(NodeKind.BINARY, operator, 0, 0, ast.mark() - 2);
+            ast.setSpan(node, ast.getStart(ast.getChild(node, 0)), ast.getEnd(ast.getChild(node, 1)));
+            ast.push(node);
         }
     }
 
-    private void parsePrintStatement() throws Exception {
-        ast.append("\t\tPrint Statement {");
-        ast.append("\n\t\t\tExpression {");
-        consumeToken("PRINT");
-        consumeToken("LPAREN");
-        Token value = consumeToken("IDENTIFIER", "INTEGER", "FLOAT");
-        ast.append("\n\t\t\t"+ value.getTokenType().toLowerCase()+": "+ value.getValue());
-        ast.append(" \n\t\t\t}");
-        ast.append("\n\t\t}");
-        consumeToken("RPAREN");
-        consumeToken("SEMICOLON");
-        System.out.println("Print statement: " + value.getValue());
-    }
-
-    private void parseWhileLoop() throws Exception {
-        consumeToken("WHILE");
-        ast.append("\nWhile Statement {");
-        ast.append("\n\tExpression {");
-        consumeToken("LPAREN");
-        Token condition = parseExpression();
-        consumeToken("RPAREN");
-        consumeToken("LBRACE");
-        System.out.println("While loop: " + condition.getValue());
-        ast.append("\n\tStatement {");
-        ast.append("\n");
-        while (!tokens.get(pos).getTokenType().equals("RBRACE")) {
-            parse();
+    private int parseOperand() throws Exception {
+        int start = peekStart();
+        Token operand = consumeToken(TokenKind.IDENTIFIER, TokenKind.INTEGER, TokenKind.FLOAT);
+        NodeKind kind = operand.getKind() == TokenKind.IDENTIFIER ? NodeKind.IDENTIFIER
+                : operand.getKind() == TokenKind.INTEGER ? NodeKind.INTEGER : NodeKind.FLOAT;
+        return ast.addNode(kind, ast.intern(operand.getValue()), start, lastEnd, ast.mark());
+    }
+
+    // Name of the current token for messages: its kind, EOF at the end of the input
+    private String peekName() {
+        TokenKind kind = peekKind();
+        if (kind != null) {
+            return kind.name();
         }
-        consumeToken("RBRACE");
-        ast.append("\n\t}");
-        ast.append("\n}");
-    }
-
-    private void parseIfStatement() throws Exception {
-        consumeToken("IF");
-        consumeToken("LPAREN");
-        ast.append("\nIf Statement {");
-        ast.append("\n\tExpression {");
-        Token condition = parseExpression();
-        consumeToken("RPAREN");
-        consumeToken("LBRACE");
-        ast.append("\n\tStatement {");
-        ast.append("\n");
-        System.out.println("If statement: " + condition.getValue());
-        while (!tokens.get(pos).getTokenType().equals("RBRACE")) {
-            parse();
+        return cursor != null ? cursor.tokenType() : tokens.get(pos).getTokenType();
+    }
+
+    // Kind of the current token, EOF at the end of the input
+    private TokenKind peekKind() {
+        if (cursor != null) {
+            return cursor.kind();
         }
-        consumeToken("RBRACE");
-        ast.append("\n\t}");
-        ast.append("\n}");
+        return pos < tokens.size() ? tokens.get(pos).getKind() : TokenKind.EOF;
+    }
 
+    private boolean isNext(TokenKind kind) {
+        return peekKind() == kind;
     }
 
-    private void parseElseStatement() throws Exception {
-        consumeToken("ELSE");
-        consumeToken("LBRACE");
-        ast.append("\nElse Statement {");
-        System.out.println("Else statement:");
-        ast.append("\n\tStatement {");
-        ast.append("\n");
-        while (!tokens.get(pos).getTokenType().equals("RBRACE")) {
-            parse();
+    private Token currentToken() {
+        if (cursor != null) {
+            return cursor.token();
         }
-        consumeToken("RBRACE");
-        ast.append("\n\t}");
-        ast.append("\n}");
+        return pos < tokens.size() ? tokens.get(pos) : new Token(null, "");
     }
 
-    private Token parseExpression() throws Exception {
-        Token leftOperand = consumeToken("IDENTIFIER", "INTEGER");
-        System.out.println(leftOperand);
-        if (leftOperand.getTokenType().equals("IDENTIFIER") && !tokens.get(pos).getTokenType().equals("PLUS")) {
-            ast.append("\n\t\t" + leftOperand.getTokenType().toLowerCase() + ": " + leftOperand.getValue());
+    // Source offsets of the current token, -1 at the end of a token list
+    private int peekStart() {
+        if (cursor != null) {
+            return cursor.start();
         }
+        return pos < tokens.size() ? tokens.get(pos).getStart() : -1;
+    }
 
-        if (tokens.get(pos).getTokenType().equals("EQUALS")) {
-            Token operator = consumeToken("EQUALS");
-            Token rightOperand = consumeToken("IDENTIFIER", "INTEGER", "FLOAT");
-            ast.append("\n\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " " + operator.getValue() + " " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("NOT_EQUALS")) {
-            Token operator = consumeToken("NOT_EQUALS");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " " + operator.getValue() + " " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("GREATER_THAN")) {
-            Token operator = consumeToken("GREATER_THAN");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " " + operator.getValue() + " " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("PLUS")) {
-            Token operator = consumeToken("PLUS");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\t\t\t" + leftOperand.getTokenType().toLowerCase() + ": " + leftOperand.getValue());
-            ast.append("\n\t\t\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t\t\t}");
-            ast.append("\n\t\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " + " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("MULTIPLY")) {
-            Token operator = consumeToken("MULTIPLY");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue().toLowerCase());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " * " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("DIVIDE")) {
-            Token operator = consumeToken("DIVIDE");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\toperator: "+ operator.getValue());
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " / " + rightOperand.getValue());
-
-        } else if (tokens.get(pos).getTokenType().equals("ASSIGNMENT")) {
-            Token operator = consumeToken("ASSIGNMENT");
-            Token rightOperand = parseExpression();
-            ast.append("\n\t\t"+ rightOperand.getTokenType().toLowerCase()+": "+ rightOperand.getValue());
-            ast.append("\n\t}");
-            return new Token(operator.getTokenType(), leftOperand.getValue() + " / " + rightOperand.getValue());
+    private int peekEnd() {
+        if (cursor != null) {
+            return cursor.end();
         }
-        return leftOperand;
+        return pos < tokens.size() ? tokens.get(pos).getEnd() : -1;
     }
-    private Token consumeToken(String expectedTokenType) throws Exception {
-        Token token = tokens.get(pos);
-        if (token.getTokenType().equals(expectedTokenType)) {
+
+    private void advance() throws Exception {
+        if (cursor != null) {
+            lastEnd = cursor.end();
+            cursor.advance();
+        } else {
+            lastEnd = pos < tokens.size() ? tokens.get(pos).getEnd() : lastEnd;
             pos++;
+        }
+        skipErrors();
+    }
+
+    // ERROR tokens never reach the grammar: each run of unmatched characters is reported and passed over
+    private void skipErrors() throws Exception {
+        while (isNext(TokenKind.ERROR)) {
+            String value = currentToken().getValue();
+            report("Unexpected character" + (value.length() > 1 ? "s" : "") + ": " + value, peekStart(), peekEnd());
+            if (cursor != null) {
+                cursor.advance();
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    private SyntaxError error(String message) {
+        return new SyntaxError(message, peekStart(), peekEnd());
+    }
+
+    private void report(SyntaxError error) {
+        report(error.getMessage(), error.start, error.end);
+    }
+
+    private void report(String message, int start, int end) {
+        int line = 0;
+        int column = 0;
+        if (text != null && start < 0) {
+            // Past the last token of a list
+            start = text.length();
+            end = text.length();
+        }
+        if (text != null) {
+            if (start < countedOffset) {
+                countedOffset = 0;
+                countedLine = 1;
+                countedLineStart = 0;
+            }
+            for (; countedOffset < start; countedOffset++) {
+                if (text.charAt(countedOffset) == '\n') {
+                    countedLine++;
+                    countedLineStart = countedOffset + 1;
+                }
+            }
+            line = countedLine;
+            column = start - countedLineStart + 1;
+        }
+        diagnostics.add(new Diagnostic(message, start, end, line, column));
+    }
+
+    private Token consumeToken(TokenKind expectedTokenType) throws Exception {
+        if (isNext(expectedTokenType)) {
+            Token token = currentToken();
+            advance();
             return token;
         } else {
-            throw new Exception("Expected token type: " + expectedTokenType + ", but found: " + token.getTokenType());
+            throw error("Expected token type: " + expectedTokenType + ", but found: " + peekName());
         }
     }
 
-    private Token consumeToken(String... expectedTokenTypes) throws Exception {
-        Token token = tokens.get(pos);
-        for (String expectedTokenType : expectedTokenTypes) {
-            if (token.getTokenType().equals(expectedTokenType)) {
-                pos++;
+    private Token consumeToken(TokenKind... expectedTokenTypes) throws Exception {
+        for (TokenKind expectedTokenType : expectedTokenTypes) {
+            if (isNext(expectedTokenType)) {
+                Token token = currentToken();
+                advance();
                 return token;
             }
         }
-        throw new Exception("Expected one of token types: " + String.join(", ", expectedTokenTypes) + ", but found: " + token.getTokenType());
+        throw error("Expected one of token types: " + Arrays.stream(expectedTokenTypes).map(Enum::name).collect(Collectors.joining(", ")) + ", but found: " + peekName());
+    }
+
+    // Like consumeToken, without materializing a Token for the caller
+    private void expect(TokenKind expectedTokenType) throws Exception {
+        if (!isNext(expectedTokenType)) {
+            throw error("Expected token type: " + expectedTokenType + ", but found: " + peekName());
+        }
+        advance();
     }
 
     public void PT() {
+        if (tokens == null) {
+            throw new IllegalStateException("The parse tree display needs a token list");
+        }
         System.out.println("Parse Tree:");
         displayPTHelper(0, 0);
         System.out.println();
@@ -247,9 +500,10 @@ public class Parser {
             System.out.println(indent + "|  Type: " + token.getTokenType());
         }
 
-        if (token.getTokenType().equals("WHILE") || token.getTokenType().equals("IF")) {
+        TokenKind kind = token.getKind();
+        if (kind == TokenKind.WHILE || kind == TokenKind.IF) {
             displayPTHelper(nodeIndex + 1, depth + 1);
-        } else if (token.getTokenType().equals("IDENTIFIER") || token.getTokenType().equals("PRINT")) {
+        } else if (kind == TokenKind.IDENTIFIER || kind == TokenKind.PRINT) {
             displayPTHelper(nodeIndex + 1, depth + 1);
         }
 
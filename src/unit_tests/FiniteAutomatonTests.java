@@ -1,10 +1,28 @@
 package unit_tests;
 
+import automaton.AutomatonFile;
+import automaton.AutomatonIndex;
+import automaton.CompiledAutomaton;
+import automaton.EpsilonClosures;
 import automaton.FiniteAutomaton;
+import automaton.LazyDfa;
+import automaton.MappedAutomaton;
+import automaton.MinimizedAutomaton;
+import automaton.StreamingMatcher;
+import automaton.Transition;
+import automaton.WordCounter;
 import grammar.Grammar;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class FiniteAutomatonTests {
@@ -25,6 +43,94 @@ public class FiniteAutomatonTests {
 
     }
 
+    @Test
+    void compile(){
+        FiniteAutomaton fa = Grammar.baseGrammar().toFiniteAutomaton();
+        CompiledAutomaton compiled = fa.compile();
+
+        Assertions.assertSame(compiled, fa.compile());
+        Assertions.assertEquals(compiled.getAlphabetSize(), 2);
+        Assertions.assertEquals(compiled.getStateName(compiled.getStartState()), "S");
+        for (String word : List.of("aaa", "ba", "bbaa", "aabaa", "ac", "", "abb")) {
+            Assertions.assertEquals(compiled.matches(word), fa.wordIsValid(word));
+        }
+        Assertions.assertEquals(compiled.step(compiled.getStartState(), 'c'), CompiledAutomaton.DEAD_STATE);
+
+        fa.addTransition(new Transition("X", "X", "c"));
+        Assertions.assertTrue(fa.wordIsValid("bbaac"));
+    }
+
+    @Test
+    void validateAll(){
+        CompiledAutomaton compiled = Grammar.baseGrammar().toFiniteAutomaton().compile();
+        List<String> words = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = random.nextInt(8); length > 0; length--) {
+                word.append(random.nextBoolean() ? 'a' : 'b');
+            }
+            words.add(word.toString());
+        }
+
+        BitSet expected = new BitSet();
+        for (int i = 0; i < words.size(); i++) {
+            if (compiled.matches(words.get(i))) {
+                expected.set(i);
+            }
+        }
+        Assertions.assertEquals(compiled.validateAll(words), expected);
+        Assertions.assertEquals(compiled.validateAll(words.stream()), expected);
+    }
+
+    @Test
+    void streamingMatcher() throws Exception {
+        CompiledAutomaton compiled = Grammar.baseGrammar().toFiniteAutomaton().compile();
+        List<Boolean> results = new ArrayList<>();
+        StreamingMatcher matcher = new StreamingMatcher(compiled, '\n', (record, accepted) -> results.add(accepted));
+
+        matcher.feed("aa");
+        matcher.feed("a\nb");
+        matcher.feed("a\nac\nbba");
+        matcher.feed(ByteBuffer.wrap("a\nabb".getBytes(StandardCharsets.ISO_8859_1)));
+        matcher.finish();
+        Assertions.assertEquals(results, List.of(true, true, false, true, false));
+        Assertions.assertEquals(matcher.getAccepted(), 3);
+
+        results.clear();
+        new StreamingMatcher(compiled, '\n', (record, accepted) -> results.add(accepted))
+                .match(Channels.newChannel(new ByteArrayInputStream("ba\nbbaa\n".getBytes(StandardCharsets.ISO_8859_1))));
+        Assertions.assertEquals(results, List.of(true, true));
+
+        Assertions.assertTrue(StreamingMatcher.matches(compiled, new StringReader("aabaa")));
+        Assertions.assertFalse(StreamingMatcher.matches(compiled, new StringReader("")));
+    }
+
+    @Test
+    void mappedAutomaton() throws Exception {
+        CompiledAutomaton compiled = Grammar.baseGrammar().toFiniteAutomaton().convertToDFA().compile();
+        Path file = Files.createTempFile("automaton", ".bin");
+        try {
+            AutomatonFile.write(compiled, file);
+            MappedAutomaton mapped = AutomatonFile.map(file);
+
+            Assertions.assertEquals(mapped.getStateCount(), compiled.getStateCount());
+            for (String word : List.of("aaa", "ba", "bbaa", "aabaa", "ac", "", "abb")) {
+                Assertions.assertEquals(mapped.matches(word), compiled.matches(word));
+            }
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedAutomaton(ByteBuffer.allocate(64)));
+
+        // Corrupt counts are rejected before any offset is computed from them
+        for (int[] counts : new int[][]{{-1, 2}, {2, -1}, {Integer.MAX_VALUE, 2}, {65536, 65536}, {3, 70000}}) {
+            ByteBuffer header = ByteBuffer.allocate(64);
+            header.putInt(AutomatonFile.MAGIC).putInt(AutomatonFile.VERSION).putInt(counts[0]).putInt(counts[1]);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new MappedAutomaton(header));
+        }
+    }
+
     @Test
     void toGrammar(){
         FiniteAutomaton fa = FiniteAutomaton.baseFiniteAutomaton();
@@ -44,6 +150,154 @@ public class FiniteAutomatonTests {
         FiniteAutomaton dfa = fa.convertToDFA();
         Assertions.assertEquals(dfa.getAlphabet(), new HashSet(Set.of("a", "b")));
         Assertions.assertEquals(dfa.getStartState(), "{q0}");
+        Assertions.assertTrue(dfa.isDeterministic());
+        for (String word : List.of("a", "aa", "b", "ab", "aab", "aaab", "ba", "")) {
+            Assertions.assertEquals(dfa.wordIsValid(word), word.matches("a*b|a"));
+        }
+    }
+
+    @Test
+    void toDFAWithEpsilonTransitions(){
+        FiniteAutomaton fa = new FiniteAutomaton(
+                new HashSet<>(Set.of("q0", "q1", "q2")),
+                new HashSet<>(Set.of("a")),
+                new Transition[]{
+                        new Transition("q0", "q1", ""),
+                        new Transition("q1", "q2", "a"),
+                        new Transition("q2", "q0", ""),
+                },
+                "q0",
+                new HashSet<>(Set.of("q1"))
+        );
+        FiniteAutomaton dfa = fa.convertToDFA();
+        Assertions.assertTrue(dfa.wordIsValid(""));
+        Assertions.assertTrue(dfa.wordIsValid("aaa"));
+        Assertions.assertThrows(IllegalStateException.class, () -> fa.convertToDFA(1, 1000));
+    }
+
+    @Test
+    void minimize(){
+        FiniteAutomaton fa = new FiniteAutomaton(
+                new HashSet<>(Set.of("q0", "q1", "q2", "q3", "q4")),
+                new HashSet<>(Set.of("a", "b")),
+                new Transition[]{
+                        new Transition("q0", "q1", "a"),
+                        new Transition("q0", "q2", "b"),
+                        new Transition("q1", "q3", "a"),
+                        new Transition("q2", "q3", "a"),
+                        new Transition("q3", "q3", "b"),
+                        new Transition("q4", "q3", "a"),
+                },
+                "q0",
+                new HashSet<>(Set.of("q3"))
+        );
+        MinimizedAutomaton minimized = fa.minimize();
+        FiniteAutomaton dfa = minimized.getAutomaton();
+
+        Assertions.assertEquals(dfa.getStates().size(), 3);
+        Assertions.assertEquals(minimized.getStateMapping().get("q1"), minimized.getStateMapping().get("q2"));
+        Assertions.assertEquals(minimized.getStateMapping().get("q0"), dfa.getStartState());
+        Assertions.assertNull(minimized.getStateMapping().get("q4"));
+        Assertions.assertEquals(minimized.getOriginalStateMapping().get("q1"), Set.of(minimized.getStateMapping().get("q1")));
+        Assertions.assertEquals(minimized.getOriginalStateMapping().get("q4"), Set.of());
+        for (String word : List.of("aa", "ba", "aabbb", "a", "b", "ab", "")) {
+            Assertions.assertEquals(dfa.wordIsValid(word), fa.wordIsValid(word));
+        }
+
+        FiniteAutomaton nfa = FiniteAutomaton.baseFiniteAutomaton();
+        MinimizedAutomaton minimizedNfa = nfa.minimize();
+        FiniteAutomaton minimalNfa = minimizedNfa.getAutomaton();
+        Assertions.assertTrue(minimalNfa.getStates().size() <= nfa.convertToDFA().getStates().size());
+        // The subsets {q0}, {q1,q2}, {q1} and {q2} stay apart, so q1 and q2 each end up in two minimal states;
+        // getStateMapping is keyed by the subsets
+        Assertions.assertEquals(minimizedNfa.getOriginalStateMapping().get("q0"), Set.of(minimalNfa.getStartState()));
+        Assertions.assertEquals(minimizedNfa.getOriginalStateMapping().get("q1").size(), 2);
+        Assertions.assertEquals(minimizedNfa.getOriginalStateMapping().get("q2").size(), 2);
+        Assertions.assertNull(minimizedNfa.getStateMapping().get("q1"));
+        Assertions.assertEquals(minimizedNfa.getStateMapping().get("{q0}"), minimalNfa.getStartState());
+        Assertions.assertTrue(minimalNfa.wordIsValid("aab"));
+        Assertions.assertFalse(minimalNfa.wordIsValid("aa"));
+    }
+
+    @Test
+    void epsilonClosures(){
+        // q0 -> q1 -> ... -> q{n-1} -> q0 by epsilon, a single cycle collapses into one component
+        int n = 20000;
+        Set<String> states = new HashSet<>();
+        Transition[] transitions = new Transition[n + 1];
+        for (int i = 0; i < n; i++) {
+            states.add("q" + i);
+            transitions[i] = new Transition("q" + i, "q" + ((i + 1) % n), "");
+        }
+        states.add("x");
+        transitions[n] = new Transition("x", "q0", "");
+        FiniteAutomaton fa = new FiniteAutomaton(states, new HashSet<>(Set.of("a")), transitions, "x", new HashSet<>(Set.of("q5")));
+
+        AutomatonIndex index = new AutomatonIndex(fa);
+        EpsilonClosures closures = index.getEpsilonClosures();
+        Assertions.assertEquals(closures.getComponentCount(), 2);
+        Assertions.assertEquals(closures.closureOf(index.getStateId("x")).cardinality(), n + 1);
+        Assertions.assertEquals(closures.closureOf(index.getStateId("q7")).cardinality(), n);
+        Assertions.assertFalse(closures.inClosure(index.getStateId("q7"), index.getStateId("x")));
+        Assertions.assertTrue(fa.convertToDFA().wordIsValid(""));
+    }
+
+    @Test
+    void lazyDfa(){
+        FiniteAutomaton fa = FiniteAutomaton.baseFiniteAutomaton();
+        FiniteAutomaton dfa = fa.convertToDFA();
+        LazyDfa lazy = new LazyDfa(fa);
+        LazyDfa tiny = new LazyDfa(fa, 1);
+
+        for (String word : List.of("a", "aa", "b", "ab", "aab", "aaab", "ba", "", "abc")) {
+            Assertions.assertEquals(lazy.matches(word), dfa.wordIsValid(word));
+            Assertions.assertEquals(tiny.matches(word), dfa.wordIsValid(word));
+        }
+        Assertions.assertTrue(lazy.getHits() > 0);
+        Assertions.assertTrue(lazy.getMisses() > 0);
+        Assertions.assertEquals(lazy.getFlushes(), 0);
+        Assertions.assertTrue(tiny.getFlushes() > 0);
+    }
+
+    @Test
+    void wordCounter(){
+        FiniteAutomaton fa = Grammar.baseGrammar().toFiniteAutomaton();
+        WordCounter counter = new WordCounter(fa);
+        for (int length = 0; length <= 10; length++) {
+            long accepted = 0;
+            for (int bits = 0; bits < 1 << length; bits++) {
+                StringBuilder word = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    word.append((bits >> i & 1) == 0 ? 'a' : 'b');
+                }
+                if (fa.wordIsValid(word.toString())) {
+                    accepted++;
+                }
+            }
+            Assertions.assertEquals(counter.count(length), BigInteger.valueOf(accepted));
+        }
+
+        // The five words of length 6 are drawn about equally often
+        SplittableRandom random = new SplittableRandom(11);
+        Map<String, Integer> drawn = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            drawn.merge(counter.sample(6, random), 1, Integer::sum);
+        }
+        Assertions.assertEquals(drawn.size(), 5);
+        for (int times : drawn.values()) {
+            Assertions.assertTrue(times > 1700 && times < 2300, drawn.toString());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> counter.sample(1, random));
+
+        // Counts past the long range, on a non-deterministic automaton for all words over {a, b}
+        FiniteAutomaton all = new FiniteAutomaton(new HashSet<>(Set.of("p", "q")), new HashSet<>(Set.of("a", "b")),
+                new Transition[]{new Transition("p", "p", "a"), new Transition("p", "p", "b"),
+                        new Transition("p", "q", "a"), new Transition("q", "q", "a"), new Transition("q", "q", "b")},
+                "p", new HashSet<>(Set.of("p", "q")));
+        WordCounter allWords = new WordCounter(all);
+        Assertions.assertEquals(allWords.count(100), BigInteger.TWO.pow(100));
+        Assertions.assertEquals(allWords.count(63), BigInteger.TWO.pow(63));
+        Assertions.assertEquals(allWords.sample(100, random).length(), 100);
     }
 
     @Test
@@ -2,11 +2,15 @@ package unit_tests;
 
 import automaton.FiniteAutomaton;
 import automaton.Transition;
+import grammar.CompiledGrammar;
 import grammar.Grammar;
+import grammar.GrammarNormalizer;
+import grammar.WordGenerator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class GrammarTests {
 
@@ -34,6 +38,29 @@ public class GrammarTests {
 
     }
 
+    @Test
+    void wordGenerator(){
+        Grammar grammar = Grammar.baseGrammar();
+        WordGenerator generator = new WordGenerator(grammar, 7);
+        Assertions.assertEquals(generator.getMinLength(), 2);
+        for (int i = 0; i < 50; i++) {
+            String word = generator.generate(10, 20);
+            Assertions.assertTrue(word.length() >= 10 && word.length() <= 20, word);
+            Assertions.assertTrue(grammar.accepts(word), word);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> generator.generate(0, 1));
+
+        // Parallel streams give the same words for the same seed
+        List<String> words = new WordGenerator(grammar, 7).words(2000, 0, 30).collect(Collectors.toList());
+        Assertions.assertEquals(new WordGenerator(grammar, 7).words(2000, 0, 30).sequential().collect(Collectors.toList()), words);
+
+        // Branching and unit cycles, which made the recursive version overflow the stack
+        Grammar pairs = new Grammar("S", new HashSet<>(Set.of("a")), new HashSet<>(Set.of("S")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("SS", "S", "", "a")));}});
+        String word = new WordGenerator(pairs, 3).generate(500, 600);
+        Assertions.assertTrue(word.length() >= 500 && word.length() <= 600);
+    }
+
     @Test
     void toFiniteAutomaton(){
         Grammar grammar = Grammar.baseGrammar();
@@ -53,10 +80,68 @@ public class GrammarTests {
         }));
     }
 
+    @Test
+    void compile(){
+        Grammar grammar = Grammar.baseGrammar();
+        CompiledGrammar compiled = grammar.compile();
+        Assertions.assertEquals(compiled.getSymbolCount(), 5);
+        Assertions.assertEquals(compiled.getSymbol(compiled.getStartSymbol()), "S");
+        Assertions.assertEquals(compiled.getProductionCount(), 6);
+        int production = compiled.getFirstProduction(compiled.getSymbolId("A")) + 1;
+        Assertions.assertEquals(compiled.getText(production), "aB");
+        Assertions.assertArrayEquals(compiled.getBody(production), new int[]{compiled.getSymbolId("a"), compiled.getSymbolId("B")});
+
+        Grammar copy = compiled.toGrammar();
+        Assertions.assertEquals(copy.getStartSymbol(), grammar.getStartSymbol());
+        Assertions.assertEquals(copy.getTerminals(), grammar.getTerminals());
+        Assertions.assertEquals(copy.getNonTerminals(), grammar.getNonTerminals());
+        Assertions.assertEquals(copy.getProductionRules(), grammar.getProductionRules());
+
+        // Multi-character symbols and an epsilon production
+        Grammar states = new Grammar("q0", new HashSet<>(Set.of("0", "1")), new HashSet<>(Set.of("q0", "q1")),
+                new HashMap<>() {{ put("q0", new ArrayList<>(List.of("0q0", "1q1")));
+                    put("q1", new ArrayList<>(List.of("1q0", "")));}});
+        Assertions.assertFalse(states.isRegularGrammar());
+        Assertions.assertEquals(states.getGrammarType(), "Context-Free (Type 2)");
+        FiniteAutomaton fa = states.toFiniteAutomaton();
+        Assertions.assertEquals(Arrays.toString(fa.getTransitions()), Arrays.toString(new Transition[]{
+                new Transition("q0", "q0", "0"),
+                new Transition("q0", "q1", "1"),
+                new Transition("q1", "q0", "1"),
+        }));
+        Assertions.assertTrue(fa.wordIsValid("0111"));
+        Assertions.assertFalse(fa.wordIsValid("011"));
+    }
+
     @Test
     void getGrammarType(){
         Grammar grammar = Grammar.baseGrammar();
         Assertions.assertEquals(grammar.getGrammarType(), "Regular (Type 3)");
+
+        Grammar brackets = new Grammar("S", new HashSet<>(Set.of("(", ")")), new HashSet<>(Set.of("S")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("(S)S", "")));}});
+        Assertions.assertEquals(brackets.getGrammarType(), "Context-Free (Type 2)");
+
+        // a^n b^n c^n, with T -> ε allowed because T never occurs on a right-hand side
+        Map<String, List<String>> rules = new HashMap<>() {{ put("T", new ArrayList<>(List.of("S", "")));
+            put("S", new ArrayList<>(List.of("aSBC", "aBC")));
+            put("CB", new ArrayList<>(List.of("BC")));
+            put("aB", new ArrayList<>(List.of("ab")));
+            put("bB", new ArrayList<>(List.of("bb")));
+            put("bC", new ArrayList<>(List.of("bc")));
+            put("cC", new ArrayList<>(List.of("cc")));}};
+        Grammar counting = new Grammar("T", new HashSet<>(Set.of("a", "b", "c")), new HashSet<>(Set.of("T", "S", "B", "C")), rules);
+        Assertions.assertFalse(counting.isContextFreeGrammar());
+        Assertions.assertEquals(counting.getGrammarType(), "Context-Sensitive (Type 1)");
+
+        // An erasing rule that is not the start symbol's makes it unrestricted
+        rules.put("S", new ArrayList<>(List.of("aSBC", "aBC", "")));
+        Assertions.assertEquals(new Grammar("T", counting.getTerminals(), counting.getNonTerminals(), rules).getGrammarType(),
+                "Recursively enumerable (Type 0)");
+        rules.put("S", new ArrayList<>(List.of("aSBC", "aBC")));
+        rules.put("CB", new ArrayList<>(List.of("B")));
+        Assertions.assertEquals(new Grammar("T", counting.getTerminals(), counting.getNonTerminals(), rules).getGrammarType(),
+                "Recursively enumerable (Type 0)");
     }
 
     @Test
@@ -73,16 +158,128 @@ public class GrammarTests {
         );
 
         grammar.convertToChomskyNormalForm();
-        Assertions.assertArrayEquals(grammar.getNonTerminals().toArray(), new String[]{"A", "B", "S", "Y", "Z"});
+        // A and E are unreachable from S once C is gone
+        Assertions.assertArrayEquals(grammar.getNonTerminals().toArray(), new String[]{"B", "S", "Z"});
         Assertions.assertArrayEquals(grammar.getTerminals().toArray(), new String[]{"a", "b"});
         Assertions.assertEquals(grammar.getStartSymbol(), "S");
         Assertions.assertEquals(grammar.getProductionRules(), new HashMap<>() {{
-            put("A", new ArrayList<>(List.of("ZS", "YB")));
             put("B", new ArrayList<>(List.of("a", "b")));
             put("S", new ArrayList<>(List.of("ZB", "a")));
-            put("Y", new ArrayList<>(List.of("a")));
             put("Z", new ArrayList<>(List.of("b")));
                 }}
         );
+
+        // Multi-character symbols and a long right-hand side keep the language and end up in normal form
+        Grammar states = new Grammar("q0", new HashSet<>(Set.of("0", "1")), new HashSet<>(Set.of("q0", "q1")),
+                new HashMap<>() {{ put("q0", new ArrayList<>(List.of("0 q0 1 q1", "1")));
+                    put("q1", new ArrayList<>(List.of("0 q1", "1")));}});
+        List<String> words = new ArrayList<>();
+        for (int bits = 0; bits < 1 << 10; bits++) {
+            for (int length = 1; length <= 10; length++) {
+                words.add(Integer.toBinaryString(bits | 1 << length).substring(1).substring(0, length));
+            }
+        }
+        Map<String, Boolean> before = new HashMap<>();
+        for (String word : words) {
+            before.put(word, states.accepts(word));
+        }
+        CompiledGrammar original = states.compile();
+        Assertions.assertSame(states.compile(), original);
+        states.convertToChomskyNormalForm();
+        CompiledGrammar normal = states.compile();
+        Assertions.assertNotSame(normal, original);
+        for (int p = 0; p < normal.getProductionCount(); p++) {
+            int[] body = normal.getBody(p);
+            boolean form = body.length == 1 ? normal.isTerminal(body[0])
+                    : body.length == 2 && !normal.isTerminal(body[0]) && !normal.isTerminal(body[1]);
+            Assertions.assertTrue(form, normal.getSymbol(normal.getHead(p)) + " -> " + normal.getText(p));
+        }
+        for (String word : words) {
+            Assertions.assertEquals(states.accepts(word), (boolean) before.get(word), word);
+        }
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> states.getNonTerminals().add("q2"));
+    }
+
+    @Test
+    void normalizer() {
+        Grammar grammar = new Grammar(
+                "S",
+                new HashSet<>(Set.of("a", "b")),
+                new HashSet<>(Set.of("S", "A", "B", "C", "D", "E")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("AB", "C")));
+                    put("A", new ArrayList<>(List.of("aA", "")));
+                    put("B", new ArrayList<>(List.of("bB", "A")));
+                    put("C", new ArrayList<>(List.of("D")));
+                    put("D", new ArrayList<>(List.of("aD", "C")));
+                    put("E", new ArrayList<>(List.of("a")));}}
+        );
+        GrammarNormalizer normalizer = new GrammarNormalizer(grammar);
+        Assertions.assertEquals(normalizer.nullable(), Set.of("A", "B", "S"));
+        Assertions.assertEquals(normalizer.productive(), Set.of("A", "B", "E", "S"));
+        Assertions.assertEquals(normalizer.reachable(), Set.of("A", "B", "C", "D", "S"));
+        Assertions.assertEquals(normalizer.unitClosure().get("S"), Set.of("S", "C", "D"));
+        Assertions.assertEquals(normalizer.withoutEpsilonProductions().get("S"), List.of("AB", "C", "B", "A"));
+        Assertions.assertEquals(normalizer.withoutUnitProductions().get("C"), List.of("aD"));
+        Assertions.assertEquals(normalizer.restrictedTo(Set.of("S", "A", "B")), Map.of(
+                "S", List.of("AB"), "A", List.of("aA", ""), "B", List.of("bB", "A")));
+
+        // A long chain S -> A1 -> A2 -> ... -> a in one pass
+        Set<String> nonTerminals = new HashSet<>(Set.of("S"));
+        Map<String, List<String>> rules = new HashMap<>();
+        rules.put("S", new ArrayList<>(List.of("N0")));
+        for (int i = 0; i < 5000; i++) {
+            nonTerminals.add("N" + i);
+            rules.put("N" + i, new ArrayList<>(List.of(i == 4999 ? "a" : "N" + (i + 1) + " a", "b")));
+        }
+        Grammar chain = new Grammar("S", new HashSet<>(Set.of("a", "b")), nonTerminals, rules);
+        Assertions.assertEquals(new GrammarNormalizer(chain).productive().size(), 5001);
+        Assertions.assertEquals(new GrammarNormalizer(chain).reachable().size(), 5001);
+
+        // 80 nullable occurrences in one production: binarized first instead of 2^80 variants
+        Grammar optional = new Grammar("S", new HashSet<>(Set.of("a", "b")), new HashSet<>(Set.of("S", "A")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("b" + "A".repeat(80))));
+                    put("A", new ArrayList<>(List.of("a", "")));}});
+        Map<String, List<String>> withoutEpsilon = new GrammarNormalizer(optional).withoutEpsilonProductions();
+        Assertions.assertTrue(withoutEpsilon.size() < 100, withoutEpsilon.keySet().toString());
+        Assertions.assertTrue(withoutEpsilon.values().stream().noneMatch(List::isEmpty));
+        Assertions.assertTrue(optional.accepts("b"));
+        Assertions.assertTrue(optional.accepts("b" + "a".repeat(80)));
+        Assertions.assertFalse(optional.accepts("b" + "a".repeat(81)));
+        optional.convertToChomskyNormalForm();
+        Assertions.assertTrue(optional.accepts("b"));
+        Assertions.assertTrue(optional.accepts("baaa"));
+        Assertions.assertTrue(optional.accepts("b" + "a".repeat(80)));
+        Assertions.assertFalse(optional.accepts("b" + "a".repeat(81)));
+    }
+
+    @Test
+    void accepts() {
+        Grammar grammar = Grammar.baseGrammar();
+        for (int i = 0; i < 20; i++) {
+            String word = grammar.generateWord();
+            Assertions.assertTrue(grammar.accepts(word), word);
+        }
+        Assertions.assertTrue(grammar.accepts("abaaa"));
+        Assertions.assertFalse(grammar.accepts("abab"));
+        Assertions.assertFalse(grammar.accepts("abc"));
+        Assertions.assertFalse(grammar.accepts(""));
+
+        // Balanced brackets: epsilon, unit and long productions, checked on a word long enough for parallel rows
+        Grammar brackets = new Grammar("S", new HashSet<>(Set.of("(", ")")), new HashSet<>(Set.of("S", "A")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("(S)S", "")));
+                    put("A", new ArrayList<>(List.of("S")));}});
+        Assertions.assertTrue(brackets.accepts(""));
+        Assertions.assertTrue(brackets.accepts("(()())()"));
+        Assertions.assertFalse(brackets.accepts("(()"));
+        Assertions.assertTrue(brackets.accepts("(()(()))".repeat(40)));
+        Assertions.assertFalse(brackets.accepts("(()(()))".repeat(40) + ")"));
+
+        // Overlapping terminals: the longest match "ab" leaves "c", only "a" "bc" derives the word
+        Grammar overlapping = new Grammar("S", new HashSet<>(Set.of("a", "ab", "bc")), new HashSet<>(Set.of("S")),
+                new HashMap<>() {{ put("S", new ArrayList<>(List.of("a bc", "ab S")));}});
+        Assertions.assertTrue(overlapping.accepts("abc"));
+        Assertions.assertTrue(overlapping.accepts("ababc"));
+        Assertions.assertFalse(overlapping.accepts("abab"));
+        Assertions.assertFalse(overlapping.accepts("bc"));
     }
 }
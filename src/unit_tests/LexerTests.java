@@ -0,0 +1,181 @@
+package unit_tests;
+
+import lexer.IncrementalLexer;
+import lexer.Lexer;
+import lexer.LexerTable;
+import lexer.ParallelLexer;
+import lexer.Token;
+import lexer.TokenBuffer;
+import lexer.TokenCursor;
+import lexer.TokenDelta;
+import lexer.TokenKind;
+import lexer.TokenList;
+import lexer.TokenPattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class LexerTests {
+
+    @Test
+    void lex() throws Exception {
+        List<Token> tokens = new Lexer("x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}").lex();
+        Assertions.assertEquals(tokens.toString(), "[(IDENTIFIER, x), (ASSIGNMENT, =), (INTEGER, 0), (SEMICOLON, ;), "
+                + "(WHILE, while), (LPAREN, (), (IDENTIFIER, x), (NOT_EQUALS, !=), (INTEGER, 5), (RPAREN, )), (LBRACE, {), "
+                + "(PRINT, print), (LPAREN, (), (IDENTIFIER, x), (RPAREN, )), (SEMICOLON, ;), "
+                + "(IDENTIFIER, x), (ASSIGNMENT, =), (IDENTIFIER, x), (PLUS, +), (INTEGER, 1), (SEMICOLON, ;), (RBRACE, }), (null, )]");
+    }
+
+    @Test
+    void longestMatchThenPriority() throws Exception {
+        Assertions.assertEquals(new Lexer("a == b").lex().get(1).getTokenType(), "EQUALS");
+        Assertions.assertEquals(new Lexer("a >= 2.50").lex().toString(), "[(IDENTIFIER, a), (GREATER_THAN_EQUALS, >=), (FLOAT, 2.50), (null, )]");
+        Assertions.assertEquals(new Lexer("if iffy").lex().toString(), "[(IF, if), (IDENTIFIER, iffy), (null, )]");
+    }
+
+    @Test
+    void tokenCursor() throws Exception {
+        String text = "print(x1);  y";
+        TokenCursor cursor = new TokenCursor(text);
+        List<String> seen = new ArrayList<>();
+        while (cursor.advance()) {
+            seen.add(cursor.tokenType() + "@" + cursor.start() + "-" + cursor.end());
+        }
+        Assertions.assertEquals(seen, List.of("PRINT@0-5", "LPAREN@5-6", "IDENTIFIER@6-8", "RPAREN@8-9", "SEMICOLON@9-10", "IDENTIFIER@12-13"));
+        Assertions.assertEquals(cursor.kind(), TokenKind.EOF);
+        Assertions.assertEquals(cursor.pattern(), TokenCursor.EOF);
+        Assertions.assertEquals(cursor.start(), text.length());
+
+        cursor = new TokenCursor(text);
+        cursor.advance();
+        cursor.advance();
+        cursor.advance();
+        Token token = cursor.token();
+        Assertions.assertEquals(token.getValue(), "x1");
+        Assertions.assertEquals(token.getStart(), 6);
+        Assertions.assertEquals(cursor.kind(), TokenKind.IDENTIFIER);
+        Assertions.assertEquals(token.getKind(), TokenKind.IDENTIFIER);
+        Assertions.assertEquals(TokenList.TOKEN_PATTERNS.get(cursor.pattern()).getKind(), TokenKind.IDENTIFIER);
+    }
+
+    @Test
+    void tokenKinds() {
+        // Kind ordinals follow TOKEN_PATTERNS, only skipped patterns have no kind
+        for (int i = 0; i < TokenList.TOKEN_PATTERNS.size(); i++) {
+            TokenPattern pattern = TokenList.TOKEN_PATTERNS.get(i);
+            if (pattern.getTokenType() == null) {
+                Assertions.assertNull(pattern.getKind());
+            } else {
+                Assertions.assertEquals(pattern.getKind().ordinal(), i);
+                Assertions.assertEquals(pattern.getKind().name(), pattern.getTokenType());
+            }
+        }
+        Assertions.assertEquals(new Token("WHILE", "while").getKind(), TokenKind.WHILE);
+        Assertions.assertEquals(new Token(null, "").getKind(), TokenKind.EOF);
+    }
+
+    @Test
+    void incrementalLexing() throws Exception {
+        String oldText = "x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}";
+        List<Token> oldTokens = new Lexer(oldText).lex();
+
+        // "x + 1" becomes "x + 10.5"
+        int offset = oldText.indexOf("1;");
+        String newText = oldText.substring(0, offset) + "10.5" + oldText.substring(offset + 1);
+        TokenDelta delta = new IncrementalLexer().relex(oldTokens, newText, offset, 1, "10.5");
+
+        Assertions.assertEquals(delta.getInserted().toString(), "[(PLUS, +), (FLOAT, 10.5)]");
+        Assertions.assertEquals(delta.getRemovedCount(), 2);
+        Assertions.assertEquals(delta.getShift(), 3);
+
+        List<Token> expected = new Lexer(newText).lex();
+        List<Token> actual = delta.apply(oldTokens);
+        Assertions.assertEquals(actual.toString(), expected.toString());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(actual.get(i).getStart(), expected.get(i).getStart());
+        }
+
+        // Joining two identifiers by deleting the space between them
+        List<Token> joined = new IncrementalLexer().relex(new Lexer("ab cd;").lex(), "abcd;", 2, 1, "").apply(new Lexer("ab cd;").lex());
+        Assertions.assertEquals(joined.toString(), "[(IDENTIFIER, abcd), (SEMICOLON, ;), (null, )]");
+
+        // A stream of edits on one buffer, invalid intermediate text included, matches a full re-lex every time
+        IncrementalLexer lexer = new IncrementalLexer();
+        String text = oldText.repeat(50);
+        TokenBuffer buffer = new TokenBuffer(new Lexer(text).lex(), text.length());
+        Random random = new Random(7);
+        String[] inserts = {"", "x", " ", "1.", "5", "!", "=", "#", "while", "\n", "}"};
+        for (int i = 0; i < 500; i++) {
+            int editOffset = random.nextInt(text.length() + 1);
+            int removedLength = random.nextInt(Math.min(4, text.length() - editOffset) + 1);
+            String insertedText = inserts[random.nextInt(inserts.length)];
+            text = text.substring(0, editOffset) + insertedText + text.substring(editOffset + removedLength);
+            buffer.apply(lexer.relex(buffer, text, editOffset, removedLength, insertedText));
+            List<Token> full = new Lexer(text, LexerTable.getDefault(), true).lex();
+            Assertions.assertEquals(buffer.toString(), full.toString());
+            Assertions.assertEquals(buffer.get(buffer.size() - 1).getStart(), text.length());
+            int index = random.nextInt(full.size());
+            Assertions.assertEquals(buffer.get(index).getStart(), full.get(index).getStart());
+            Assertions.assertEquals(buffer.get(index).getEnd(), full.get(index).getEnd());
+        }
+    }
+
+    @Test
+    void parallelLexing() throws Exception {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            program.append("x").append(i).append(" = x + ").append(i).append(".5;\nwhile( x != 5) {\nprint(x);}\n");
+        }
+        String text = program.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Token> parallel = new ParallelLexer(LexerTable.getDefault(), pool, 64).lex(text);
+        List<Token> sequential = new Lexer(text).lex();
+        Assertions.assertEquals(parallel.toString(), sequential.toString());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(parallel.get(i).getStart(), sequential.get(i).getStart());
+        }
+
+        // Comments spanning lines make chunks start mid-token and have to be lexed again while stitching
+        LexerTable table = LexerTable.build(List.of(
+                new TokenPattern("[a-z]+", "WORD"),
+                TokenPattern.skip("/\\*[a-z \n]*\\*/"),
+                TokenPattern.skip("\\s+")));
+        String commented = "one /*\nhidden\nwords */ two\n".repeat(50);
+        Assertions.assertEquals(new ParallelLexer(table, pool, 16).lex(commented).toString(), new Lexer(commented, table).lex().toString());
+
+        Exception exception = Assertions.assertThrows(Exception.class, () -> new ParallelLexer(LexerTable.getDefault(), pool, 64).lex(text + "&"));
+        Assertions.assertEquals(exception.getMessage(), "Unexpected character at position: " + text.length());
+        pool.shutdown();
+    }
+
+    @Test
+    void unexpectedCharacter() throws Exception {
+        Exception exception = Assertions.assertThrows(Exception.class, () -> new Lexer("x = 1 & 2").lex());
+        Assertions.assertEquals(exception.getMessage(), "Unexpected character at position: 6");
+
+        List<Token> tokens = new Lexer("x = 1 & 2 $$ y", LexerTable.getDefault(), true).lex();
+        Assertions.assertEquals(tokens.toString(), "[(IDENTIFIER, x), (ASSIGNMENT, =), (INTEGER, 1), (ERROR, &), (INTEGER, 2), (ERROR, $$), (IDENTIFIER, y), (null, )]");
+        Assertions.assertEquals(tokens.get(5).getKind(), TokenKind.ERROR);
+        Assertions.assertEquals(tokens.get(5).getStart(), 10);
+        Assertions.assertEquals(tokens.get(5).getEnd(), 12);
+    }
+
+    @Test
+    void customPatterns() throws Exception {
+        LexerTable table = LexerTable.build(List.of(
+                new TokenPattern("(ab|a)*c?", "WORD"),
+                new TokenPattern("[0-9]+", "NUMBER"),
+                TokenPattern.skip("\\s+")));
+        Assertions.assertEquals(new Lexer("abac 42 c", table).lex().toString(), "[(WORD, abac), (NUMBER, 42), (WORD, c), (null, )]");
+    }
+
+    @Test
+    void rangeEndingAtLastChar() throws Exception {
+        LexerTable table = LexerTable.build(List.of(
+                new TokenPattern("[\ufffe-\uffff]+", "HIGH"),
+                new TokenPattern("[a-z]+", "WORD")));
+        Assertions.assertEquals(new Lexer("ab\uffff\ufffe", table).lex().toString(), "[(WORD, ab), (HIGH, \uffff\ufffe), (null, )]");
+    }
+}
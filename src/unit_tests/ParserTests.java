@@ -0,0 +1,298 @@
+package unit_tests;
+
+import grammar.Grammar;
+import lexer.Lexer;
+import lexer.TokenCursor;
+import lexer.TokenKind;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import parser.Ast;
+import parser.AstPrinter;
+import parser.Diagnostic;
+import parser.EarleyParser;
+import parser.LL1Parser;
+import parser.NodeKind;
+import parser.ParseException;
+import parser.ParseForest;
+import parser.Parser;
+
+import java.util.*;
+
+public class ParserTests {
+
+    @Test
+    void parseFromCursor() throws Exception {
+        String text = "x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}";
+        Assertions.assertDoesNotThrow(() -> new Parser(new TokenCursor(text)).parse());
+        Assertions.assertDoesNotThrow(() -> new Parser(new Lexer(text).lex()).parse());
+    }
+
+    @Test
+    void ast() throws Exception {
+        String text = "x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}\nif ( x == 0) {\nprint(x);\n} else {\nfoo(1.5);\n}";
+        Ast ast = new Parser(new TokenCursor(text)).parse();
+        Assertions.assertEquals(AstPrinter.print(ast), String.join("\n",
+                "PROGRAM",
+                "  ASSIGNMENT x",
+                "    INTEGER 0",
+                "  WHILE",
+                "    BINARY NOT_EQUALS",
+                "      IDENTIFIER x",
+                "      INTEGER 5",
+                "    BLOCK",
+                "      PRINT",
+                "        IDENTIFIER x",
+                "      ASSIGNMENT x",
+                "        BINARY PLUS",
+                "          IDENTIFIER x",
+                "          INTEGER 1",
+                "  IF",
+                "    BINARY EQUALS",
+                "      IDENTIFIER x",
+                "      INTEGER 0",
+                "    BLOCK",
+                "      PRINT",
+                "        IDENTIFIER x",
+                "    BLOCK",
+                "      CALL foo",
+                "        FLOAT 1.5",
+                ""));
+
+        int loop = ast.getChild(ast.getRoot(), 1);
+        Assertions.assertEquals(ast.getKind(loop), NodeKind.WHILE);
+        Assertions.assertEquals(text.substring(ast.getStart(loop), ast.getEnd(loop)), "while( x != 5) {\nprint(x);\nx = x + 1;}");
+        int condition = ast.getChild(loop, 0);
+        Assertions.assertEquals(text.substring(ast.getStart(condition), ast.getEnd(condition)), "x != 5");
+        Assertions.assertEquals(ast.getOperator(condition), TokenKind.NOT_EQUALS);
+
+        // The token list parser builds the same tree
+        Assertions.assertEquals(new Parser(new Lexer(text).lex()).parse().toString(), ast.toString());
+
+        // Nested blocks
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            nested.append("while (x) {");
+        }
+        nested.append("}".repeat(1000));
+        Assertions.assertEquals(AstPrinter.print(new Parser(new Lexer(nested.toString()).lex()).parse()).lines().count(), 3001);
+    }
+
+    @Test
+    void expressions() throws Exception {
+        Assertions.assertEquals(expression("a + b * c - d"), "((a PLUS (b MULTIPLY c)) MINUS d)");
+        Assertions.assertEquals(expression("a - b - c"), "((a MINUS b) MINUS c)");
+        Assertions.assertEquals(expression("(a - b) % 2"), "((a MINUS b) MODULO 2)");
+        Assertions.assertEquals(expression("!a && b || c < 1 && -d >= 2.5"),
+                "(((LOGICAL_NOT a) LOGICAL_AND b) LOGICAL_OR ((c LESS_THAN 1) LOGICAL_AND ((MINUS d) GREATER_THAN_EQUALS 2.5)))");
+        Assertions.assertEquals(expression("x == y != z <= - - 1"), "((x EQUALS y) NOT_EQUALS (z LESS_THAN_EQUALS (MINUS (MINUS 1))))");
+        Assertions.assertEquals(expression("((a))"), "a");
+
+        String text = "y = (a + b) * c;";
+        Ast ast = new Parser(new TokenCursor(text)).parse();
+        int product = ast.getChild(ast.getChild(ast.getRoot(), 0), 0);
+        Assertions.assertEquals(text.substring(ast.getStart(product), ast.getEnd(product)), "(a + b) * c");
+
+        Exception exception = Assertions.assertThrows(Exception.class, () -> new Parser(new TokenCursor("x = (a + b;")).parse());
+        Assertions.assertEquals(exception.getMessage(), "1:11: Expected token type: RPAREN, but found: SEMICOLON");
+        exception = Assertions.assertThrows(Exception.class, () -> new Parser(new TokenCursor("x = a + ;")).parse());
+        Assertions.assertEquals(exception.getMessage(), "1:9: Expected one of token types: IDENTIFIER, INTEGER, FLOAT, but found: SEMICOLON");
+
+        // 100k terms and 100k nested parentheses without recursion
+        StringBuilder sum = new StringBuilder("x = a");
+        StringBuilder nested = new StringBuilder("x = ");
+        for (int i = 0; i < 100000; i++) {
+            sum.append(" + a");
+            nested.append("(-");
+        }
+        nested.append("a").append(")".repeat(100000)).append(";");
+        Ast sumAst = new Parser(new TokenCursor(sum.append(";"))).parse();
+        Assertions.assertEquals(sumAst.getNodeCount(), 200003);
+        Ast nestedAst = new Parser(new TokenCursor(nested)).parse();
+        Assertions.assertEquals(nestedAst.getNodeCount(), 100003);
+    }
+
+    // Fully bracketed form of the expression assigned in "x = <expression>;"
+    private static String expression(String expression) throws Exception {
+        Ast ast = new Parser(new TokenCursor("x = " + expression + ";")).parse();
+        return bracket(ast, ast.getChild(ast.getChild(ast.getRoot(), 0), 0));
+    }
+
+    private static String bracket(Ast ast, int node) {
+        switch (ast.getKind(node)) {
+            case BINARY:
+                return "(" + bracket(ast, ast.getChild(node, 0)) + " " + ast.getOperator(node) + " " + bracket(ast, ast.getChild(node, 1)) + ")";
+            case UNARY:
+                return "(" + ast.getOperator(node) + " " + bracket(ast, ast.getChild(node, 0)) + ")";
+            default:
+                return ast.getName(node);
+        }
+    }
+
+    @Test
+    void unclosedBlock() {
+        Exception exception = Assertions.assertThrows(Exception.class, () -> new Parser(new TokenCursor("while (x != 5) { print(x);")).parse());
+        Assertions.assertEquals(exception.getMessage(), "1:27: Expected token type: RBRACE, but found: EOF");
+    }
+
+    @Test
+    void errorRecovery() throws Exception {
+        String text = "x = 0;\ny = (1 + ;\nwhile (x < 5) {\n  x = x + # 1;\n  print(x)\n  z = 2;\n}\nif (x { print(1); }\nprint(x);\n}\nw = 1 @@ 2;";
+        Parser parser = new Parser(text);
+        ParseException exception = Assertions.assertThrows(ParseException.class, parser::parse);
+        List<String> diagnostics = new ArrayList<>();
+        for (Diagnostic diagnostic : exception.getDiagnostics()) {
+            diagnostics.add(diagnostic.toString());
+        }
+        Assertions.assertEquals(diagnostics, List.of(
+                "2:10: Expected one of token types: IDENTIFIER, INTEGER, FLOAT, but found: SEMICOLON",
+                "4:11: Unexpected character: #",
+                "6:3: Expected token type: SEMICOLON, but found: IDENTIFIER",
+                "8:7: Expected token type: RPAREN, but found: LBRACE",
+                "10:1: Unexpected token: }",
+                "11:7: Unexpected characters: @@",
+                "11:10: Expected token type: SEMICOLON, but found: INTEGER"));
+        Assertions.assertEquals(exception.getMessage(), String.join("\n", diagnostics));
+        Diagnostic unexpected = exception.getDiagnostics().get(5);
+        Assertions.assertEquals(text.substring(unexpected.getStart(), unexpected.getEnd()), "@@");
+
+        // The statements that parsed are kept, the character error alone does not drop its statement
+        Assertions.assertEquals(AstPrinter.print(parser.getAst()), String.join("\n",
+                "PROGRAM",
+                "  ASSIGNMENT x",
+                "    INTEGER 0",
+                "  WHILE",
+                "    BINARY LESS_THAN",
+                "      IDENTIFIER x",
+                "      INTEGER 5",
+                "    BLOCK",
+                "      ASSIGNMENT x",
+                "        BINARY PLUS",
+                "          IDENTIFIER x",
+                "          INTEGER 1",
+                "  PRINT",
+                "    IDENTIFIER x",
+                ""));
+
+        // A bare token list has no text to count lines in, unless the text is passed along
+        exception = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer("x = ;\ny = 1").lex()).parse());
+        Assertions.assertEquals(exception.getMessage(), "Expected one of token types: IDENTIFIER, INTEGER, FLOAT, but found: SEMICOLON\nExpected token type: SEMICOLON, but found: EOF");
+        Assertions.assertEquals(exception.getDiagnostics().get(1).getLine(), 0);
+        exception = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer("x = ;\ny = 1").lex(), "x = ;\ny = 1").parse());
+        Assertions.assertEquals(exception.getMessage(), "1:5: Expected one of token types: IDENTIFIER, INTEGER, FLOAT, but found: SEMICOLON\n2:6: Expected token type: SEMICOLON, but found: EOF");
+
+        // One diagnostic per broken statement in a large input
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append(i % 10 == 0 ? "x = x + ;\n" : "x = x + 1;\n");
+        }
+        exception = Assertions.assertThrows(ParseException.class, () -> new Parser(large.toString()).parse());
+        Assertions.assertEquals(exception.getDiagnostics().size(), 1000);
+        Assertions.assertEquals(exception.getDiagnostics().get(999).getLine(), 9991);
+    }
+
+    @Test
+    void ll1Parser() throws Exception {
+        LL1Parser baseParser = new LL1Parser(Grammar.baseGrammar());
+        Assertions.assertEquals(baseParser.getFirst("S"), Set.of("a", "b"));
+        Assertions.assertEquals(baseParser.getFollow("B"), Set.of("$"));
+        Assertions.assertTrue(baseParser.accepts("abaaa"));
+        Assertions.assertFalse(baseParser.accepts("abab"));
+        int[] derivation = baseParser.parse(List.of("a", "a", "a"));
+        Assertions.assertEquals(baseParser.getProduction(derivation[0]) + ", " + baseParser.getProduction(derivation[1]) + ", "
+                + baseParser.getProduction(derivation[2]), "S -> a A, A -> a B, B -> a");
+
+        // Statements over token types, nested far deeper than a recursive parser could go
+        Grammar statements = new Grammar("P",
+                new HashSet<>(Set.of("IDENTIFIER", "INTEGER", "ASSIGNMENT", "PLUS", "SEMICOLON", "PRINT", "WHILE",
+                        "LPAREN", "RPAREN", "LBRACE", "RBRACE")),
+                new HashSet<>(Set.of("P", "S", "E", "R", "T")),
+                new HashMap<>(Map.of(
+                        "P", new ArrayList<>(List.of("S P", "")),
+                        "S", new ArrayList<>(List.of("IDENTIFIER ASSIGNMENT E SEMICOLON", "PRINT LPAREN E RPAREN SEMICOLON",
+                                "WHILE LPAREN E RPAREN LBRACE P RBRACE")),
+                        "E", new ArrayList<>(List.of("T R")),
+                        "R", new ArrayList<>(List.of("PLUS T R", "ε")),
+                        "T", new ArrayList<>(List.of("IDENTIFIER", "INTEGER")))));
+        LL1Parser parser = new LL1Parser(statements);
+        Assertions.assertTrue(parser.isNullable("P"));
+        Assertions.assertEquals(parser.getFollow("E"), Set.of("RPAREN", "SEMICOLON"));
+        Assertions.assertEquals(parser.parse(new TokenCursor("x = 0;\nwhile( x) {\nprint(x);\nx = x + 1;}")).length, 24);
+        String nested = "while (x) {".repeat(100_000) + "print(x);" + "}".repeat(100_000);
+        Assertions.assertDoesNotThrow(() -> parser.parse(new TokenCursor(nested)));
+        Exception exception = Assertions.assertThrows(Exception.class, () -> parser.parse(new TokenCursor("x = ;")));
+        Assertions.assertEquals(exception.getMessage(), "Unexpected SEMICOLON at position 2 while parsing E, expected one of [IDENTIFIER, INTEGER]");
+
+        Grammar ambiguous = new Grammar("S", new HashSet<>(Set.of("a", "b")), new HashSet<>(Set.of("S", "A")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("aA", "ab")), "A", new ArrayList<>(List.of("b")))));
+        exception = Assertions.assertThrows(Exception.class, () -> new LL1Parser(ambiguous));
+        Assertions.assertEquals(exception.getMessage(), "Grammar is not LL(1): S on a: S -> a A | S -> a b");
+    }
+
+    @Test
+    void earleyParser() throws Exception {
+        EarleyParser baseParser = new EarleyParser(Grammar.baseGrammar());
+        Assertions.assertEquals(baseParser.parse(List.of("a", "b", "a", "a", "a")).firstTree(), "S(a A(b S(a A(a B(a)))))");
+        Assertions.assertFalse(baseParser.accepts("abab"));
+
+        Grammar brackets = new Grammar("S", new HashSet<>(Set.of("(", ")")), new HashSet<>(Set.of("S")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("(S)S", "")))));
+        Assertions.assertEquals(new EarleyParser(brackets).parse(List.of("(", ")", "(", ")")).firstTree(), "S(( S() ) S(( S() ) S()))");
+
+        // Not LL(1) and ambiguous: both groupings of a + a + a share one forest
+        Grammar sums = new Grammar("E", new HashSet<>(Set.of("+", "a")), new HashSet<>(Set.of("E")),
+                new HashMap<>(Map.of("E", new ArrayList<>(List.of("E+E", "a")))));
+        EarleyParser sumParser = new EarleyParser(sums);
+        ParseForest forest = sumParser.parse(List.of("a", "+", "a", "+", "a"));
+        Assertions.assertTrue(forest.isAmbiguous());
+        int rootFamilies = 0;
+        for (int family = forest.getFirstFamily(forest.getRoot()); family != ParseForest.NONE; family = forest.getNextFamily(family)) {
+            rootFamilies++;
+        }
+        Assertions.assertEquals(rootFamilies, 2);
+        Assertions.assertFalse(sumParser.parse(List.of("a", "+", "a")).isAmbiguous());
+        Exception exception = Assertions.assertThrows(Exception.class, () -> sumParser.parse(List.of("a", "+", "+")));
+        Assertions.assertEquals(exception.getMessage(), "Unexpected + at position 2");
+
+        // Right recursive statement lists over ~100k tokens
+        Grammar statements = new Grammar("P",
+                new HashSet<>(Set.of("IDENTIFIER", "INTEGER", "ASSIGNMENT", "PLUS", "SEMICOLON", "PRINT", "WHILE",
+                        "LPAREN", "RPAREN", "LBRACE", "RBRACE")),
+                new HashSet<>(Set.of("P", "S", "E", "T")),
+                new HashMap<>(Map.of(
+                        "P", new ArrayList<>(List.of("S P", "")),
+                        "S", new ArrayList<>(List.of("IDENTIFIER ASSIGNMENT E SEMICOLON", "PRINT LPAREN E RPAREN SEMICOLON",
+                                "WHILE LPAREN E RPAREN LBRACE P RBRACE")),
+                        "E", new ArrayList<>(List.of("E PLUS T", "T")),
+                        "T", new ArrayList<>(List.of("IDENTIFIER", "INTEGER")))));
+        EarleyParser parser = new EarleyParser(statements);
+        String text = "x = x + 1;\nprint(x);\nwhile (x) { y = 2; }\n".repeat(5000);
+        ParseForest program = parser.parse(new TokenCursor(text));
+        Assertions.assertEquals(program.getEnd(program.getRoot()), 105_000);
+        Assertions.assertFalse(program.isAmbiguous());
+
+        // Completions of the start symbol at origin 0 must not be attributed to an item above it
+        Grammar nested = new Grammar("S", new HashSet<>(Set.of("a", "b")), new HashSet<>(Set.of("S", "A", "B")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("AaB", "")), "A", new ArrayList<>(List.of("S")),
+                        "B", new ArrayList<>(List.of("b")))));
+        Assertions.assertEquals(new EarleyParser(nested).parse(List.of("a", "b")).firstTree(), "S(A(S()) a B(b))");
+        Grammar cyclic = new Grammar("S", new HashSet<>(Set.of("b")), new HashSet<>(Set.of("S", "B")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("B")), "B", new ArrayList<>(List.of("S", "bb")))));
+        Assertions.assertEquals(new EarleyParser(cyclic).parse(List.of("b", "b")).firstTree(), "S(B(b b))");
+
+        // Unit cycles give cyclic forests, the printed tree takes the finite derivation
+        Grammar loop = new Grammar("S", new HashSet<>(Set.of("a")), new HashSet<>(Set.of("S")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("S", "a")))));
+        ParseForest loopForest = new EarleyParser(loop).parse(List.of("a"));
+        Assertions.assertTrue(loopForest.isAmbiguous());
+        Assertions.assertEquals(loopForest.firstTree(), "S(a)");
+
+        // Overlapping terminals: only the split a bc derives the word, longest match would read ab c
+        Grammar overlapping = new Grammar("S", new HashSet<>(Set.of("a", "ab", "bc")), new HashSet<>(Set.of("S", "B")),
+                new HashMap<>(Map.of("S", new ArrayList<>(List.of("a B", "ab S")), "B", new ArrayList<>(List.of("bc")))));
+        EarleyParser overlappingParser = new EarleyParser(overlapping);
+        for (String word : List.of("abc", "ababc", "", "ab", "abab", "abcbc")) {
+            Assertions.assertEquals(overlappingParser.accepts(word), overlapping.accepts(word), word);
+        }
+        Assertions.assertTrue(overlappingParser.accepts("ababc"));
+    }
+}
@@ -0,0 +1,93 @@
+package unit_tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vm.BytecodeCompiler;
+import vm.Program;
+import vm.TieredScript;
+import vm.VirtualMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class VmTests {
+
+    @Test
+    void whileLoop() throws Exception {
+        VirtualMachine vm = new VirtualMachine(BytecodeCompiler.compile("x = 0;\nwhile( x != 5) {\nprint(x);\nx = x + 1;}"), new PrintStream(new ByteArrayOutputStream()));
+        vm.run();
+        Assertions.assertEquals(vm.getValue("x"), 5L);
+
+        Program program = BytecodeCompiler.compile("x = 0; n = 0; while (x < 100) { if (x % 3 == 0 || x % 5 == 0) { n = n + x; } x = x + 1; }");
+        Assertions.assertEquals(program.getVariableCount(), 2);
+        vm = new VirtualMachine(program);
+        vm.run();
+        Assertions.assertEquals(vm.getValue("n"), 2318L);
+    }
+
+    @Test
+    void values() throws Exception {
+        Assertions.assertEquals(output("y = 5;\nx = y + 2;\nprint(x);"), "7\n");
+        Assertions.assertEquals(output("print(7 / 2); print(7.0 / 2); print(-(7 / 2) * 2 + 3.5); print(7 % -3);"), "3\n3.5\n-2.5\n1\n");
+        Assertions.assertEquals(output("print(1 < 2); print(2.5 >= 3); print(!0); print(!2.5); x; print(x);"), "1\n0\n1\n0\n0\n");
+        Assertions.assertEquals(output("if ( x == 0) {\nprint(x);\n} else {\nprint(1);\n}".replace("x", "0")), "0\n");
+        Assertions.assertThrows(ArithmeticException.class, () -> output("print(1 / 0);"));
+        Assertions.assertEquals(output("print(1.0 / 0);"), "Infinity\n");
+        Assertions.assertThrows(IllegalStateException.class, () -> output("print(x);"));
+        Assertions.assertThrows(Exception.class, () -> BytecodeCompiler.compile("foo(1);"));
+    }
+
+    @Test
+    void shortCircuit() throws Exception {
+        // The right operand would divide by zero if it ran
+        Assertions.assertEquals(output("x = 0; print(x != 0 && 1 / x > 0); print(x == 0 || 1 / x > 0);"), "0\n1\n");
+        Assertions.assertEquals(output("print(2 && 3.5); print(0 || 0.0); print(1 && 0 || 4);"), "1\n0\n1\n");
+        Assertions.assertEquals(output("x = 0; while (x < 10 && !(x == 7)) { x = x + 1; } print(x);"), "7\n");
+
+        StringBuilder deep = new StringBuilder("y = 1; x = y");
+        for (int i = 0; i < 10000; i++) {
+            deep.append(i % 2 == 0 ? " && y" : " + 1");
+        }
+        Assertions.assertEquals(output(deep + "; print(x);"), "1\n");
+    }
+
+    @Test
+    void tiered() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TieredScript script = new TieredScript("n = 0; x = 0.5; while (n < 1000) { if (n % 3 == 0 && !(n > 500) || n == 999) { x = x * 1.01 + 1; } n = n + 1; } print(x > 100); print(n / 7);", 2, new PrintStream(bytes));
+        for (int i = 0; i < 4; i++) {
+            script.run();
+            Assertions.assertEquals(script.isCompiled(), i >= 2);
+        }
+        Assertions.assertEquals(bytes.toString().replace("\r\n", "\n"), "1\n142\n".repeat(4));
+        Assertions.assertEquals(script.getValue("n"), 1000L);
+        Assertions.assertEquals(script.getRuns(), 4);
+
+        // Both tiers print the same for every script, compiled or not
+        String[] sources = {
+                "a = 7 / 2; b = 7.0 / 2; print(-a * 2 + b); print(-7 % 3); print(7.5 % 2); print(1 && 0 || 2.5);",
+                "n = 0.0 / 0.0; print(n < 1); print(n >= 1); print(n == n); print(n != n); print(!n); z; print(z);",
+                "i = 0; while (i < 3) { if (i == 1) { w = 2.5; } i = i + 1; } print(i);",
+                "x = 1; x = 2.5; print(x);",
+                "if (1) { q = 1; } print(q);"};
+        boolean[] compiles = {true, true, true, false, false};
+        for (int i = 0; i < sources.length; i++) {
+            ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+            script = new TieredScript(sources[i], 0, new PrintStream(compiled));
+            script.run();
+            Assertions.assertEquals(script.isCompiled(), compiles[i]);
+            Assertions.assertEquals(compiled.toString().replace("\r\n", "\n"), output(sources[i]));
+        }
+
+        // A variable assigned on some paths only is written back when the run assigned it
+        script = new TieredScript("i = 0; while (i < 3) { if (i == 1) { w = 2.5; } i = i + 1; }", 0, System.out);
+        script.run();
+        Assertions.assertEquals(script.getValue("w"), 2.5);
+    }
+
+    private static String output(String source) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new VirtualMachine(BytecodeCompiler.compile(source), new PrintStream(bytes)).run();
+        return bytes.toString().replace("\r\n", "\n");
+    }
+}
@@ -0,0 +1,68 @@
+package vm;
+
+// Instruction set of the stack VM. Code is a flat int[]: an opcode followed by its operands, whose number is
+// fixed per opcode (see operandCount). Values are a long plus a type tag; FLOAT values hold the raw bits of a
+// double. Comparisons and logical operators produce INT 0 or 1 and any non-zero value counts as true.
+public final class Bytecode {
+    public static final byte UNSET = 0;
+    public static final byte INT = 1;
+    public static final byte FLOAT = 2;
+
+    // constant index
+    public static final int PUSH_CONST = 0;
+    // variable slot
+    public static final int LOAD = 1;
+    public static final int STORE = 2;
+
+    public static final int ADD = 3;
+    public static final int SUB = 4;
+    public static final int MUL = 5;
+    public static final int DIV = 6;
+    public static final int MOD = 7;
+    public static final int EQ = 8;
+    public static final int NE = 9;
+    public static final int LT = 10;
+    public static final int LE = 11;
+    public static final int GT = 12;
+    public static final int GE = 13;
+    public static final int NEG = 14;
+    public static final int NOT = 15;
+
+    // target
+    public static final int JUMP = 16;
+    public static final int JUMP_IF_FALSE = 17;
+    public static final int JUMP_IF_TRUE = 18;
+    // comparison opcode (EQ..GE), target: pops two values and jumps unless the comparison holds
+    public static final int JUMP_UNLESS = 19;
+
+    public static final int PRINT = 20;
+    public static final int HALT = 21;
+
+    private static final String[] NAMES = {
+            "PUSH_CONST", "LOAD", "STORE", "ADD", "SUB", "MUL", "DIV", "MOD", "EQ", "NE", "LT", "LE", "GT", "GE",
+            "NEG", "NOT", "JUMP", "JUMP_IF_FALSE", "JUMP_IF_TRUE", "JUMP_UNLESS", "PRINT", "HALT"
+    };
+
+    private Bytecode() {
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static int operandCount(int opcode) {
+        switch (opcode) {
+            case PUSH_CONST:
+            case LOAD:
+            case STORE:
+            case JUMP:
+            case JUMP_IF_FALSE:
+            case JUMP_IF_TRUE:
+                return 1;
+            case JUMP_UNLESS:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package vm;
+
+import lexer.TokenKind;
+import parser.Ast;
+import parser.NodeKind;
+import parser.Parser;
+
+import java.util.*;
+
+// Compiles the Ast of a script into stack bytecode. Variables are interned to slots at compile time, so the VM
+// never looks up a name. Conditions of while and if that are a single comparison become one fused
+// compare-and-branch instruction; && and || short-circuit with jumps. Expressions are compiled on an explicit
+// stack of frames, so arbitrarily deep expression trees need no recursion.
+public final class BytecodeCompiler {
+    // Opcode for every operator by TokenKind ordinal, -1 for the short-circuit ones and non-operators
+    private static final int[] BINARY_OPCODES = new int[TokenKind.values().length];
+    private static final int[] UNARY_OPCODES = new int[TokenKind.values().length];
+
+    static {
+        Arrays.fill(BINARY_OPCODES, -1);
+        Arrays.fill(UNARY_OPCODES, -1);
+        BINARY_OPCODES[TokenKind.PLUS.ordinal()] = Bytecode.ADD;
+        BINARY_OPCODES[TokenKind.MINUS.ordinal()] = Bytecode.SUB;
+        BINARY_OPCODES[TokenKind.MULTIPLY.ordinal()] = Bytecode.MUL;
+        BINARY_OPCODES[TokenKind.DIVIDE.ordinal()] = Bytecode.DIV;
+        BINARY_OPCODES[TokenKind.MODULO.ordinal()] = Bytecode.MOD;
+        BINARY_OPCODES[TokenKind.EQUALS.ordinal()] = Bytecode.EQ;
+        BINARY_OPCODES[TokenKind.NOT_EQUALS.ordinal()] = Bytecode.NE;
+        BINARY_OPCODES[TokenKind.LESS_THAN.ordinal()] = Bytecode.LT;
+        BINARY_OPCODES[TokenKind.LESS_THAN_EQUALS.ordinal()] = Bytecode.LE;
+        BINARY_OPCODES[TokenKind.GREATER_THAN.ordinal()] = Bytecode.GT;
+        BINARY_OPCODES[TokenKind.GREATER_THAN_EQUALS.ordinal()] = Bytecode.GE;
+        UNARY_OPCODES[TokenKind.MINUS.ordinal()] = Bytecode.NEG;
+        UNARY_OPCODES[TokenKind.LOGICAL_NOT.ordinal()] = Bytecode.NOT;
+    }
+
+    private final Ast ast;
+    private int[] code = new int[64];
+    private int size;
+    private int depth;
+    private int maxDepth;
+
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+    private final Map<Long, Integer> intConstants = new HashMap<>();
+    private final Map<Long, Integer> floatConstants = new HashMap<>();
+    private long[] constants = new long[8];
+    private byte[] constantTypes = new byte[8];
+    private int constantCount;
+
+    private BytecodeCompiler(Ast ast) {
+        this.ast = ast;
+    }
+
+    public static Program compile(Ast ast) throws Exception {
+        BytecodeCompiler compiler = new BytecodeCompiler(ast);
+        compiler.statement(ast.getRoot());
+        compiler.emit(Bytecode.HALT);
+        return new Program(Arrays.copyOf(compiler.code, compiler.size),
+                Arrays.copyOf(compiler.constants, compiler.constantCount),
+                Arrays.copyOf(compiler.constantTypes, compiler.constantCount),
+                compiler.slots.keySet().toArray(new String[0]), compiler.maxDepth);
+    }
+
+    public static Program compile(String source) throws Exception {
+        return compile(new Parser(source).parse());
+    }
+
+    private void statement(int node) throws Exception {
+        switch (ast.getKind(node)) {
+            case PROGRAM:
+            case BLOCK:
+                for (int i = 0; i < ast.getChildCount(node); i++) {
+                    statement(ast.getChild(node, i));
+                }
+                break;
+            case ASSIGNMENT:
+                expression(ast.getChild(node, 0));
+                emit(Bytecode.STORE, slot(ast.getName(node)));
+                break;
+            case DECLARATION:
+                emit(Bytecode.PUSH_CONST, constant(Bytecode.INT, 0));
+                emit(Bytecode.STORE, slot(ast.getName(node)));
+                break;
+            case PRINT:
+                expression(ast.getChild(node, 0));
+                emit(Bytecode.PRINT);
+                break;
+            case WHILE: {
+                int loop = size;
+                int exit = condition(ast.getChild(node, 0));
+                statement(ast.getChild(node, 1));
+                emit(Bytecode.JUMP, loop);
+                code[exit] = size;
+                break;
+            }
+            case IF: {
+                int otherwise = condition(ast.getChild(node, 0));
+                statement(ast.getChild(node, 1));
+                if (ast.getChildCount(node) > 2) {
+                    emit(Bytecode.JUMP, 0);
+                    int end = size - 1;
+                    code[otherwise] = size;
+                    statement(ast.getChild(node, 2));
+                    code[end] = size;
+                } else {
+                    code[otherwise] = size;
+                }
+                break;
+            }
+            case CALL:
+                throw new Exception("Unknown function: " + ast.getName(node));
+            default:
+                throw new Exception("Not a statement: " + ast.getKind(node));
+        }
+    }
+
+    // Emits a jump taken when the condition is false and returns the offset of its target operand
+    private int condition(int node) throws Exception {
+        if (ast.getKind(node) == NodeKind.BINARY) {
+            int opcode = BINARY_OPCODES[ast.getOperator(node).ordinal()];
+            if (opcode >= Bytecode.EQ && opcode <= Bytecode.GE) {
+                expression(ast.getChild(node, 0));
+                expression(ast.getChild(node, 1));
+                emit(Bytecode.JUMP_UNLESS, opcode, 0);
+                return size - 1;
+            }
+        }
+        expression(node);
+        emit(Bytecode.JUMP_IF_FALSE, 0);
+        return size - 1;
+    }
+
+    // Post-order code for an expression. A frame is a node and how many of its steps are done; && and ||
+    // also remember the operands of their two conditional jumps and patch them once the result is pushed:
+    // a && b is "a; JUMP_IF_FALSE f; b; JUMP_IF_FALSE f; PUSH 1; JUMP e; f: PUSH 0; e:", || the mirror image.
+    private void expression(int root) throws Exception {
+        int[] nodes = new int[16];
+        int[] steps = new int[16];
+        int[] firstJump = new int[16];
+        int top = 0;
+        nodes[top] = root;
+        steps[top++] = 0;
+        while (top > 0) {
+            int node = nodes[top - 1];
+            int step = steps[top - 1]++;
+            NodeKind kind = ast.getKind(node);
+            int child = -1;
+            if (kind == NodeKind.IDENTIFIER) {
+                emit(Bytecode.LOAD, slot(ast.getName(node)));
+                top--;
+            } else if (kind == NodeKind.INTEGER || kind == NodeKind.FLOAT) {
+                emit(Bytecode.PUSH_CONST, literal(node));
+                top--;
+            } else if (kind == NodeKind.UNARY) {
+                if (step == 0) {
+                    child = ast.getChild(node, 0);
+                } else {
+                    emit(UNARY_OPCODES[ast.getOperator(node).ordinal()]);
+                    top--;
+                }
+            } else if (kind == NodeKind.BINARY) {
+                TokenKind operator = ast.getOperator(node);
+                boolean and = operator == TokenKind.LOGICAL_AND;
+                if (and || operator == TokenKind.LOGICAL_OR) {
+                    int jump = and ? Bytecode.JUMP_IF_FALSE : Bytecode.JUMP_IF_TRUE;
+                    if (step == 0) {
+                        child = ast.getChild(node, 0);
+                    } else if (step == 1) {
+                        emit(jump, 0);
+                        firstJump[top - 1] = size - 1;
+                        child = ast.getChild(node, 1);
+                    } else {
+                        emit(jump, 0);
+                        int secondJump = size - 1;
+                        emit(Bytecode.PUSH_CONST, constant(Bytecode.INT, and ? 1 : 0));
+                        emit(Bytecode.JUMP, 0);
+                        int end = size - 1;
+                        code[firstJump[top - 1]] = size;
+                        code[secondJump] = size;
+                        // Only one of the two pushes runs
+                        depth--;
+                        emit(Bytecode.PUSH_CONST, constant(Bytecode.INT, and ? 0 : 1));
+                        code[end] = size;
+                        top--;
+                    }
+                } else if (step < 2) {
+                    child = ast.getChild(node, step);
+                } else {
+                    emit(BINARY_OPCODES[operator.ordinal()]);
+                    top--;
+                }
+            } else {
+                throw new Exception("Not an expression: " + kind);
+            }
+
+            if (child >= 0) {
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    steps = Arrays.copyOf(steps, top * 2);
+                    firstJump = Arrays.copyOf(firstJump, top * 2);
+                }
+                nodes[top] = child;
+                steps[top++] = 0;
+            }
+        }
+    }
+
+    private int literal(int node) throws Exception {
+        String text = ast.getName(node);
+        try {
+            if (ast.getKind(node) == NodeKind.INTEGER) {
+                return constant(Bytecode.INT, Long.parseLong(text));
+            }
+            return constant(Bytecode.FLOAT, Double.doubleToRawLongBits(Double.parseDouble(text)));
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid number literal: " + text);
+        }
+    }
+
+    private int constant(byte type, long value) {
+        Map<Long, Integer> pool = type == Bytecode.INT ? intConstants : floatConstants;
+        Integer index = pool.get(value);
+        if (index == null) {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+                constantTypes = Arrays.copyOf(constantTypes, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            constantTypes[constantCount] = type;
+            index = constantCount++;
+            pool.put(value, index);
+        }
+        return index;
+    }
+
+    private int slot(String variable) {
+        return slots.computeIfAbsent(variable, name -> slots.size());
+    }
+
+    private void emit(int opcode, int... operands) {
+        if (size + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + 1 + operands.length));
+        }
+        code[size++] = opcode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        depth += stackEffect(opcode);
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private static int stackEffect(int opcode) {
+        switch (opcode) {
+            case Bytecode.PUSH_CONST:
+            case Bytecode.LOAD:
+                return 1;
+            case Bytecode.NEG:
+            case Bytecode.NOT:
+            case Bytecode.JUMP:
+            case Bytecode.HALT:
+                return 0;
+            case Bytecode.JUMP_UNLESS:
+                return -2;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough of the class file format for JvmCompiler: a deduplicated constant pool and methods with a Code
+// attribute. The version is 49 (Java 5), the last one that the JVM verifies by type inference, so no
+// StackMapTable has to be computed for the branches.
+final class ClassWriter {
+    static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassWriter(String name, String superName, String... interfaces) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, 1, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return entry("C" + internalName, 1, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    int methodRef(String owner, String methodName, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(methodName);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + methodName + ' ' + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return entry("M" + owner + '.' + methodName + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_METHODREF);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    // Longs and doubles take two pool indexes
+    int longConstant(long value) {
+        return entry("J" + value, 2, out -> {
+            out.writeByte(CONSTANT_LONG);
+            out.writeLong(value);
+        });
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return entry("D" + bits, 2, out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeLong(bits);
+        });
+    }
+
+    private interface PoolEntry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, int size, PoolEntry writer) {
+        Integer index = poolIndexes.get(key);
+        if (index == null) {
+            try {
+                writer.write(pool);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = poolCount;
+            poolCount += size;
+            if (poolCount > 0xFFFF) {
+                throw new IllegalStateException("Constant pool of " + name + " is full");
+            }
+            poolIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    void addMethod(int access, String methodName, String descriptor, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(methodName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + code.size);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.size);
+            out.write(code.bytes, 0, code.size);
+            // No exception table and no attributes
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        int[] interfaceIndexes = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceIndexes[i] = classRef(interfaces[i]);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(interfaceIndexes.length);
+            for (int index : interfaceIndexes) {
+                out.writeShort(index);
+            }
+            // No fields
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            // No class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Body of one method. The caller reports the stack effect of every instruction it emits, the deepest point
+    // becomes max_stack. Branches are emitted with a zero offset and patched once the target is known.
+    static final class Code {
+        private byte[] bytes = new byte[256];
+        private int size;
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+        private boolean tooLarge;
+
+        int size() {
+            return size;
+        }
+
+        void op(int opcode, int stackEffect) {
+            u1(opcode);
+            stack(stackEffect);
+        }
+
+        void op1(int opcode, int operand, int stackEffect) {
+            u1(opcode);
+            u1(operand);
+            stack(stackEffect);
+        }
+
+        void op2(int opcode, int operand, int stackEffect) {
+            u1(opcode);
+            u2(operand);
+            stack(stackEffect);
+        }
+
+        // Returns the offset of the branch instruction, which patch takes to set its target
+        int branch(int opcode, int stackEffect) {
+            int at = size;
+            op2(opcode, 0, stackEffect);
+            return at;
+        }
+
+        void patch(int branch, int target) {
+            int offset = target - branch;
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                tooLarge = true;
+            }
+            bytes[branch + 1] = (byte) (offset >> 8);
+            bytes[branch + 2] = (byte) offset;
+        }
+
+        // False once the code outgrew a method or a branch its 16 bit offset
+        boolean fits() {
+            return !tooLarge && size <= 0xFFFF;
+        }
+
+        // For code that only one of two paths runs, like the second arm of a conditional value
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        int getStack() {
+            return stack;
+        }
+
+        void useLocals(int count) {
+            maxLocals = Math.max(maxLocals, count);
+        }
+
+        private void stack(int effect) {
+            stack += effect;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package vm;
+
+import java.io.PrintStream;
+
+// Implemented by the hidden classes of JvmCompiler. Takes the variables by slot in the layout of VirtualMachine.
+interface CompiledScript {
+    void run(long[] values, byte[] types, PrintStream out);
+}
@@ -0,0 +1,537 @@
+package vm;
+
+import lexer.TokenKind;
+import parser.Ast;
+import parser.AstVisitor;
+import parser.NodeKind;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compiles the Ast of a script into a hidden class whose run method is the whole script, so the JIT sees plain
+// long and double locals instead of the tagged slots of the VirtualMachine. Only monomorphic scripts compile:
+// every variable has one static type, every read follows an assignment on all paths and there are no calls.
+// Otherwise compile returns null and the script stays interpreted. Variables are loaded from the VM arrays on
+// entry and written back on a normal exit; after an exception the arrays keep their values from before the run.
+final class JvmCompiler {
+    private static final String CLASS_NAME = "vm/GeneratedScript";
+    private static final String RUN_DESCRIPTOR = "([J[BLjava/io/PrintStream;)V";
+    private static final int MAX_DEPTH = 1000;
+    // Operators in the order of ladd, lsub, lmul, ldiv, lrem and of their double counterparts
+    private static final List<TokenKind> ARITHMETIC = Arrays.asList(TokenKind.PLUS, TokenKind.MINUS, TokenKind.MULTIPLY, TokenKind.DIVIDE, TokenKind.MODULO);
+
+    // Locals of run: this, the arguments, then two words per variable slot
+    private static final int VALUES = 1;
+    private static final int TYPES = 2;
+    private static final int OUT = 3;
+    private static final int FIRST_VARIABLE = 4;
+
+    private static final int ICONST_0 = 3;
+    private static final int LCONST_0 = 9;
+    private static final int LCONST_1 = 10;
+    private static final int DCONST_0 = 14;
+    private static final int DCONST_1 = 15;
+    private static final int BIPUSH = 16;
+    private static final int SIPUSH = 17;
+    private static final int LDC2_W = 20;
+    private static final int LLOAD = 22;
+    private static final int DLOAD = 24;
+    private static final int ALOAD_0 = 42;
+    private static final int LALOAD = 47;
+    private static final int BALOAD = 51;
+    private static final int LSTORE = 55;
+    private static final int DSTORE = 57;
+    private static final int LASTORE = 80;
+    private static final int BASTORE = 84;
+    private static final int LADD = 97;
+    private static final int DADD = 99;
+    private static final int LNEG = 117;
+    private static final int DNEG = 119;
+    private static final int L2D = 138;
+    private static final int LCMP = 148;
+    private static final int DCMPL = 151;
+    private static final int DCMPG = 152;
+    private static final int IFEQ = 153;
+    private static final int IFNE = 154;
+    private static final int IFLT = 155;
+    private static final int IFGE = 156;
+    private static final int IFGT = 157;
+    private static final int IFLE = 158;
+    private static final int IF_ICMPNE = 160;
+    private static final int GOTO = 167;
+    private static final int RETURN = 177;
+    private static final int INVOKEVIRTUAL = 182;
+    private static final int INVOKESPECIAL = 183;
+    private static final int INVOKESTATIC = 184;
+
+    private final Ast ast;
+    private final Program program;
+    // Static type of every expression node and of every variable slot: INT, FLOAT, UNSET while unknown
+    private final byte[] nodeTypes;
+    private final byte[] variableTypes;
+    private final int[] nodeSlots;
+    // Variables assigned on every path through the script, the others may keep their value from an earlier run
+    private boolean[] assignedAtExit;
+
+    private final ClassWriter writer = new ClassWriter(CLASS_NAME, "java/lang/Object", "vm/CompiledScript");
+    private final ClassWriter.Code code = new ClassWriter.Code();
+
+    private JvmCompiler(Ast ast, Program program) {
+        this.ast = ast;
+        this.program = program;
+        this.nodeTypes = new byte[ast.getNodeCount()];
+        this.variableTypes = new byte[program.getVariableCount()];
+        this.nodeSlots = new int[ast.getNodeCount()];
+    }
+
+    // The program has to be compiled from the same Ast, its slots are the layout of the variables
+    static CompiledScript compile(Ast ast, Program program) {
+        JvmCompiler compiler = new JvmCompiler(ast, program);
+        if (!compiler.analyze()) {
+            return null;
+        }
+        byte[] bytes = compiler.generate();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (CompiledScript) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Generated class was rejected", e);
+        }
+    }
+
+    private boolean analyze() {
+        if (ast.getRoot() == Ast.NONE || program.getVariableCount() * 2 + FIRST_VARIABLE > 0xFF) {
+            return false;
+        }
+        // Deep trees would need deep recursion here and a deep JVM operand stack
+        int[] maxDepth = new int[1];
+        boolean[] hasCall = new boolean[1];
+        ast.walk(new AstVisitor() {
+            @Override
+            public void enter(Ast ast, int node, int depth) {
+                maxDepth[0] = Math.max(maxDepth[0], depth);
+                hasCall[0] |= ast.getKind(node) == NodeKind.CALL;
+            }
+        });
+        if (maxDepth[0] > MAX_DEPTH || hasCall[0]) {
+            return false;
+        }
+        for (int node = 0; node < ast.getNodeCount(); node++) {
+            NodeKind kind = ast.getKind(node);
+            if (kind == NodeKind.IDENTIFIER || kind == NodeKind.ASSIGNMENT || kind == NodeKind.DECLARATION) {
+                nodeSlots[node] = program.slotOf(ast.getName(node));
+            }
+        }
+        return inferTypes() && checkAssigned();
+    }
+
+    // Children are added to the Ast before their parents, so one pass in id order types every expression from
+    // the current variable types. Passes repeat until the variable types stop changing.
+    private boolean inferTypes() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int node = 0; node < ast.getNodeCount(); node++) {
+                NodeKind kind = ast.getKind(node);
+                switch (kind) {
+                    case IDENTIFIER:
+                        nodeTypes[node] = variableTypes[nodeSlots[node]];
+                        break;
+                    case INTEGER:
+                        nodeTypes[node] = Bytecode.INT;
+                        break;
+                    case FLOAT:
+                        nodeTypes[node] = Bytecode.FLOAT;
+                        break;
+                    case UNARY: {
+                        byte operand = nodeTypes[ast.getChild(node, 0)];
+                        nodeTypes[node] = ast.getOperator(node) == TokenKind.MINUS || operand == Bytecode.UNSET ? operand : Bytecode.INT;
+                        break;
+                    }
+                    case BINARY: {
+                        byte left = nodeTypes[ast.getChild(node, 0)];
+                        byte right = nodeTypes[ast.getChild(node, 1)];
+                        if (left == Bytecode.UNSET || right == Bytecode.UNSET) {
+                            nodeTypes[node] = Bytecode.UNSET;
+                        } else if (isArithmetic(ast.getOperator(node))) {
+                            nodeTypes[node] = left == Bytecode.INT && right == Bytecode.INT ? Bytecode.INT : Bytecode.FLOAT;
+                        } else {
+                            nodeTypes[node] = Bytecode.INT;
+                        }
+                        break;
+                    }
+                    case ASSIGNMENT:
+                    case DECLARATION: {
+                        byte type = kind == NodeKind.DECLARATION ? Bytecode.INT : nodeTypes[ast.getChild(node, 0)];
+                        int slot = nodeSlots[node];
+                        if (type == Bytecode.UNSET || type == variableTypes[slot]) {
+                            break;
+                        }
+                        if (variableTypes[slot] != Bytecode.UNSET) {
+                            return false;
+                        }
+                        variableTypes[slot] = type;
+                        changed = true;
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        }
+        for (byte type : variableTypes) {
+            if (type == Bytecode.UNSET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkAssigned() {
+        assignedAtExit = assigned(ast.getRoot(), new boolean[variableTypes.length]);
+        return assignedAtExit != null;
+    }
+
+    // Variables assigned on every path through the statement, or null if it may read one that is not
+    private boolean[] assigned(int node, boolean[] before) {
+        switch (ast.getKind(node)) {
+            case PROGRAM:
+            case BLOCK: {
+                boolean[] assigned = before;
+                for (int i = 0; i < ast.getChildCount(node) && assigned != null; i++) {
+                    assigned = assigned(ast.getChild(node, i), assigned);
+                }
+                return assigned;
+            }
+            case ASSIGNMENT:
+            case DECLARATION: {
+                if (ast.getChildCount(node) > 0 && !readsAssigned(ast.getChild(node, 0), before)) {
+                    return null;
+                }
+                boolean[] assigned = before.clone();
+                assigned[nodeSlots[node]] = true;
+                return assigned;
+            }
+            case PRINT:
+                return readsAssigned(ast.getChild(node, 0), before) ? before : null;
+            case WHILE:
+                // The body may not run at all
+                if (!readsAssigned(ast.getChild(node, 0), before) || assigned(ast.getChild(node, 1), before) == null) {
+                    return null;
+                }
+                return before;
+            case IF: {
+                if (!readsAssigned(ast.getChild(node, 0), before)) {
+                    return null;
+                }
+                boolean[] then = assigned(ast.getChild(node, 1), before);
+                boolean[] otherwise = ast.getChildCount(node) > 2 ? assigned(ast.getChild(node, 2), before) : before;
+                if (then == null || otherwise == null) {
+                    return null;
+                }
+                boolean[] assigned = new boolean[before.length];
+                for (int slot = 0; slot < assigned.length; slot++) {
+                    assigned[slot] = then[slot] && otherwise[slot];
+                }
+                return assigned;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private boolean readsAssigned(int node, boolean[] assigned) {
+        if (ast.getKind(node) == NodeKind.IDENTIFIER) {
+            return assigned[nodeSlots[node]];
+        }
+        for (int i = 0; i < ast.getChildCount(node); i++) {
+            if (!readsAssigned(ast.getChild(node, i), assigned)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] generate() {
+        ClassWriter.Code constructor = new ClassWriter.Code();
+        constructor.op(ALOAD_0, 1);
+        constructor.op2(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        constructor.op(RETURN, 0);
+        constructor.useLocals(1);
+        writer.addMethod(ClassWriter.ACC_PUBLIC, "<init>", "()V", constructor);
+
+        code.useLocals(FIRST_VARIABLE + 2 * variableTypes.length);
+        for (int slot = 0; slot < variableTypes.length; slot++) {
+            code.op(ALOAD_0 + VALUES, 1);
+            pushInt(slot);
+            code.op(LALOAD, 0);
+            if (variableTypes[slot] == Bytecode.FLOAT) {
+                code.op2(INVOKESTATIC, writer.methodRef("java/lang/Double", "longBitsToDouble", "(J)D"), 0);
+            }
+            store(slot);
+        }
+        statement(ast.getRoot());
+        for (int slot = 0; slot < variableTypes.length; slot++) {
+            int skip = -1;
+            if (!assignedAtExit[slot]) {
+                // Only write back what this run assigned or what was loaded with the right type
+                code.op(ALOAD_0 + TYPES, 1);
+                pushInt(slot);
+                code.op(BALOAD, -1);
+                pushInt(variableTypes[slot]);
+                skip = code.branch(IF_ICMPNE, -2);
+            }
+            code.op(ALOAD_0 + VALUES, 1);
+            pushInt(slot);
+            load(slot);
+            if (variableTypes[slot] == Bytecode.FLOAT) {
+                code.op2(INVOKESTATIC, writer.methodRef("java/lang/Double", "doubleToRawLongBits", "(D)J"), 0);
+            }
+            code.op(LASTORE, -4);
+            if (skip >= 0) {
+                code.patch(skip, code.size());
+            } else {
+                storeType(slot);
+            }
+        }
+        code.op(RETURN, 0);
+        if (!code.fits()) {
+            return null;
+        }
+        writer.addMethod(ClassWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, code);
+        return writer.toByteArray();
+    }
+
+    private void statement(int node) {
+        switch (ast.getKind(node)) {
+            case PROGRAM:
+            case BLOCK:
+                for (int i = 0; i < ast.getChildCount(node); i++) {
+                    statement(ast.getChild(node, i));
+                }
+                break;
+            case ASSIGNMENT:
+            case DECLARATION: {
+                int slot = nodeSlots[node];
+                if (ast.getKind(node) == NodeKind.DECLARATION) {
+                    code.op(LCONST_0, 2);
+                } else {
+                    value(ast.getChild(node, 0), variableTypes[slot]);
+                }
+                store(slot);
+                if (!assignedAtExit[slot]) {
+                    storeType(slot);
+                }
+                break;
+            }
+            case PRINT: {
+                int child = ast.getChild(node, 0);
+                code.op(ALOAD_0 + OUT, 1);
+                value(child, nodeTypes[child]);
+                String descriptor = nodeTypes[child] == Bytecode.FLOAT ? "(D)V" : "(J)V";
+                code.op2(INVOKEVIRTUAL, writer.methodRef("java/io/PrintStream", "println", descriptor), -3);
+                break;
+            }
+            case WHILE: {
+                int loop = code.size();
+                List<Integer> exits = branch(ast.getChild(node, 0), false);
+                statement(ast.getChild(node, 1));
+                code.patch(code.branch(GOTO, 0), loop);
+                patchAll(exits);
+                break;
+            }
+            case IF: {
+                List<Integer> otherwise = branch(ast.getChild(node, 0), false);
+                statement(ast.getChild(node, 1));
+                if (ast.getChildCount(node) > 2) {
+                    int end = code.branch(GOTO, 0);
+                    patchAll(otherwise);
+                    statement(ast.getChild(node, 2));
+                    code.patch(end, code.size());
+                } else {
+                    patchAll(otherwise);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Not a statement: " + ast.getKind(node));
+        }
+    }
+
+    // Pushes the value of the expression as a long (INT) or double (FLOAT), converting INT to FLOAT if asked
+    private void value(int node, byte type) {
+        switch (ast.getKind(node)) {
+            case IDENTIFIER:
+                load(nodeSlots[node]);
+                break;
+            case INTEGER: {
+                long value = Long.parseLong(ast.getName(node));
+                if (value == 0 || value == 1) {
+                    code.op(LCONST_0 + (int) value, 2);
+                } else {
+                    code.op2(LDC2_W, writer.longConstant(value), 2);
+                }
+                break;
+            }
+            case FLOAT: {
+                double value = Double.parseDouble(ast.getName(node));
+                if (Double.doubleToRawLongBits(value) == 0 || value == 1.0) {
+                    code.op(DCONST_0 + (int) value, 2);
+                } else {
+                    code.op2(LDC2_W, writer.doubleConstant(value), 2);
+                }
+                break;
+            }
+            case UNARY:
+                if (ast.getOperator(node) == TokenKind.MINUS) {
+                    value(ast.getChild(node, 0), nodeTypes[node]);
+                    code.op(nodeTypes[node] == Bytecode.INT ? LNEG : DNEG, 0);
+                } else {
+                    truth(node);
+                }
+                break;
+            case BINARY:
+                if (isArithmetic(ast.getOperator(node))) {
+                    value(ast.getChild(node, 0), nodeTypes[node]);
+                    value(ast.getChild(node, 1), nodeTypes[node]);
+                    // ladd..lrem and dadd..drem are spaced by four
+                    int base = nodeTypes[node] == Bytecode.INT ? LADD : DADD;
+                    code.op(base + 4 * ARITHMETIC.indexOf(ast.getOperator(node)), -2);
+                } else {
+                    truth(node);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Not an expression: " + ast.getKind(node));
+        }
+        if (type == Bytecode.FLOAT && nodeTypes[node] == Bytecode.INT) {
+            code.op(L2D, 0);
+        }
+    }
+
+    // 1 or 0 for a comparison, ! or a short-circuit operator
+    private void truth(int node) {
+        List<Integer> otherwise = branch(node, false);
+        code.op(LCONST_1, 2);
+        int end = code.branch(GOTO, 0);
+        patchAll(otherwise);
+        code.setStack(code.getStack() - 2);
+        code.op(LCONST_0, 2);
+        code.patch(end, code.size());
+    }
+
+    // Emits jumps taken when the truth of the expression equals when and returns them for patching; execution
+    // falls through otherwise. Comparisons branch on the compare result without materializing 1 or 0.
+    private List<Integer> branch(int node, boolean when) {
+        NodeKind kind = ast.getKind(node);
+        TokenKind operator = ast.getOperator(node);
+        if (kind == NodeKind.UNARY && operator == TokenKind.LOGICAL_NOT) {
+            return branch(ast.getChild(node, 0), !when);
+        }
+        if (kind == NodeKind.BINARY && (operator == TokenKind.LOGICAL_AND || operator == TokenKind.LOGICAL_OR)) {
+            // a && b is false as soon as a is, a || b true as soon as a is
+            boolean decides = operator == TokenKind.LOGICAL_OR;
+            List<Integer> first = branch(ast.getChild(node, 0), decides);
+            if (when == decides) {
+                first.addAll(branch(ast.getChild(node, 1), when));
+                return first;
+            }
+            List<Integer> second = branch(ast.getChild(node, 1), when);
+            patchAll(first);
+            return second;
+        }
+        List<Integer> jumps = new ArrayList<>();
+        if (kind == NodeKind.BINARY && !isArithmetic(operator)) {
+            int left = ast.getChild(node, 0);
+            int right = ast.getChild(node, 1);
+            byte type = nodeTypes[left] == Bytecode.INT && nodeTypes[right] == Bytecode.INT ? Bytecode.INT : Bytecode.FLOAT;
+            value(left, type);
+            value(right, type);
+            int jump = comparisonJump(operator);
+            if (type == Bytecode.INT) {
+                code.op(LCMP, -3);
+            } else {
+                // NaN has to make <, <=, >, >= and == false, so it compares greater for < and <= and less otherwise
+                code.op(operator == TokenKind.LESS_THAN || operator == TokenKind.LESS_THAN_EQUALS ? DCMPG : DCMPL, -3);
+            }
+            jumps.add(code.branch(when ? jump : negate(jump), -1));
+            return jumps;
+        }
+        value(node, nodeTypes[node]);
+        if (nodeTypes[node] == Bytecode.INT) {
+            code.op(LCONST_0, 2);
+            code.op(LCMP, -3);
+        } else {
+            code.op(DCONST_0, 2);
+            code.op(DCMPL, -3);
+        }
+        jumps.add(code.branch(when ? IFNE : IFEQ, -1));
+        return jumps;
+    }
+
+    private void patchAll(List<Integer> branches) {
+        for (int branch : branches) {
+            code.patch(branch, code.size());
+        }
+    }
+
+    private void load(int slot) {
+        code.op1(variableTypes[slot] == Bytecode.INT ? LLOAD : DLOAD, FIRST_VARIABLE + 2 * slot, 2);
+    }
+
+    private void store(int slot) {
+        code.op1(variableTypes[slot] == Bytecode.INT ? LSTORE : DSTORE, FIRST_VARIABLE + 2 * slot, -2);
+    }
+
+    private void storeType(int slot) {
+        code.op(ALOAD_0 + TYPES, 1);
+        pushInt(slot);
+        pushInt(variableTypes[slot]);
+        code.op(BASTORE, -3);
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.op1(BIPUSH, value, 1);
+        } else {
+            code.op2(SIPUSH, value, 1);
+        }
+    }
+
+    private static boolean isArithmetic(TokenKind operator) {
+        return ARITHMETIC.contains(operator);
+    }
+
+    // Jump on the result of lcmp, dcmpl or dcmpg that is taken when the comparison holds
+    private static int comparisonJump(TokenKind operator) {
+        switch (operator) {
+            case EQUALS:
+                return IFEQ;
+            case NOT_EQUALS:
+                return IFNE;
+            case LESS_THAN:
+                return IFLT;
+            case LESS_THAN_EQUALS:
+                return IFLE;
+            case GREATER_THAN:
+                return IFGT;
+            case GREATER_THAN_EQUALS:
+                return IFGE;
+            default:
+                throw new IllegalStateException("Not a comparison: " + operator);
+        }
+    }
+
+    // ifeq/ifne, iflt/ifge and ifgt/ifle are pairs of adjacent opcodes
+    private static int negate(int jump) {
+        return IFEQ + ((jump - IFEQ) ^ 1);
+    }
+}
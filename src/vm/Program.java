@@ -0,0 +1,64 @@
+package vm;
+
+import java.util.Arrays;
+
+// Output of the BytecodeCompiler: code, a constant pool of tagged values, the variable names by slot and the deepest
+// operand stack the code can reach
+public final class Program {
+    final int[] code;
+    final long[] constants;
+    final byte[] constantTypes;
+    final String[] variables;
+    final int maxStack;
+
+    Program(int[] code, long[] constants, byte[] constantTypes, String[] variables, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.constantTypes = constantTypes;
+        this.variables = variables;
+        this.maxStack = maxStack;
+    }
+
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    public int getVariableCount() {
+        return variables.length;
+    }
+
+    public String getVariable(int slot) {
+        return variables[slot];
+    }
+
+    // Slot of the variable, or -1 when the program never uses it
+    public int slotOf(String variable) {
+        return Arrays.asList(variables).indexOf(variable);
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    // One instruction per line: offset, opcode and operands, constants shown by value and slots by name
+    public String disassemble() {
+        StringBuilder text = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + Bytecode.operandCount(code[pc])) {
+            int opcode = code[pc];
+            text.append(pc).append(' ').append(Bytecode.name(opcode));
+            if (opcode == Bytecode.PUSH_CONST) {
+                int c = code[pc + 1];
+                text.append(' ').append(constantTypes[c] == Bytecode.FLOAT
+                        ? Double.toString(Double.longBitsToDouble(constants[c])) : Long.toString(constants[c]));
+            } else if (opcode == Bytecode.LOAD || opcode == Bytecode.STORE) {
+                text.append(' ').append(variables[code[pc + 1]]);
+            } else if (opcode == Bytecode.JUMP_UNLESS) {
+                text.append(' ').append(Bytecode.name(code[pc + 1])).append(' ').append(code[pc + 2]);
+            } else if (Bytecode.operandCount(opcode) == 1) {
+                text.append(' ').append(code[pc + 1]);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package vm;
+
+import parser.Ast;
+import parser.Parser;
+
+import java.io.PrintStream;
+
+// Runs a script in the VirtualMachine for its first threshold runs and then, if JvmCompiler accepts it, as a
+// hidden class. Both tiers work on the variable arrays of the VM, so values carry over from run to run and
+// getValue sees the same state whichever tier ran. A script that does not compile is never tried again.
+public final class TieredScript {
+    public static final int DEFAULT_THRESHOLD = 3;
+
+    private final Ast ast;
+    private final VirtualMachine vm;
+    private final PrintStream out;
+    private final int threshold;
+    private int runs;
+    private CompiledScript compiled;
+    private boolean rejected;
+
+    public TieredScript(String source) throws Exception {
+        this(source, DEFAULT_THRESHOLD, System.out);
+    }
+
+    public TieredScript(String source, int threshold, PrintStream out) throws Exception {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative threshold: " + threshold);
+        }
+        this.ast = new Parser(source).parse();
+        this.vm = new VirtualMachine(BytecodeCompiler.compile(ast), out);
+        this.out = out;
+        this.threshold = threshold;
+    }
+
+    public void run() {
+        if (compiled == null && !rejected && runs >= threshold) {
+            compiled = JvmCompiler.compile(ast, vm.getProgram());
+            rejected = compiled == null;
+        }
+        runs++;
+        if (compiled != null) {
+            compiled.run(vm.values, vm.types, out);
+        } else {
+            vm.run();
+        }
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    public Object getValue(String variable) {
+        return vm.getValue(variable);
+    }
+}
@@ -0,0 +1,224 @@
+package vm;
+
+import java.io.PrintStream;
+
+// Dispatch loop over a Program. The operand stack and the variables are parallel long/byte arrays: the long is
+// the value (raw double bits for FLOAT) and the byte its type, so nothing is boxed. Arithmetic stays on longs
+// while both operands are INT and switches to doubles as soon as one of them is FLOAT; integer division by
+// zero throws an ArithmeticException and reading a variable before any assignment an IllegalStateException.
+// Variables keep their values after run(), a second run() continues with them.
+public final class VirtualMachine {
+    private final Program program;
+    private final PrintStream out;
+    // Shared with the compiled tier of TieredScript
+    final long[] values;
+    final byte[] types;
+
+    public VirtualMachine(Program program) {
+        this(program, System.out);
+    }
+
+    public VirtualMachine(Program program, PrintStream out) {
+        this.program = program;
+        this.out = out;
+        this.values = new long[program.variables.length];
+        this.types = new byte[program.variables.length];
+    }
+
+    public void run() {
+        int[] code = program.code;
+        long[] constants = program.constants;
+        byte[] constantTypes = program.constantTypes;
+        long[] values = this.values;
+        byte[] types = this.types;
+        long[] stack = new long[program.maxStack];
+        byte[] stackTypes = new byte[program.maxStack];
+        int sp = 0;
+        int pc = 0;
+        while (true) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case Bytecode.PUSH_CONST: {
+                    int c = code[pc++];
+                    stack[sp] = constants[c];
+                    stackTypes[sp++] = constantTypes[c];
+                    break;
+                }
+                case Bytecode.LOAD: {
+                    int slot = code[pc++];
+                    if (types[slot] == Bytecode.UNSET) {
+                        throw new IllegalStateException("Variable " + program.variables[slot] + " is used before it is assigned");
+                    }
+                    stack[sp] = values[slot];
+                    stackTypes[sp++] = types[slot];
+                    break;
+                }
+                case Bytecode.STORE: {
+                    int slot = code[pc++];
+                    sp--;
+                    values[slot] = stack[sp];
+                    types[slot] = stackTypes[sp];
+                    break;
+                }
+                case Bytecode.ADD:
+                case Bytecode.SUB:
+                case Bytecode.MUL:
+                case Bytecode.DIV:
+                case Bytecode.MOD: {
+                    sp--;
+                    int left = sp - 1;
+                    if (stackTypes[left] == Bytecode.INT && stackTypes[sp] == Bytecode.INT) {
+                        stack[left] = arithmetic(opcode, stack[left], stack[sp]);
+                    } else {
+                        double result = arithmetic(opcode, toDouble(stack[left], stackTypes[left]), toDouble(stack[sp], stackTypes[sp]));
+                        stack[left] = Double.doubleToRawLongBits(result);
+                        stackTypes[left] = Bytecode.FLOAT;
+                    }
+                    break;
+                }
+                case Bytecode.EQ:
+                case Bytecode.NE:
+                case Bytecode.LT:
+                case Bytecode.LE:
+                case Bytecode.GT:
+                case Bytecode.GE: {
+                    sp--;
+                    int left = sp - 1;
+                    stack[left] = compare(opcode, stack[left], stackTypes[left], stack[sp], stackTypes[sp]) ? 1 : 0;
+                    stackTypes[left] = Bytecode.INT;
+                    break;
+                }
+                case Bytecode.NEG: {
+                    int top = sp - 1;
+                    if (stackTypes[top] == Bytecode.INT) {
+                        stack[top] = -stack[top];
+                    } else {
+                        stack[top] = Double.doubleToRawLongBits(-Double.longBitsToDouble(stack[top]));
+                    }
+                    break;
+                }
+                case Bytecode.NOT: {
+                    int top = sp - 1;
+                    stack[top] = isTrue(stack[top], stackTypes[top]) ? 0 : 1;
+                    stackTypes[top] = Bytecode.INT;
+                    break;
+                }
+                case Bytecode.JUMP:
+                    pc = code[pc];
+                    break;
+                case Bytecode.JUMP_IF_FALSE:
+                    sp--;
+                    pc = isTrue(stack[sp], stackTypes[sp]) ? pc + 1 : code[pc];
+                    break;
+                case Bytecode.JUMP_IF_TRUE:
+                    sp--;
+                    pc = isTrue(stack[sp], stackTypes[sp]) ? code[pc] : pc + 1;
+                    break;
+                case Bytecode.JUMP_UNLESS: {
+                    sp -= 2;
+                    boolean holds = compare(code[pc], stack[sp], stackTypes[sp], stack[sp + 1], stackTypes[sp + 1]);
+                    pc = holds ? pc + 2 : code[pc + 1];
+                    break;
+                }
+                case Bytecode.PRINT:
+                    sp--;
+                    out.println(format(stack[sp], stackTypes[sp]));
+                    break;
+                case Bytecode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + opcode + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private static long arithmetic(int opcode, long left, long right) {
+        switch (opcode) {
+            case Bytecode.ADD:
+                return left + right;
+            case Bytecode.SUB:
+                return left - right;
+            case Bytecode.MUL:
+                return left * right;
+            case Bytecode.DIV:
+                if (right == 0) {
+                    throw new ArithmeticException("Division by zero");
+                }
+                return left / right;
+            default:
+                if (right == 0) {
+                    throw new ArithmeticException("Division by zero");
+                }
+                return left % right;
+        }
+    }
+
+    private static double arithmetic(int opcode, double left, double right) {
+        switch (opcode) {
+            case Bytecode.ADD:
+                return left + right;
+            case Bytecode.SUB:
+                return left - right;
+            case Bytecode.MUL:
+                return left * right;
+            case Bytecode.DIV:
+                return left / right;
+            default:
+                return left % right;
+        }
+    }
+
+    private static boolean compare(int opcode, long left, byte leftType, long right, byte rightType) {
+        int order;
+        if (leftType == Bytecode.INT && rightType == Bytecode.INT) {
+            order = Long.compare(left, right);
+        } else {
+            double l = toDouble(left, leftType);
+            double r = toDouble(right, rightType);
+            // NaN is unequal to everything and never ordered
+            if (l != l || r != r) {
+                return opcode == Bytecode.NE;
+            }
+            order = l < r ? -1 : l > r ? 1 : 0;
+        }
+        switch (opcode) {
+            case Bytecode.EQ:
+                return order == 0;
+            case Bytecode.NE:
+                return order != 0;
+            case Bytecode.LT:
+                return order < 0;
+            case Bytecode.LE:
+                return order <= 0;
+            case Bytecode.GT:
+                return order > 0;
+            default:
+                return order >= 0;
+        }
+    }
+
+    private static double toDouble(long value, byte type) {
+        return type == Bytecode.INT ? (double) value : Double.longBitsToDouble(value);
+    }
+
+    private static boolean isTrue(long value, byte type) {
+        return type == Bytecode.INT ? value != 0 : Double.longBitsToDouble(value) != 0.0;
+    }
+
+    private static String format(long value, byte type) {
+        return type == Bytecode.INT ? Long.toString(value) : Double.toString(Double.longBitsToDouble(value));
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    // Current value of the variable as a Long or Double, null if it is unknown or not assigned yet
+    public Object getValue(String variable) {
+        int slot = program.slotOf(variable);
+        if (slot < 0 || types[slot] == Bytecode.UNSET) {
+            return null;
+        }
+        return types[slot] == Bytecode.INT ? (Object) values[slot] : (Object) Double.longBitsToDouble(values[slot]);
+    }
+}